@@ -8,9 +8,10 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
 import de.unistuttgart.ma.backend.repository.ImpactRepository;
+import de.unistuttgart.ma.backend.repository.ReachabilityRepository;
 import de.unistuttgart.ma.backend.repository.SystemRepository;
 
-@EnableMongoRepositories(basePackageClasses = {SystemRepository.class, ImpactRepository.class})
+@EnableMongoRepositories(basePackageClasses = {SystemRepository.class, ImpactRepository.class, ReachabilityRepository.class})
 @SpringBootApplication
 public class BackendApplication {
 
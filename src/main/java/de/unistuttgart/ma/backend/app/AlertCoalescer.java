@@ -0,0 +1,315 @@
+package de.unistuttgart.ma.backend.app;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.unistuttgart.ma.backend.exceptions.IssueCreationFailedException;
+import de.unistuttgart.ma.backend.exceptions.IssueLinkageFailedException;
+import de.unistuttgart.ma.backend.rest.Alert;
+
+/**
+ * An {@code AlertCoalescer} merges repeated alerts for the same slo rule of the
+ * same project, such that a flapping rule does not trigger the whole pipeline
+ * for each of its alerts.
+ *
+ * The first alert for a rule opens a window and is processed as usual. Further
+ * alerts for the same rule, that arrive while the window is open, are merged
+ * into the window. They only update the statistics of the window, and get the
+ * result of the first alert, waiting for it if it is still in flight. A window
+ * stays open while its first alert is in flight, and for the configured
+ * duration after it was opened. If the first alert fails, the window is closed
+ * right away, such that the next alert is processed again.
+ *
+ * The number of windows is bounded, the least recently opened windows are
+ * dropped first.
+ *
+ */
+@Component
+public class AlertCoalescer {
+
+	private final long window;
+	private final int maxEntries;
+
+	/**
+	 * maps project and rule to their windows, in order of opening.
+	 */
+	private final Map<Key, Window> windows;
+
+	private final AtomicLong opened;
+	private final AtomicLong suppressed;
+
+	/**
+	 * Create a new coalescer.
+	 *
+	 * @param window     duration of a window in milliseconds, 0 to disable
+	 *                   coalescing
+	 * @param maxEntries maximum number of windows
+	 */
+	public AlertCoalescer(@Value("${alertcoalescing.window:0}") long window,
+			@Value("${alertcoalescing.maxentries:1024}") int maxEntries) {
+		if (window < 0 || maxEntries < 1) {
+			throw new IllegalArgumentException("window must not be negative and maximum entries must be positive.");
+		}
+		this.window = window;
+		this.maxEntries = maxEntries;
+		this.windows = new LinkedHashMap<>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Window> eldest) {
+				return size() > AlertCoalescer.this.maxEntries;
+			}
+		};
+		this.opened = new AtomicLong();
+		this.suppressed = new AtomicLong();
+	}
+
+	/**
+	 * Check whether alerts are coalesced at all.
+	 *
+	 * @return true iff the window is longer than 0
+	 */
+	public boolean isEnabled() {
+		return window > 0;
+	}
+
+	/**
+	 * Admit an alert to the open window of its project and rule, or open a new
+	 * window for it.
+	 *
+	 * If the alert opened a new window, the caller must process it, and complete
+	 * or fail the window afterwards. Otherwise the alert is already merged into
+	 * the window.
+	 *
+	 * @param alert the alert
+	 * @return the admission, with the window of the alert
+	 */
+	public synchronized Admission admit(Alert alert) {
+		assert (alert != null);
+		Key key = new Key(alert.getGropiusProjectId(), alert.getSloId());
+		long now = System.currentTimeMillis();
+
+		Window current = windows.get(key);
+		if (current != null && (!current.result.isDone() || now - current.openedAt < window)) {
+			current.merge(alert);
+			suppressed.incrementAndGet();
+			return new Admission(current, false);
+		}
+
+		Window fresh = new Window(key, now, alert);
+		windows.remove(key);
+		windows.put(key, fresh);
+		opened.incrementAndGet();
+		return new Admission(fresh, true);
+	}
+
+	/**
+	 * Complete a window with the result of its first alert.
+	 *
+	 * @param window        the window
+	 * @param notifications number of notifications of the first alert
+	 */
+	public void complete(Window window, int notifications) {
+		window.result.complete(notifications);
+	}
+
+	/**
+	 * Fail a window, because its first alert failed, and close it, such that the
+	 * next alert is processed again.
+	 *
+	 * @param window the window
+	 * @param cause  failure of the first alert
+	 */
+	public void fail(Window window, Throwable cause) {
+		synchronized (this) {
+			windows.remove(window.key, window);
+		}
+		window.result.completeExceptionally(cause);
+	}
+
+	/**
+	 * Get the latest window of a project and rule.
+	 *
+	 * @param projectId id of the gropius project
+	 * @param sloId     id of the slo rule
+	 * @return the window, or null if there is none
+	 */
+	public synchronized Window getWindow(String projectId, String sloId) {
+		return windows.get(new Key(projectId, sloId));
+	}
+
+	/**
+	 * Get the number of opened windows, i.e. alerts that were processed.
+	 *
+	 * @return number of opened windows
+	 */
+	public long getOpened() {
+		return opened.get();
+	}
+
+	/**
+	 * Get the number of alerts that were merged into a window instead of being
+	 * processed.
+	 *
+	 * @return number of suppressed alerts
+	 */
+	public long getSuppressed() {
+		return suppressed.get();
+	}
+
+	/**
+	 * An {@code Admission} tells whether an alert opened its window.
+	 */
+	public static class Admission {
+		private final Window window;
+		private final boolean first;
+
+		private Admission(Window window, boolean first) {
+			this.window = window;
+			this.first = first;
+		}
+
+		public Window getWindow() {
+			return window;
+		}
+
+		/**
+		 * Check whether the alert opened the window, and must be processed.
+		 *
+		 * @return true iff the alert is the first of its window
+		 */
+		public boolean isFirst() {
+			return first;
+		}
+	}
+
+	/**
+	 * A {@code Window} holds the result of the first alert for a rule, and the
+	 * statistics of all alerts merged into it.
+	 */
+	public static class Window {
+		private final Key key;
+		private final long openedAt;
+		private final CompletableFuture<Integer> result;
+
+		private int alerts;
+		private LocalDateTime firstAlertTime;
+		private LocalDateTime lastAlertTime;
+		private double minValue;
+		private double maxValue;
+
+		private Window(Key key, long openedAt, Alert alert) {
+			this.key = key;
+			this.openedAt = openedAt;
+			this.result = new CompletableFuture<>();
+			this.alerts = 1;
+			this.firstAlertTime = alert.getAlertTime();
+			this.lastAlertTime = alert.getAlertTime();
+			this.minValue = alert.getActualValue();
+			this.maxValue = alert.getActualValue();
+		}
+
+		private synchronized void merge(Alert alert) {
+			alerts++;
+			lastAlertTime = alert.getAlertTime();
+			minValue = Math.min(minValue, alert.getActualValue());
+			maxValue = Math.max(maxValue, alert.getActualValue());
+		}
+
+		/**
+		 * Wait for the result of the first alert of the window.
+		 *
+		 * @return number of notifications of the first alert
+		 * @throws IssueCreationFailedException if the first alert failed to create an
+		 *                                      issue
+		 * @throws IssueLinkageFailedException  if the first alert failed to link an
+		 *                                      issue
+		 */
+		public int await() throws IssueCreationFailedException, IssueLinkageFailedException {
+			try {
+				return result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while waiting for coalesced alert", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IssueCreationFailedException) {
+					throw (IssueCreationFailedException) cause;
+				}
+				if (cause instanceof IssueLinkageFailedException) {
+					throw (IssueLinkageFailedException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+
+		public String getProjectId() {
+			return key.projectId;
+		}
+
+		public String getSloId() {
+			return key.sloId;
+		}
+
+		public synchronized int getAlerts() {
+			return alerts;
+		}
+
+		public synchronized LocalDateTime getFirstAlertTime() {
+			return firstAlertTime;
+		}
+
+		public synchronized LocalDateTime getLastAlertTime() {
+			return lastAlertTime;
+		}
+
+		public synchronized double getMinValue() {
+			return minValue;
+		}
+
+		public synchronized double getMaxValue() {
+			return maxValue;
+		}
+	}
+
+	/**
+	 * Identifies the windows of a rule of a project.
+	 */
+	private static final class Key {
+		private final String projectId;
+		private final String sloId;
+
+		private Key(String projectId, String sloId) {
+			this.projectId = projectId;
+			this.sloId = sloId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return Objects.equals(projectId, other.projectId) && Objects.equals(sloId, other.sloId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(projectId, sloId);
+		}
+	}
+}
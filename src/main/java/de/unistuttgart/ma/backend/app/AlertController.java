@@ -1,105 +1,447 @@
 package de.unistuttgart.ma.backend.app;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
-import com.shopify.graphql.support.ID;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
-import de.unistuttgart.gropius.IssueLocation;
-import de.unistuttgart.gropius.slo.SloRule;
 import de.unistuttgart.ma.backend.exceptions.IssueCreationFailedException;
 import de.unistuttgart.ma.backend.exceptions.IssueLinkageFailedException;
-import de.unistuttgart.ma.backend.repository.SystemRepositoryProxy;
 import de.unistuttgart.ma.backend.rest.Alert;
-import de.unistuttgart.ma.saga.System;
-import de.unistuttgart.ma.impact.ImpactFactory;
-import de.unistuttgart.ma.impact.Notification;
-import de.unistuttgart.ma.impact.Violation;
+import de.unistuttgart.ma.backend.rest.AlertStatus;
+import de.unistuttgart.ma.backend.rest.ProjectQueueStatus;
 
 /**
- * Controller with an end point to receive alerts from a monitoring tool.
+ * Controller with end points to receive alerts from a monitoring tool.
  * 
- * Upon receiving an alert it calculates the impacts of the reported violation,
- * creates an issue for each impact that reaches the business process and links
- * each created issue to the issue that the SLA manager (solomon) supposedly
- * created for the initial violation.
+ * Upon receiving an alert, the {@link AlertService} calculates the impacts of
+ * the reported violation and creates issues for them. Depending on the
+ * {@link AlertDispatcher}, that either happens right away, or the alert is
+ * accepted and processed in the background, and its status can be queried
+ * later on. Either way, the alert is journaled before it is acknowledged.
  * 
- * Currently, gropius can only attach issues to components of interface.
- * however the hereby calculated impact is on the business process. until there
- * is an option to attach an issue to the entire project of gropius, all issues
- * will be attached to the root cause component, even though that is not
- * practicable, as it implies that the user already knows the root cause to look
- * up the issue.
+ * Alerts may also be streamed, as newline delimited JSON, e.g. to replay the
+ * backlog of an incident over a single connection. The status of each streamed
+ * alert is streamed back once the alert is finished. Each stream is read on a
+ * thread of its own, up to a maximum number of streams at once, further
+ * streams are rejected.
  * 
  */
 @RestController
 public class AlertController {
 
-	private final CalculateNotificationService notificationService;
-	private final CreateIssueService issueService;
-	private final SystemRepositoryProxy systemRepoProxy;
+	/**
+	 * media type of newline delimited JSON.
+	 */
+	public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+	private final AlertDispatcher dispatcher;
+	private final ObjectReader reader;
+	private final ObjectWriter writer;
+
+	/**
+	 * maximum duration of a stream of alerts, in milliseconds.
+	 */
+	private final long streamTimeout;
+	/**
+	 * maximum number of alerts of a stream, that are in flight at once.
+	 */
+	private final int streamWindow;
+	/**
+	 * runs the streams of alerts, one thread per stream.
+	 */
+	private final ThreadPoolExecutor streams;
 
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
-	public AlertController(@Autowired CalculateNotificationService notificationService,
-			@Autowired SystemRepositoryProxy systemRepoProxy, @Autowired CreateIssueService issueService) {
-		assert (notificationService != null && systemRepoProxy != null && issueService != null);
-		this.notificationService = notificationService;
-		this.systemRepoProxy = systemRepoProxy;
-		this.issueService = issueService;
+	/**
+	 * Create a new controller, with the default stream timeout, window and
+	 * maximum number of streams.
+	 * 
+	 * @param dispatcher processes the alerts
+	 */
+	public AlertController(AlertDispatcher dispatcher) {
+		this(dispatcher, 600000, 16);
+	}
+
+	/**
+	 * Create a new controller, with the default maximum number of streams.
+	 * 
+	 * @param dispatcher    processes the alerts
+	 * @param streamTimeout maximum duration of a stream of alerts, in
+	 *                      milliseconds
+	 * @param streamWindow  maximum number of alerts of a stream in flight at once
+	 */
+	public AlertController(AlertDispatcher dispatcher, long streamTimeout, int streamWindow) {
+		this(dispatcher, streamTimeout, streamWindow, 16);
+	}
+
+	/**
+	 * Create a new controller.
+	 * 
+	 * @param dispatcher    processes the alerts
+	 * @param streamTimeout maximum duration of a stream of alerts, in
+	 *                      milliseconds
+	 * @param streamWindow  maximum number of alerts of a stream in flight at once
+	 * @param maxStreams    maximum number of streams of alerts at once
+	 */
+	@Autowired
+	public AlertController(@Autowired AlertDispatcher dispatcher,
+			@Value("${alerts.stream.timeout:600000}") long streamTimeout,
+			@Value("${alerts.stream.window:16}") int streamWindow,
+			@Value("${alerts.stream.max:16}") int maxStreams) {
+		assert (dispatcher != null);
+		if (streamTimeout < 1 || streamWindow < 1 || maxStreams < 1) {
+			throw new IllegalArgumentException("stream timeout, window and maximum number of streams must be positive.");
+		}
+		this.dispatcher = dispatcher;
+		this.streamTimeout = streamTimeout;
+		this.streamWindow = streamWindow;
+
+		AtomicInteger count = new AtomicInteger();
+		this.streams = new ThreadPoolExecutor(maxStreams, maxStreams, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+				runnable -> {
+					Thread thread = new Thread(runnable, "alert-stream-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.streams.allowCoreThreadTimeOut(true);
+
+		ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+		mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+		this.reader = mapper.readerFor(Alert.class);
+		this.writer = mapper.writerFor(AlertStatus.class);
 	}
 
 	/**
 	 * Receive alerts, get the violation, calculate its impacts and create issues.
 	 * 
-	 * Delegates the latter two taks to the respective services.
+	 * If the dispatcher is asynchronous, the alert is only validated and queued,
+	 * and the response is 202 with the status of the alert, including its
+	 * tracking id. Otherwise the alert is processed right away.
+	 * 
+	 * If the alert was delivered before, it is not processed again, and the
+	 * response has the status of the earlier delivery, with 202 if that is not
+	 * yet finished.
 	 * 
 	 * @param alert the alert
+	 * @return status of the alert
 	 * @throws IssueCreationFailedException if an issue could not be created
 	 * @throws IssueLinkageFailedException  if an issue could not be linked
 	 */
 	@PostMapping("/api/alert")
-	public void receiveAlert(@RequestBody Alert alert)
+	public ResponseEntity<AlertStatus> receiveAlert(@RequestBody Alert alert)
 			throws IssueCreationFailedException, IssueLinkageFailedException {
 		if (alert == null) {
 			throw new IllegalArgumentException("Alert is null");
 		}
 		logger.info(String.format("received alert for SLO rule %s", alert.getSloName()));
 
-		String sloId = alert.getSloId();
-		String archId = alert.getGropiusProjectId();
-		ID relatedIssueId = new ID(alert.getIssueId());
+		if (dispatcher.isAsync()) {
+			AlertStatus status = dispatcher.submit(alert);
+			return ResponseEntity.accepted().location(URI.create("/api/alert/" + status.getId())).body(status);
+		}
+		AlertStatus status = dispatcher.process(alert);
+		if (!status.isFinished()) {
+			return ResponseEntity.accepted().location(URI.create("/api/alert/" + status.getId())).body(status);
+		}
+		return ResponseEntity.ok(status);
+	}
 
-		System system = systemRepoProxy.findByArchitectureId(archId);
-		SloRule rule = system.getSloById(sloId);
+	/**
+	 * Receive multiple alerts at once, e.g. during an incident.
+	 * 
+	 * The alerts are processed as one batch, i.e. grouped by project, with one
+	 * impact calculation and one pass of issue operations per project. If the
+	 * dispatcher is asynchronous, the batch is only validated and queued, and the
+	 * response is 202 with the status of each alert, including its tracking id.
+	 * Otherwise the batch is processed right away, and the response has the
+	 * outcome of each alert.
+	 * 
+	 * @param alerts the alerts
+	 * @return status of each alert, in the order of the alerts
+	 */
+	@PostMapping("/api/alerts")
+	public ResponseEntity<List<AlertStatus>> receiveAlerts(@RequestBody List<Alert> alerts) {
+		if (alerts == null || alerts.contains(null)) {
+			throw new IllegalArgumentException("Alert is null");
+		}
+		logger.info(String.format("received %d alerts", alerts.size()));
 
-		Violation v = ImpactFactory.eINSTANCE.createViolation();
-		v.setViolatedRule(rule);
-		v.setPeriod(alert.getActualPeriod());
-		v.setThreshold(alert.getActualValue());
-		v.setStartTime(alert.getAlertTime());
+		if (dispatcher.isAsync()) {
+			return ResponseEntity.accepted().body(dispatcher.submitBatch(alerts));
+		}
+		return ResponseEntity.ok(dispatcher.processBatch(alerts));
+	}
 
-		Set<Notification> notes = notificationService.calculateImpacts(v);
-		logger.info(String.format("calculated %d impacts", notes.size()));
+	/**
+	 * Receive a stream of alerts, as newline delimited JSON, and stream the status
+	 * of each alert back, in the same format and order.
+	 * 
+	 * The stream is read and answered on a thread of its own, see
+	 * {@link #streamAlerts(InputStream, OutputStream)}. Instead of the default
+	 * timeout of asynchronous requests, the stream times out after the configured
+	 * stream timeout. If the maximum number of streams is already read, the
+	 * stream is rejected with 429.
+	 * 
+	 * @param body the alerts, as newline delimited JSON
+	 * @return the statuses of the alerts, as newline delimited JSON
+	 * @throws RejectedExecutionException if there are too many streams
+	 */
+	@PostMapping(value = "/api/alerts/stream", consumes = APPLICATION_NDJSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<ResponseBodyEmitter> receiveAlertStream(InputStream body) {
+		MediaType type = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+		ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeout);
+		try {
+			streams.execute(() -> {
+				try {
+					streamAlerts(body, new EmitterStream(emitter, type));
+					emitter.complete();
+				} catch (IOException | RuntimeException e) {
+					logger.error(String.format("alert stream ended : %s", e.getMessage()));
+					emitter.completeWithError(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			throw new RejectedExecutionException(
+					String.format("Too many alert streams, at most %d are read at once", streams.getMaximumPoolSize()), e);
+		}
+		return ResponseEntity.ok().contentType(type).body(emitter);
+	}
 
-		for (Notification notification : notes) {
-			// TODO : if ever possible do attach issue to more suitable location
-			IssueLocation location = rule.getGropiusComponent();
+	/**
+	 * Read alerts, as newline delimited JSON, and write the status of each alert,
+	 * in the same format and order.
+	 * 
+	 * The alerts are parsed one by one, as they arrive, and each alert is handed
+	 * to the dispatcher before the next one is read. The status of an alert is
+	 * written as soon as the alert is finished and all alerts before it are
+	 * written. If the dispatcher is asynchronous, the alerts are queued, and at
+	 * most as many alerts as the stream window are in flight, further alerts are
+	 * only read once the oldest one is finished. If the queue is full, the alerts
+	 * in flight are awaited first, and if it is still full, the alert is processed
+	 * on the streaming thread, which slows down reading the stream instead of
+	 * rejecting alerts. Otherwise each alert is processed right away.
+	 * 
+	 * An alert that is not finished before the stream timeout, counted from the
+	 * start of the stream, is written with its current status, whose id can be
+	 * used to track it.
+	 * 
+	 * An alert that fails, or that can not be mapped, gets a failed status,
+	 * without ending the stream. Malformed JSON ends the stream, with a failed
+	 * status as last line.
+	 * 
+	 * @param body the alerts, as newline delimited JSON
+	 * @param out  receives the statuses of the alerts, as newline delimited JSON
+	 * @throws IOException if the body could not be read or the statuses could not
+	 *                     be written
+	 */
+	public void streamAlerts(InputStream body, OutputStream out) throws IOException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(streamTimeout);
+		Deque<AlertStatus> inFlight = new ArrayDeque<>();
+		int count = 0;
+		try (MappingIterator<Alert> alerts = reader.readValues(body)) {
+			while (alerts.hasNextValue()) {
+				Alert alert;
+				try {
+					alert = alerts.nextValue();
+				} catch (JsonMappingException e) {
+					inFlight.add(failedStatus(new Alert(), e.getOriginalMessage()));
+					writeFinished(out, inFlight, streamWindow, deadline);
+					continue;
+				}
+				if (alert == null) {
+					inFlight.add(failedStatus(new Alert(), "Alert is null"));
+				} else {
+					inFlight.add(processStreamed(alert, out, inFlight, deadline));
+					count++;
+				}
+				writeFinished(out, inFlight, streamWindow, deadline);
+			}
+		} catch (JsonParseException e) {
+			inFlight.add(failedStatus(new Alert(), e.getOriginalMessage()));
+		}
+		writeFinished(out, inFlight, 0, deadline);
+		logger.info(String.format("received %d streamed alerts", count));
+	}
+
+	/**
+	 * Hand a streamed alert to the dispatcher.
+	 * 
+	 * @param alert    the alert
+	 * @param out      receives the statuses of the alerts
+	 * @param inFlight statuses of the alerts before, that are not yet written
+	 * @param deadline end of the stream, in nano seconds
+	 * @return status of the alert, failed if the alert could not be processed
+	 * @throws IOException if the statuses could not be written
+	 */
+	private AlertStatus processStreamed(Alert alert, OutputStream out, Deque<AlertStatus> inFlight, long deadline)
+			throws IOException {
+		try {
+			if (dispatcher.isAsync()) {
+				try {
+					return dispatcher.submit(alert);
+				} catch (RejectedExecutionException e) {
+					writeFinished(out, inFlight, 0, deadline);
+				}
+				try {
+					return dispatcher.submit(alert);
+				} catch (RejectedExecutionException e) {
+					return dispatcher.process(alert);
+				}
+			}
+			return dispatcher.process(alert);
+		} catch (IssueCreationFailedException | IssueLinkageFailedException | RuntimeException e) {
+			logger.error(String.format("could not process streamed alert for SLO rule %s : %s", alert.getSloName(),
+					e.getMessage()));
+			return failedStatus(alert, e.getMessage());
+		}
+	}
+
+	private AlertStatus failedStatus(Alert alert, String error) {
+		AlertStatus status = new AlertStatus(UUID.randomUUID().toString(), alert);
+		status.failed(error);
+		return status;
+	}
+
+	/**
+	 * Write the statuses of the alerts in flight in order, as long as they are
+	 * finished, and wait for the oldest ones while more than the given number of
+	 * alerts are in flight.
+	 * 
+	 * @param out      receives the statuses
+	 * @param inFlight statuses that are not yet written, oldest first
+	 * @param window   maximum number of statuses to leave unwritten
+	 * @param deadline end of the stream, in nano seconds, after which statuses
+	 *                 are written without waiting
+	 * @throws IOException if a status could not be written
+	 */
+	private void writeFinished(OutputStream out, Deque<AlertStatus> inFlight, int window, long deadline)
+			throws IOException {
+		while (!inFlight.isEmpty() && (inFlight.size() > window || inFlight.peek().isFinished())) {
+			AlertStatus status = inFlight.poll();
+			try {
+				status.await(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			writeStatus(out, status);
+		}
+	}
+
+	/**
+	 * Write a status as one line, and flush it to the client right away.
+	 */
+	private void writeStatus(OutputStream out, AlertStatus status) throws IOException {
+		out.write(writer.writeValueAsBytes(status));
+		out.write('\n');
+		out.flush();
+	}
+
+	/**
+	 * Stop the threads of the streams.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		streams.shutdownNow();
+	}
+
+	/**
+	 * Sends everything written since the last flush to an emitter.
+	 */
+	private static class EmitterStream extends ByteArrayOutputStream {
+		private final ResponseBodyEmitter emitter;
+		private final MediaType type;
+
+		private EmitterStream(ResponseBodyEmitter emitter, MediaType type) {
+			this.emitter = emitter;
+			this.type = type;
+		}
+
+		@Override
+		public synchronized void flush() throws IOException {
+			emitter.send(toByteArray(), type);
+			reset();
+		}
+	}
 
-			ID issueId = issueService.createIssue(notification, location);
-			issueService.linkIssue(issueId, relatedIssueId);
+	/**
+	 * Get the status of an alert that was accepted for asynchronous processing.
+	 * 
+	 * @param id tracking id of the alert
+	 * @return status of the alert, or 404 if the alert is not or no longer
+	 *         tracked
+	 */
+	@GetMapping("/api/alert/{id}")
+	public ResponseEntity<AlertStatus> getAlertStatus(@PathVariable String id) {
+		AlertStatus status = dispatcher.getStatus(id);
+		if (status == null) {
+			return ResponseEntity.notFound().build();
 		}
+		return ResponseEntity.ok(status);
+	}
+
+	/**
+	 * Get the state of the queue of each project, i.e. the number of queued and
+	 * running alerts, and how long alerts waited for a worker.
+	 * 
+	 * @return status of each project's queue
+	 */
+	@GetMapping("/api/alerts/queues")
+	public ResponseEntity<List<ProjectQueueStatus>> getProjectQueues() {
+		return ResponseEntity.ok(dispatcher.getProjectQueues());
+	}
+
+	@ExceptionHandler(RejectedExecutionException.class)
+	@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+	public ResponseEntity<String> rejectedExecutionException(RejectedExecutionException exception) {
+		return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1")
+				.body(exception.getMessage());
+	}
+
+	@ExceptionHandler(UncheckedIOException.class)
+	@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+	public ResponseEntity<String> uncheckedIOException(UncheckedIOException exception) {
+		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(exception.getMessage());
 	}
 
 	@ExceptionHandler(NoSuchElementException.class)
@@ -0,0 +1,594 @@
+package de.unistuttgart.ma.backend.app;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import de.unistuttgart.ma.backend.exceptions.IssueCreationFailedException;
+import de.unistuttgart.ma.backend.exceptions.IssueLinkageFailedException;
+import de.unistuttgart.ma.backend.repository.AlertJournal;
+import de.unistuttgart.ma.backend.rest.Alert;
+import de.unistuttgart.ma.backend.rest.AlertStatus;
+import de.unistuttgart.ma.backend.rest.ProjectQueueStatus;
+
+/**
+ * An {@code AlertDispatcher} processes alerts asynchronously on a pool of
+ * worker threads.
+ * 
+ * Alerts are validated on the submitting thread, and then put into the queue
+ * of their Gropius project in the {@link AlertScheduler}, that the workers
+ * drain weighted fair across projects. Each project may be limited to a number
+ * of alerts processed at once, and its alerts may be ordered by the breadth of
+ * their impact, i.e. the number of saga steps they reach. If too many alerts
+ * are queued, the alert is rejected right away, instead of blocking the
+ * submitting thread. The status of each
+ * accepted alert is tracked under a generated id, up to a maximum number of
+ * statuses, the oldest statuses are dropped first.
+ * 
+ * Unless the dispatcher is asynchronous, alerts are processed on the thread
+ * that receives them, as before.
+ * 
+ * Either way, each alert is appended to the {@link AlertJournal} before it is
+ * acknowledged, and completed in the journal once it is processed, successful
+ * or not. An alert that can not be journaled fails, and is not remembered as
+ * delivered. Alerts that the journal recovered from a previous run are queued
+ * again, once the application is ready.
+ * 
+ * Repeated deliveries of an alert get the status of the first delivery from
+ * the {@link IdempotencyStore}, and are neither journaled nor processed again.
+ *
+ */
+@Component
+public class AlertDispatcher {
+
+	private final AlertService alertService;
+	private final AlertJournal journal;
+	private final IdempotencyStore idempotency;
+	private final boolean async;
+	private final int maxTracked;
+	private final boolean prioritize;
+
+	private final AlertScheduler workers;
+
+	/**
+	 * maps tracking ids to statuses, in order of submission.
+	 */
+	private final Map<String, AlertStatus> statuses;
+
+	private final AtomicLong rejected;
+	private final AtomicLong processed;
+	private final AtomicLong failed;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Create a new dispatcher and start its workers, without bulkheads, weights
+	 * or priorities.
+	 * 
+	 * @param alertService processes the alerts
+	 * @param journal      persists the alerts until they are processed
+	 * @param idempotency  remembers the statuses of recent alerts
+	 * @param async        whether to process alerts asynchronously at all
+	 * @param workers      number of worker threads
+	 * @param capacity     maximum number of queued alerts
+	 * @param maxTracked   maximum number of tracked statuses
+	 */
+	public AlertDispatcher(AlertService alertService, AlertJournal journal, IdempotencyStore idempotency,
+			boolean async, int workers, int capacity, int maxTracked) {
+		this(alertService, journal, idempotency, async, workers, capacity, maxTracked, 0, "", false);
+	}
+
+	/**
+	 * Create a new dispatcher and start its workers.
+	 * 
+	 * @param alertService processes the alerts
+	 * @param journal      persists the alerts until they are processed
+	 * @param idempotency  remembers the statuses of recent alerts
+	 * @param async        whether to process alerts asynchronously at all
+	 * @param workers      number of worker threads
+	 * @param capacity     maximum number of queued alerts
+	 * @param maxTracked   maximum number of tracked statuses
+	 * @param bulkhead     maximum number of alerts per project processed at once,
+	 *                     0 for no limit
+	 * @param weights      weights of the projects, as comma separated
+	 *                     {@code projectId=weight} pairs
+	 * @param prioritize   whether to process the alerts of a project with the
+	 *                     broadest impact first
+	 */
+	@Autowired
+	public AlertDispatcher(@Autowired AlertService alertService, @Autowired AlertJournal journal,
+			@Autowired IdempotencyStore idempotency, @Value("${alerts.async:false}") boolean async, @Value("${alerts.workers:4}") int workers,
+			@Value("${alerts.capacity:256}") int capacity, @Value("${alerts.maxtracked:1024}") int maxTracked,
+			@Value("${alerts.bulkhead:0}") int bulkhead, @Value("${alerts.weights:}") String weights,
+			@Value("${alerts.prioritize:false}") boolean prioritize) {
+		assert (alertService != null && journal != null && idempotency != null);
+		if (workers < 1 || capacity < 1 || maxTracked < 1) {
+			throw new IllegalArgumentException("workers, capacity and tracked statuses must be positive.");
+		}
+		this.alertService = alertService;
+		this.journal = journal;
+		this.idempotency = idempotency;
+		this.async = async;
+		this.maxTracked = maxTracked;
+		this.prioritize = prioritize;
+
+		this.workers = new AlertScheduler("alert-worker-", workers, capacity, bulkhead, parseWeights(weights));
+
+		this.statuses = new LinkedHashMap<>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, AlertStatus> eldest) {
+				return size() > AlertDispatcher.this.maxTracked;
+			}
+		};
+		this.rejected = new AtomicLong();
+		this.processed = new AtomicLong();
+		this.failed = new AtomicLong();
+	}
+
+	/**
+	 * Check whether alerts are processed asynchronously.
+	 * 
+	 * @return true iff alerts should be submitted to this dispatcher
+	 */
+	public boolean isAsync() {
+		return async;
+	}
+
+	/**
+	 * Journal an alert and process it on the calling thread.
+	 * 
+	 * If the alert was delivered before, it is not processed again, and the
+	 * status of the earlier delivery is returned instead, which may not be
+	 * finished yet. Thus the status is tracked, just as the status of a queued
+	 * alert, such that it can be looked up by its id.
+	 * 
+	 * @param alert the alert
+	 * @return status of the alert
+	 * @throws IssueCreationFailedException if an issue could not be created
+	 * @throws IssueLinkageFailedException  if an issue could not be linked
+	 */
+	public AlertStatus process(Alert alert) throws IssueCreationFailedException, IssueLinkageFailedException {
+		AlertStatus known = idempotency.get(alert);
+		if (known != null) {
+			return known;
+		}
+		alertService.validate(alert);
+
+		AlertStatus status = new AlertStatus(UUID.randomUUID().toString(), alert);
+		known = idempotency.putIfAbsent(alert, status);
+		if (known != null) {
+			return known;
+		}
+
+		long entry = append(alert, status);
+		synchronized (statuses) {
+			statuses.put(status.getId(), status);
+		}
+		status.processing();
+		try {
+			status.done(alertService.process(alert));
+			return status;
+		} catch (IssueCreationFailedException | IssueLinkageFailedException | RuntimeException e) {
+			status.failed(e.getMessage());
+			idempotency.forget(alert, status);
+			throw e;
+		} finally {
+			journal.complete(entry);
+		}
+	}
+
+	/**
+	 * Journal multiple alerts and process them as one batch on the calling
+	 * thread.
+	 * 
+	 * @param alerts the alerts
+	 * @return status of each alert, in the order of the alerts
+	 */
+	public List<AlertStatus> processBatch(List<Alert> alerts) {
+		List<AlertStatus> statuses = new ArrayList<>(alerts.size());
+		List<Alert> fresh = new ArrayList<>();
+		List<AlertStatus> freshStatuses = new ArrayList<>();
+		List<Long> entries = new ArrayList<>();
+		for (Alert alert : alerts) {
+			AlertStatus status = new AlertStatus(UUID.randomUUID().toString(), alert);
+			AlertStatus known = idempotency.putIfAbsent(alert, status);
+			if (known != null) {
+				statuses.add(known);
+				continue;
+			}
+			synchronized (this.statuses) {
+				this.statuses.put(status.getId(), status);
+			}
+			statuses.add(status);
+			try {
+				entries.add(append(alert, status));
+			} catch (RuntimeException e) {
+				continue;
+			}
+			fresh.add(alert);
+			freshStatuses.add(status);
+		}
+		try {
+			alertService.processBatch(fresh, freshStatuses);
+		} finally {
+			for (long entry : entries) {
+				journal.complete(entry);
+			}
+			forgetFailed(fresh, freshStatuses);
+		}
+		return statuses;
+	}
+
+	/**
+	 * Validate an alert and queue it for processing.
+	 * 
+	 * @param alert the alert
+	 * @return status of the alert, with its tracking id
+	 * @throws RejectedExecutionException if the queue is full
+	 */
+	public AlertStatus submit(Alert alert) {
+		AlertStatus known = idempotency.get(alert);
+		if (known != null) {
+			return known;
+		}
+		alertService.validate(alert);
+
+		AlertStatus status = new AlertStatus(UUID.randomUUID().toString(), alert);
+		known = idempotency.putIfAbsent(alert, status);
+		if (known != null) {
+			return known;
+		}
+		long entry = append(alert, status);
+		synchronized (statuses) {
+			statuses.put(status.getId(), status);
+		}
+		try {
+			workers.submit(alert.getGropiusProjectId(), priorityOf(alert), () -> process(alert, status, entry));
+		} catch (RejectedExecutionException e) {
+			synchronized (statuses) {
+				statuses.remove(status.getId());
+			}
+			journal.complete(entry);
+			idempotency.forget(alert, status);
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException(
+					String.format("Too many queued alerts, rejected alert for SLO rule %s", alert.getSloName()), e);
+		}
+		return status;
+	}
+
+	/**
+	 * Queue multiple alerts for processing in one batch.
+	 * 
+	 * Each alert gets a status of its own. Alerts that are not valid fail right
+	 * away, the valid ones of each project are processed together, as one task
+	 * of the project's queue. If the queue is full for some projects only, their
+	 * alerts fail right away. Alerts that were delivered before get the status of
+	 * the earlier delivery.
+	 *
+	 * @param alerts the alerts
+	 * @return status of each alert, in the order of the alerts
+	 * @throws RejectedExecutionException if the queue is full for all alerts
+	 */
+	public List<AlertStatus> submitBatch(List<Alert> alerts) {
+		List<AlertStatus> statuses = new ArrayList<>(alerts.size());
+		List<Alert> valid = new ArrayList<>();
+		List<AlertStatus> validStatuses = new ArrayList<>();
+		List<Long> entries = new ArrayList<>();
+		for (Alert alert : alerts) {
+			AlertStatus known = idempotency.get(alert);
+			if (known != null) {
+				statuses.add(known);
+				continue;
+			}
+			AlertStatus status = new AlertStatus(UUID.randomUUID().toString(), alert);
+			try {
+				alertService.validate(alert);
+				known = idempotency.putIfAbsent(alert, status);
+				if (known != null) {
+					statuses.add(known);
+					continue;
+				}
+				entries.add(append(alert, status));
+				valid.add(alert);
+				validStatuses.add(status);
+			} catch (NoSuchElementException | IllegalArgumentException | UncheckedIOException e) {
+				status.failed(e.getMessage());
+				failed.incrementAndGet();
+			}
+			statuses.add(status);
+		}
+
+		synchronized (this.statuses) {
+			for (AlertStatus status : statuses) {
+				this.statuses.put(status.getId(), status);
+			}
+		}
+		if (valid.isEmpty()) {
+			return statuses;
+		}
+
+		Map<String, List<Integer>> byProject = new LinkedHashMap<>();
+		for (int i = 0; i < valid.size(); i++) {
+			byProject.computeIfAbsent(valid.get(i).getGropiusProjectId(), id -> new ArrayList<>()).add(i);
+		}
+		List<Integer> unqueued = new ArrayList<>();
+		RejectedExecutionException rejection = null;
+		for (Map.Entry<String, List<Integer>> project : byProject.entrySet()) {
+			List<Alert> projectAlerts = new ArrayList<>();
+			List<AlertStatus> projectStatuses = new ArrayList<>();
+			List<Long> projectEntries = new ArrayList<>();
+			int priority = 0;
+			for (int i : project.getValue()) {
+				projectAlerts.add(valid.get(i));
+				projectStatuses.add(validStatuses.get(i));
+				projectEntries.add(entries.get(i));
+				priority = Math.max(priority, priorityOf(valid.get(i)));
+			}
+			try {
+				workers.submit(project.getKey(), priority,
+						() -> processBatch(projectAlerts, projectStatuses, projectEntries));
+			} catch (RejectedExecutionException e) {
+				unqueued.addAll(project.getValue());
+				rejection = e;
+			}
+		}
+		if (unqueued.isEmpty()) {
+			return statuses;
+		}
+
+		for (int i : unqueued) {
+			journal.complete(entries.get(i));
+			idempotency.forget(valid.get(i), validStatuses.get(i));
+		}
+		rejected.addAndGet(unqueued.size());
+		if (unqueued.size() < valid.size()) {
+			for (int i : unqueued) {
+				validStatuses.get(i).failed(String.format("Too many queued alerts, rejected alert for SLO rule %s",
+						valid.get(i).getSloName()));
+			}
+			return statuses;
+		}
+		synchronized (this.statuses) {
+			for (AlertStatus status : statuses) {
+				this.statuses.remove(status.getId());
+			}
+		}
+		throw new RejectedExecutionException(
+				String.format("Too many queued alerts, rejected batch of %d alerts", alerts.size()), rejection);
+	}
+
+	/**
+	 * Get the status of a tracked alert.
+	 * 
+	 * @param id tracking id of the alert
+	 * @return the status, or null if the alert is not or no longer tracked
+	 */
+	public AlertStatus getStatus(String id) {
+		synchronized (statuses) {
+			return statuses.get(id);
+		}
+	}
+
+	/**
+	 * Queue the alerts that the journal recovered from a previous run, and track
+	 * their outcomes.
+	 * 
+	 * Recovered alerts whose delivery is already known were processed before
+	 * their entries were completed, such that only their entries are completed.
+	 * Alerts that do not fit into the queue stay in the journal, and are
+	 * recovered again at the next start.
+	 * 
+	 * @return number of queued alerts
+	 */
+	public int replay() {
+		Map<Long, Alert> recovered = journal.getRecovered();
+		int queued = 0;
+		for (Map.Entry<Long, Alert> recoveredEntry : recovered.entrySet()) {
+			Alert alert = recoveredEntry.getValue();
+			long entry = recoveredEntry.getKey();
+			AlertStatus status = new AlertStatus(UUID.randomUUID().toString(), alert);
+			if (idempotency.putIfAbsent(alert, status) != null) {
+				journal.complete(entry);
+				continue;
+			}
+			synchronized (statuses) {
+				statuses.put(status.getId(), status);
+			}
+			try {
+				workers.submit(alert.getGropiusProjectId(), priorityOf(alert), () -> process(alert, status, entry));
+				queued++;
+			} catch (RejectedExecutionException e) {
+				synchronized (statuses) {
+					statuses.remove(status.getId());
+				}
+				idempotency.forget(alert, status);
+				rejected.incrementAndGet();
+			}
+		}
+		logger.info(String.format("replayed %d of %d alerts from the journal.", queued, recovered.size()));
+		return queued;
+	}
+
+	/**
+	 * Replay the recovered alerts, once the application is ready to process
+	 * them.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void replayWhenReady() {
+		if (!journal.getRecovered().isEmpty()) {
+			replay();
+		}
+	}
+
+	/**
+	 * Append an alert to the journal. If that fails, the status of the alert
+	 * fails, and the delivery is forgotten again, such that retries are not
+	 * answered with a status that never finishes.
+	 * 
+	 * @return the entry of the alert in the journal
+	 */
+	private long append(Alert alert, AlertStatus status) {
+		try {
+			return journal.append(alert);
+		} catch (RuntimeException e) {
+			status.failed(e.getMessage());
+			idempotency.forget(alert, status);
+			throw e;
+		}
+	}
+
+	/**
+	 * Process an alert on a worker thread, track the outcome and complete its
+	 * entry in the journal.
+	 */
+	private void process(Alert alert, AlertStatus status, long entry) {
+		status.processing();
+		try {
+			status.done(alertService.process(alert));
+			processed.incrementAndGet();
+		} catch (Exception e) {
+			status.failed(e.getMessage());
+			idempotency.forget(alert, status);
+			failed.incrementAndGet();
+			logger.error(String.format("could not process alert %s for SLO rule %s : %s", status.getId(),
+					alert.getSloName(), e.getMessage()));
+		} finally {
+			journal.complete(entry);
+		}
+	}
+
+	/**
+	 * Process a batch of alerts on a worker thread, count the outcomes and
+	 * complete their entries in the journal.
+	 */
+	private void processBatch(List<Alert> alerts, List<AlertStatus> statuses, List<Long> entries) {
+		try {
+			alertService.processBatch(alerts, statuses);
+		} finally {
+			for (long entry : entries) {
+				journal.complete(entry);
+			}
+			forgetFailed(alerts, statuses);
+		}
+		for (AlertStatus status : statuses) {
+			if (status.getState() == AlertStatus.State.DONE) {
+				processed.incrementAndGet();
+			} else {
+				failed.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Forget the failed alerts of a batch, such that their retries are processed
+	 * again.
+	 */
+	private void forgetFailed(List<Alert> alerts, List<AlertStatus> statuses) {
+		for (int i = 0; i < alerts.size(); i++) {
+			if (statuses.get(i).getState() != AlertStatus.State.DONE) {
+				idempotency.forget(alerts.get(i), statuses.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Get the priority of an alert within the queue of its project.
+	 * 
+	 * @return number of saga steps the alert reaches, if alerts are prioritized,
+	 *         0 otherwise
+	 */
+	private int priorityOf(Alert alert) {
+		if (!prioritize) {
+			return 0;
+		}
+		try {
+			return alertService.estimateBreadth(alert);
+		} catch (RuntimeException e) {
+			logger.warn(String.format("could not estimate impact of alert for SLO rule %s : %s", alert.getSloName(),
+					e.getMessage()));
+			return 0;
+		}
+	}
+
+	/**
+	 * Parse the weights of the projects.
+	 * 
+	 * @param weights comma separated {@code projectId=weight} pairs, may be empty
+	 * @return weight of each project
+	 */
+	static Map<String, Integer> parseWeights(String weights) {
+		Map<String, Integer> parsed = new LinkedHashMap<>();
+		if (weights == null || weights.isBlank()) {
+			return parsed;
+		}
+		for (String pair : weights.split(",")) {
+			String[] parts = pair.split("=");
+			if (parts.length != 2 || parts[0].isBlank()) {
+				throw new IllegalArgumentException(String.format("malformed project weight %s.", pair));
+			}
+			parsed.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+		}
+		return parsed;
+	}
+
+	/**
+	 * Get the number of alerts that wait for a worker.
+	 * 
+	 * @return number of queued alerts
+	 */
+	public int getQueueDepth() {
+		return workers.getQueueDepth();
+	}
+
+	/**
+	 * Get the state of the queue of each project.
+	 * 
+	 * @return status of each project's queue
+	 */
+	public List<ProjectQueueStatus> getProjectQueues() {
+		return workers.getProjectStatuses();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	public long getProcessed() {
+		return processed.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * Stop accepting alerts, and wait for the queued ones to be processed.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		int left = workers.shutdown(30, TimeUnit.SECONDS);
+		if (left > 0) {
+			logger.warn(String.format("%d alerts were not processed before shutdown.", left));
+		}
+	}
+}
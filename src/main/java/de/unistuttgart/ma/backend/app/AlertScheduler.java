@@ -0,0 +1,297 @@
+package de.unistuttgart.ma.backend.app;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.unistuttgart.ma.backend.rest.ProjectQueueStatus;
+
+/**
+ * An {@code AlertScheduler} runs tasks on a fixed number of worker threads,
+ * with one queue per Gropius project, such that a noisy project can not starve
+ * the others.
+ *
+ * Projects are served weighted fair, by stride scheduling: each project has a
+ * pass, that advances by the inverse of its weight with every task it gets,
+ * and the next task always comes from the project with the lowest pass. A
+ * project, that was idle, starts with the pass of the last served project, and
+ * thus gets no credit for its idle time. Within a project, tasks with higher
+ * priority come first, tasks with the same priority in order of submission.
+ *
+ * Each project is limited to a number of tasks running at once (its
+ * bulkhead), its further tasks wait, even if workers are idle. The number of
+ * waiting tasks of all projects is bounded, further tasks are rejected.
+ *
+ */
+public class AlertScheduler {
+
+	/**
+	 * pass increment of a project with weight 1.
+	 */
+	private static final long STRIDE = 1L << 20;
+
+	private final int capacity;
+	private final int bulkhead;
+	private final Map<String, Integer> weights;
+
+	/**
+	 * queue of each project that ever had a task, in order of their first task.
+	 */
+	private final Map<String, ProjectQueue> queues;
+
+	private final List<Thread> workers;
+
+	private int queued;
+	private long sequence;
+	/**
+	 * pass of the project that was served last.
+	 */
+	private long virtualTime;
+	private boolean running;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Create a new scheduler and start its workers.
+	 *
+	 * @param name     prefix of the names of the worker threads
+	 * @param workers  number of worker threads
+	 * @param capacity maximum number of waiting tasks of all projects
+	 * @param bulkhead maximum number of running tasks per project, 0 for no limit
+	 * @param weights  weight of each project, projects without weight have weight
+	 *                 1
+	 */
+	public AlertScheduler(String name, int workers, int capacity, int bulkhead, Map<String, Integer> weights) {
+		assert (name != null && weights != null);
+		if (workers < 1 || capacity < 1 || bulkhead < 0) {
+			throw new IllegalArgumentException("workers and capacity must be positive, bulkhead not negative.");
+		}
+		for (int weight : weights.values()) {
+			if (weight < 1) {
+				throw new IllegalArgumentException("weights must be positive.");
+			}
+		}
+		this.capacity = capacity;
+		this.bulkhead = bulkhead == 0 ? workers : bulkhead;
+		this.weights = Map.copyOf(weights);
+		this.queues = new LinkedHashMap<>();
+		this.running = true;
+
+		this.workers = new ArrayList<>(workers);
+		for (int i = 1; i <= workers; i++) {
+			Thread worker = new Thread(this::work, name + i);
+			worker.setDaemon(true);
+			this.workers.add(worker);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Queue a task of a project.
+	 *
+	 * @param projectId id of the Gropius project
+	 * @param priority  priority of the task within its project, higher first
+	 * @param task      the task
+	 * @throws RejectedExecutionException if the scheduler is shut down or too many
+	 *                                    tasks are waiting
+	 */
+	public synchronized void submit(String projectId, int priority, Runnable task) {
+		assert (task != null);
+		if (!running) {
+			throw new RejectedExecutionException("scheduler is shut down.");
+		}
+		if (queued >= capacity) {
+			throw new RejectedExecutionException(String.format("%d tasks are waiting already.", queued));
+		}
+
+		ProjectQueue queue = queues.computeIfAbsent(String.valueOf(projectId),
+				id -> new ProjectQueue(id, weights.getOrDefault(id, 1)));
+		if (queue.jobs.isEmpty() && queue.running == 0) {
+			queue.pass = Math.max(queue.pass, virtualTime);
+		}
+		queue.jobs.add(new Job(task, priority, sequence++, System.nanoTime()));
+		queued++;
+		notifyAll();
+	}
+
+	/**
+	 * Get the number of tasks of all projects, that wait for a worker.
+	 *
+	 * @return number of waiting tasks
+	 */
+	public synchronized int getQueueDepth() {
+		return queued;
+	}
+
+	/**
+	 * Get the state of the queue of each project.
+	 *
+	 * @return status of each project's queue, in order of their first task
+	 */
+	public synchronized List<ProjectQueueStatus> getProjectStatuses() {
+		List<ProjectQueueStatus> statuses = new ArrayList<>(queues.size());
+		for (ProjectQueue queue : queues.values()) {
+			long average = queue.dispatched == 0 ? 0 : queue.totalWaitNanos / queue.dispatched;
+			statuses.add(new ProjectQueueStatus(queue.projectId, queue.weight, queue.jobs.size(), queue.running,
+					queue.dispatched, TimeUnit.NANOSECONDS.toMillis(average),
+					TimeUnit.NANOSECONDS.toMillis(queue.maxWaitNanos)));
+		}
+		return statuses;
+	}
+
+	/**
+	 * Stop accepting tasks, and wait for the waiting ones to be processed.
+	 *
+	 * @param timeout maximum time to wait
+	 * @param unit    unit of the timeout
+	 * @return number of tasks that were not processed in time
+	 */
+	public int shutdown(long timeout, TimeUnit unit) {
+		synchronized (this) {
+			running = false;
+			notifyAll();
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		try {
+			for (Thread worker : workers) {
+				long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (left > 0) {
+					worker.join(left);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return getQueueDepth();
+	}
+
+	/**
+	 * Take tasks and run them, until the scheduler is shut down and no tasks are
+	 * left.
+	 */
+	private void work() {
+		while (true) {
+			Dispatch dispatch;
+			try {
+				dispatch = take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (dispatch == null) {
+				return;
+			}
+			try {
+				dispatch.job.task.run();
+			} catch (RuntimeException e) {
+				logger.error(String.format("task of project %s failed : %s", dispatch.queue.projectId,
+						e.getMessage()));
+			} finally {
+				finish(dispatch.queue);
+			}
+		}
+	}
+
+	/**
+	 * Wait for the next task, that may run.
+	 *
+	 * @return the next task, or null if the scheduler is shut down and no tasks
+	 *         are left
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private synchronized Dispatch take() throws InterruptedException {
+		while (true) {
+			ProjectQueue next = null;
+			for (ProjectQueue queue : queues.values()) {
+				if (!queue.jobs.isEmpty() && queue.running < bulkhead && (next == null || queue.pass < next.pass)) {
+					next = queue;
+				}
+			}
+			if (next != null) {
+				Job job = next.jobs.poll();
+				queued--;
+				virtualTime = next.pass;
+				next.pass += STRIDE / next.weight;
+				next.running++;
+				next.dispatched++;
+				long wait = System.nanoTime() - job.queuedAt;
+				next.totalWaitNanos += wait;
+				next.maxWaitNanos = Math.max(next.maxWaitNanos, wait);
+				return new Dispatch(next, job);
+			}
+			if (!running && queued == 0) {
+				return null;
+			}
+			wait();
+		}
+	}
+
+	/**
+	 * Free the bulkhead slot of a task that is done.
+	 *
+	 * @param queue queue of the task's project
+	 */
+	private synchronized void finish(ProjectQueue queue) {
+		queue.running--;
+		notifyAll();
+	}
+
+	/**
+	 * The waiting tasks of a project, and its statistics.
+	 */
+	private static class ProjectQueue {
+		private final String projectId;
+		private final int weight;
+		private final PriorityQueue<Job> jobs;
+
+		private long pass;
+		private int running;
+		private long dispatched;
+		private long totalWaitNanos;
+		private long maxWaitNanos;
+
+		private ProjectQueue(String projectId, int weight) {
+			this.projectId = projectId;
+			this.weight = weight;
+			this.jobs = new PriorityQueue<>(
+					Comparator.comparingInt((Job job) -> -job.priority).thenComparingLong(job -> job.sequence));
+		}
+	}
+
+	/**
+	 * A waiting task.
+	 */
+	private static class Job {
+		private final Runnable task;
+		private final int priority;
+		private final long sequence;
+		private final long queuedAt;
+
+		private Job(Runnable task, int priority, long sequence, long queuedAt) {
+			this.task = task;
+			this.priority = priority;
+			this.sequence = sequence;
+			this.queuedAt = queuedAt;
+		}
+	}
+
+	/**
+	 * A task handed to a worker, along with the queue it came from.
+	 */
+	private static class Dispatch {
+		private final ProjectQueue queue;
+		private final Job job;
+
+		private Dispatch(ProjectQueue queue, Job job) {
+			this.queue = queue;
+			this.job = job;
+		}
+	}
+}
@@ -0,0 +1,361 @@
+package de.unistuttgart.ma.backend.app;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.shopify.graphql.support.ID;
+
+import de.unistuttgart.gropius.IssueLocation;
+import de.unistuttgart.gropius.slo.SloRule;
+import de.unistuttgart.ma.backend.exceptions.IssueCreationFailedException;
+import de.unistuttgart.ma.backend.exceptions.IssueLinkageFailedException;
+import de.unistuttgart.ma.backend.propagation.PropagationResult;
+import de.unistuttgart.ma.backend.repository.SystemRepositoryProxy;
+import de.unistuttgart.ma.backend.rest.Alert;
+import de.unistuttgart.ma.backend.rest.AlertStatus;
+import de.unistuttgart.ma.impact.ImpactFactory;
+import de.unistuttgart.ma.impact.Notification;
+import de.unistuttgart.ma.impact.Violation;
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * Processes alerts, i.e. gets the violation, calculates its impacts and
+ * creates issues.
+ * 
+ * Upon processing an alert it calculates the impacts of the reported
+ * violation, creates an issue for each impact that reaches the business
+ * process and links each created issue to the issue that the SLA manager
+ * (solomon) supposedly created for the initial violation.
+ * 
+ * Currently, gropius can only attach issues to components of interface.
+ * however the hereby calculated impact is on the business process. until there
+ * is an option to attach an issue to the entire project of gropius, all issues
+ * will be attached to the root cause component, even though that is not
+ * practicable, as it implies that the user already knows the root cause to look
+ * up the issue.
+ */
+@Component
+public class AlertService {
+
+	private final CalculateNotificationService notificationService;
+	private final CreateIssueService issueService;
+	private final SystemRepositoryProxy systemRepoProxy;
+
+	/**
+	 * merges repeated alerts for the same rule.
+	 */
+	private final AlertCoalescer coalescer;
+
+	/**
+	 * runs the calls to gropius concurrently.
+	 */
+	private final IssueFanOut fanOut;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public AlertService(@Autowired CalculateNotificationService notificationService,
+			@Autowired SystemRepositoryProxy systemRepoProxy, @Autowired CreateIssueService issueService,
+			@Autowired AlertCoalescer coalescer, @Autowired IssueFanOut fanOut) {
+		assert (notificationService != null && systemRepoProxy != null && issueService != null
+				&& coalescer != null && fanOut != null);
+		this.notificationService = notificationService;
+		this.systemRepoProxy = systemRepoProxy;
+		this.issueService = issueService;
+		this.coalescer = coalescer;
+		this.fanOut = fanOut;
+	}
+
+	/**
+	 * Check that an alert can be processed, i.e. that there is a model for its
+	 * project and that the model has the violated rule.
+	 * 
+	 * @param alert the alert
+	 * @throws IllegalArgumentException if the alert is null
+	 * @throws NoSuchElementException   if there is no such model or rule
+	 */
+	public void validate(Alert alert) {
+		makeViolation(alert);
+	}
+
+	/**
+	 * Estimate how broad the impact of an alert's violation is.
+	 * 
+	 * @param alert the alert
+	 * @return number of saga steps, that the violation may impact
+	 * @throws NoSuchElementException if there is no model or rule for the alert
+	 */
+	public int estimateBreadth(Alert alert) {
+		return notificationService.estimateBreadth(makeViolation(alert));
+	}
+
+	/**
+	 * Get the violation, calculate its impacts and create issues.
+	 * 
+	 * If the {@link AlertCoalescer} has an open window for the alert's project and
+	 * rule, the alert is merged into it instead, and gets the result of the
+	 * window's first alert.
+	 * 
+	 * @param alert the alert
+	 * @return number of notifications, i.e. impacts that reached the business
+	 *         process
+	 * @throws IssueCreationFailedException if an issue could not be created
+	 * @throws IssueLinkageFailedException  if an issue could not be linked
+	 */
+	public int process(Alert alert) throws IssueCreationFailedException, IssueLinkageFailedException {
+		Violation v = makeViolation(alert);
+		if (!coalescer.isEnabled()) {
+			return process(alert, v);
+		}
+
+		AlertCoalescer.Admission admission = coalescer.admit(alert);
+		if (!admission.isFirst()) {
+			logger.info(String.format("merged alert for SLO rule %s into open window with %d alerts",
+					alert.getSloName(), admission.getWindow().getAlerts()));
+			return admission.getWindow().await();
+		}
+		try {
+			int notifications = process(alert, v);
+			coalescer.complete(admission.getWindow(), notifications);
+			return notifications;
+		} catch (IssueCreationFailedException | IssueLinkageFailedException | RuntimeException e) {
+			coalescer.fail(admission.getWindow(), e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Calculate the impacts of the violation of an alert and create issues.
+	 * 
+	 * The issues are created and linked as for a batch with a single alert, i.e.
+	 * the open issues of the location are queried once, notifications that match
+	 * the same issue share it, and each distinct link is created once.
+	 * 
+	 * @param alert the alert
+	 * @param v     violation of the alert
+	 * @return number of notifications
+	 * @throws IssueCreationFailedException if an issue could not be created
+	 * @throws IssueLinkageFailedException  if an issue could not be linked
+	 */
+	private int process(Alert alert, Violation v) throws IssueCreationFailedException, IssueLinkageFailedException {
+		PropagationResult result = notificationService.calculate(v);
+		if (result.isDegraded()) {
+			logger.info(String.format("calculated %d impacts, degraded by %s with %d truncated paths",
+					result.getNotifications().size(), result.getExceeded(), result.getTruncated()));
+		} else {
+			logger.info(String.format("calculated %d impacts", result.getNotifications().size()));
+		}
+
+		createAndLinkIssues(List.of(alert), List.of(0), List.of(v), List.of(result));
+		return result.getNotifications().size();
+	}
+
+	/**
+	 * Process multiple alerts at once, and track the outcome of each alert.
+	 * 
+	 * The alerts are grouped by project. For each project the model is loaded
+	 * once, the impacts of all its violations are calculated in one pass, and the
+	 * issues are created and linked in one pass as well, such that the open
+	 * issues of a location are queried only once, and repeated violations of the
+	 * same rule share their issues.
+	 * 
+	 * An alert, that cannot be processed, fails on its own, unless the issues of
+	 * its project could not be created or linked, in which case all alerts of the
+	 * project fail.
+	 * 
+	 * Alerts that the {@link AlertCoalescer} merges into an open window are not
+	 * processed, and get the result of the window's first alert.
+	 * 
+	 * @param alerts the alerts
+	 * @return status of each alert, in the order of the alerts
+	 */
+	public List<AlertStatus> processBatch(List<Alert> alerts) {
+		List<AlertStatus> statuses = new ArrayList<>(alerts.size());
+		for (Alert alert : alerts) {
+			statuses.add(new AlertStatus(UUID.randomUUID().toString(), alert));
+		}
+		processBatch(alerts, statuses);
+		return statuses;
+	}
+
+	/**
+	 * Process multiple alerts at once, and track the outcome of each alert in the
+	 * given statuses.
+	 * 
+	 * @param alerts   the alerts
+	 * @param statuses status of each alert, in the order of the alerts
+	 * @see AlertService#processBatch(List)
+	 */
+	public void processBatch(List<Alert> alerts, List<AlertStatus> statuses) {
+		assert (alerts != null && statuses != null && alerts.size() == statuses.size());
+
+		Map<String, List<Integer>> byProject = new LinkedHashMap<>();
+		for (int i = 0; i < alerts.size(); i++) {
+			statuses.get(i).processing();
+			byProject.computeIfAbsent(alerts.get(i).getGropiusProjectId(), id -> new ArrayList<>()).add(i);
+		}
+
+		for (Map.Entry<String, List<Integer>> entry : byProject.entrySet()) {
+			System system;
+			try {
+				system = systemRepoProxy.findByArchitectureId(entry.getKey());
+			} catch (NoSuchElementException | UncheckedIOException e) {
+				for (int i : entry.getValue()) {
+					statuses.get(i).failed(e.getMessage());
+				}
+				continue;
+			}
+
+			List<Integer> indices = new ArrayList<>();
+			List<Violation> violations = new ArrayList<>();
+			List<AlertCoalescer.Window> opened = new ArrayList<>();
+			Map<Integer, AlertCoalescer.Window> merged = new LinkedHashMap<>();
+			for (int i : entry.getValue()) {
+				try {
+					Violation v = makeViolation(alerts.get(i), system);
+					if (coalescer.isEnabled()) {
+						AlertCoalescer.Admission admission = coalescer.admit(alerts.get(i));
+						if (!admission.isFirst()) {
+							merged.put(i, admission.getWindow());
+							continue;
+						}
+						opened.add(admission.getWindow());
+					}
+					violations.add(v);
+					indices.add(i);
+				} catch (NoSuchElementException e) {
+					statuses.get(i).failed(e.getMessage());
+				}
+			}
+
+			if (!violations.isEmpty()) {
+				try {
+					List<PropagationResult> results = notificationService.calculateBatch(system, violations);
+					createAndLinkIssues(alerts, indices, violations, results);
+					for (int j = 0; j < indices.size(); j++) {
+						statuses.get(indices.get(j)).done(results.get(j).getNotifications().size());
+					}
+					for (int j = 0; j < opened.size(); j++) {
+						coalescer.complete(opened.get(j), results.get(j).getNotifications().size());
+					}
+					logger.info(String.format("processed %d alerts for model %s", indices.size(), system.getId()));
+				} catch (IssueCreationFailedException | IssueLinkageFailedException | RuntimeException e) {
+					for (int i : indices) {
+						statuses.get(i).failed(e.getMessage());
+					}
+					for (AlertCoalescer.Window window : opened) {
+						coalescer.fail(window, e);
+					}
+					logger.error(String.format("could not process %d alerts for model %s : %s", indices.size(),
+							system.getId(), e.getMessage()));
+				}
+			}
+
+			for (Map.Entry<Integer, AlertCoalescer.Window> mergedEntry : merged.entrySet()) {
+				try {
+					statuses.get(mergedEntry.getKey()).done(mergedEntry.getValue().await());
+				} catch (IssueCreationFailedException | IssueLinkageFailedException | RuntimeException e) {
+					statuses.get(mergedEntry.getKey()).failed(e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create the issues for the notifications of multiple violations in one pass,
+	 * and link each issue to the issue of the alerts it belongs to, each link only
+	 * once. The issues of different locations, and the links, are created
+	 * concurrently.
+	 * 
+	 * @param alerts     all alerts of the batch
+	 * @param indices    indices of the alerts of the violations
+	 * @param violations violations of the same system
+	 * @param results    result of each violation
+	 * @throws IssueCreationFailedException if an issue could not be created
+	 * @throws IssueLinkageFailedException  if an issue could not be linked
+	 */
+	private void createAndLinkIssues(List<Alert> alerts, List<Integer> indices, List<Violation> violations,
+			List<PropagationResult> results) throws IssueCreationFailedException, IssueLinkageFailedException {
+		Map<String, Map<Notification, IssueLocation>> byLocation = new LinkedHashMap<>();
+		for (int j = 0; j < violations.size(); j++) {
+			// TODO : if ever possible do attach issue to more suitable location
+			IssueLocation location = violations.get(j).getViolatedRule().getGropiusComponent();
+			for (Notification notification : results.get(j).getNotifications()) {
+				byLocation.computeIfAbsent(location.getId(), id -> new LinkedHashMap<>()).put(notification, location);
+			}
+		}
+
+		List<IssueFanOut.IssueTask<Map<Notification, ID>>> creations = new ArrayList<>();
+		for (Map<Notification, IssueLocation> locations : byLocation.values()) {
+			creations.add(() -> issueService.createIssues(locations));
+		}
+		Map<Notification, ID> issueIds = new HashMap<>();
+		for (Map<Notification, ID> created : fanOut.invokeAll(creations)) {
+			issueIds.putAll(created);
+		}
+
+		Set<String> links = new HashSet<>();
+		List<IssueFanOut.IssueTask<Void>> linkages = new ArrayList<>();
+		for (int j = 0; j < violations.size(); j++) {
+			ID relatedIssueId = new ID(alerts.get(indices.get(j)).getIssueId());
+			for (Notification notification : results.get(j).getNotifications()) {
+				ID issueId = issueIds.get(notification);
+				if (links.add(issueId.toString() + "->" + relatedIssueId.toString())) {
+					linkages.add(() -> {
+						issueService.linkIssue(issueId, relatedIssueId);
+						return null;
+					});
+				}
+			}
+		}
+		fanOut.invokeAll(linkages);
+	}
+
+	/**
+	 * Get the violation that an alert reports.
+	 * 
+	 * @param alert the alert
+	 * @return the violation
+	 */
+	private Violation makeViolation(Alert alert) {
+		if (alert == null) {
+			throw new IllegalArgumentException("Alert is null");
+		}
+		return makeViolation(alert, systemRepoProxy.findByArchitectureId(alert.getGropiusProjectId()));
+	}
+
+	/**
+	 * Get the violation that an alert reports, with the model of its project
+	 * already loaded.
+	 * 
+	 * @param alert  the alert
+	 * @param system model of the alert's project
+	 * @return the violation
+	 */
+	private Violation makeViolation(Alert alert, System system) {
+		SloRule rule = system.getSloById(alert.getSloId());
+		if (rule == null) {
+			throw new NoSuchElementException(String.format("Missing SLO rule %s in model %s", alert.getSloId(),
+					system.getId()));
+		}
+
+		Violation v = ImpactFactory.eINSTANCE.createViolation();
+		v.setViolatedRule(rule);
+		v.setPeriod(alert.getActualPeriod());
+		v.setThreshold(alert.getActualValue());
+		v.setStartTime(alert.getAlertTime());
+		return v;
+	}
+}
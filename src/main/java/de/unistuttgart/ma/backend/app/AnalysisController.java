@@ -0,0 +1,97 @@
+package de.unistuttgart.ma.backend.app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+import de.unistuttgart.ma.backend.repository.SystemRepositoryProxy;
+import de.unistuttgart.ma.backend.utility.NotificationModule;
+import de.unistuttgart.ma.backend.utility.NotificationSerializer;
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * Controller with an end point to analyse, which parts of the business process
+ * the violations of the slo rules of a system would impact.
+ * 
+ * Other than the alert end point, the analysis neither persists impacts nor
+ * creates issues.
+ */
+@RestController
+public class AnalysisController {
+
+	private final CalculateNotificationService notificationService;
+	private final SystemRepositoryProxy systemRepoProxy;
+	private final ObjectWriter writer;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public AnalysisController(@Autowired CalculateNotificationService notificationService,
+			@Autowired SystemRepositoryProxy systemRepoProxy) {
+		assert (notificationService != null && systemRepoProxy != null);
+		this.notificationService = notificationService;
+		this.systemRepoProxy = systemRepoProxy;
+
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(new NotificationModule());
+		this.writer = mapper.writer().withAttribute(NotificationSerializer.SHARED_PREFIXES, Boolean.TRUE);
+	}
+
+	/**
+	 * Calculate the impacts of a violation of each slo rule of the model with the
+	 * given id.
+	 * 
+	 * The notifications are streamed as a JSON array, rule by rule, as soon as
+	 * they are calculated. As the array is written in one go, the impact path of
+	 * a notification ends at its shared prefix with a previous notification.
+	 * 
+	 * @param id Id of the model
+	 * @return the notifications of all slo rules
+	 */
+	@GetMapping(value = "/api/model/{id}/analysis", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> analyseModel(@PathVariable String id) {
+		System system = systemRepoProxy.findById(id);
+		logger.info(String.format("analyse %d slo rules of system %s", system.getSloRules().size(), id));
+
+		StreamingResponseBody body = out -> {
+			try (SequenceWriter sequence = writer.writeValues(out).init(true)) {
+				notificationService.calculateAllRules(system, note -> {
+					try {
+						sequence.write(note);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+	}
+
+	@ExceptionHandler(UncheckedIOException.class)
+	@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+	public ResponseEntity<String> uncheckedIOException(UncheckedIOException exception) {
+		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(exception.getMessage());
+	}
+
+	@ExceptionHandler(NoSuchElementException.class)
+	@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+	public ResponseEntity<String> noSuchElementException(NoSuchElementException exception) {
+		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(exception.getMessage());
+	}
+}
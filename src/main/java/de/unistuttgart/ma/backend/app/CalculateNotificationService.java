@@ -1,20 +1,44 @@
 package de.unistuttgart.ma.backend.app;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
+import org.bson.types.ObjectId;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import de.unistuttgart.gropius.Component;
 import de.unistuttgart.gropius.ComponentInterface;
-import de.unistuttgart.ma.backend.repository.ImpactItem;
-import de.unistuttgart.ma.backend.repository.ImpactRepository;
+import de.unistuttgart.gropius.slo.SloRule;
+import de.unistuttgart.ma.backend.propagation.BudgetMetrics;
+import de.unistuttgart.ma.backend.propagation.CompiledTraversal;
+import de.unistuttgart.ma.backend.propagation.ImpactBatch;
+import de.unistuttgart.ma.backend.propagation.ImpactMaker;
+import de.unistuttgart.ma.backend.propagation.ImpactTree;
+import de.unistuttgart.ma.backend.propagation.MemoizedTraversal;
+import de.unistuttgart.ma.backend.propagation.NotificationCache;
+import de.unistuttgart.ma.backend.propagation.ParallelTraversal;
+import de.unistuttgart.ma.backend.propagation.PropagationBudget;
+import de.unistuttgart.ma.backend.propagation.PropagationIndex;
+import de.unistuttgart.ma.backend.propagation.PropagationIndexRegistry;
+import de.unistuttgart.ma.backend.propagation.PropagationResult;
+import de.unistuttgart.ma.backend.propagation.PropagationSettings;
+import de.unistuttgart.ma.backend.propagation.ReachabilityRegistry;
+import de.unistuttgart.ma.backend.propagation.ReachabilityTable;
+import de.unistuttgart.ma.backend.propagation.TraversalMode;
+import de.unistuttgart.ma.backend.repository.ImpactWriter;
+import de.unistuttgart.ma.backend.repository.ReachabilityRepository;
 import de.unistuttgart.ma.backend.repository.SystemRepositoryProxy;
-import de.unistuttgart.ma.saga.Saga;
 import de.unistuttgart.ma.saga.SagaStep;
 import de.unistuttgart.ma.saga.System;
 import de.unistuttgart.ma.impact.Impact;
@@ -29,13 +53,90 @@ import de.unistuttgart.ma.impact.Violation;
 public class CalculateNotificationService {
 
 	private final SystemRepositoryProxy systemRepoProxy;
-	private final ImpactRepository impactRepo;
+	private final ImpactWriter impactWriter;
+
+	/**
+	 * indexes to look up where impacts propagate to, one per system.
+	 */
+	private final PropagationIndexRegistry indexes;
+
+	/**
+	 * precomputed impact chains, one table per system.
+	 */
+	private final ReachabilityRegistry reachability;
+
+	private final PropagationSettings settings;
+
+	/**
+	 * impact chains of previous violations.
+	 */
+	private final NotificationCache notificationCache;
+
+	/**
+	 * how often the limits of the propagation budgets were hit.
+	 */
+	private final BudgetMetrics budgetMetrics;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
 
 	public CalculateNotificationService(@Autowired SystemRepositoryProxy systemRepoProxy,
-			@Autowired ImpactRepository impactRepo) {
-		assert (systemRepoProxy != null && impactRepo != null);
+			@Autowired ImpactWriter impactWriter, @Autowired ReachabilityRepository reachabilityRepo,
+			@Autowired PropagationSettings settings, @Autowired NotificationCache notificationCache) {
+		assert (systemRepoProxy != null && impactWriter != null && reachabilityRepo != null && settings != null
+				&& notificationCache != null);
 		this.systemRepoProxy = systemRepoProxy;
-		this.impactRepo = impactRepo;
+		this.impactWriter = impactWriter;
+		this.settings = settings;
+		this.notificationCache = notificationCache;
+		this.budgetMetrics = new BudgetMetrics();
+
+		this.indexes = new PropagationIndexRegistry();
+		systemRepoProxy.addListener(indexes);
+
+		this.reachability = new ReachabilityRegistry(systemRepoProxy, reachabilityRepo, indexes, settings);
+		systemRepoProxy.addListener(reachability);
+		systemRepoProxy.addListener(notificationCache);
+	}
+
+	/**
+	 * Get the propagation index of a system.
+	 * 
+	 * @param system the system
+	 * @return the system's propagation index
+	 */
+	public PropagationIndex getIndex(System system) {
+		return indexes.get(system);
+	}
+
+	/**
+	 * Get the registry of the precomputed impact chains.
+	 * 
+	 * @return the registry
+	 */
+	public ReachabilityRegistry getReachability() {
+		return reachability;
+	}
+
+	/**
+	 * Get the metrics of the propagation budgets.
+	 * 
+	 * @return the metrics
+	 */
+	public BudgetMetrics getBudgetMetrics() {
+		return budgetMetrics;
+	}
+
+	/**
+	 * Calculate the impacts of a violation.
+	 * 
+	 * Same as {@link CalculateNotificationService#calculate(Violation)}, but only
+	 * returns the notifications, even if the result is degraded.
+	 * 
+	 * @param violation violation to calculate impacts for
+	 * @return notification for each impact chain that reaches the business process
+	 */
+	public Set<Notification> calculateImpacts(Violation violation) {
+		return calculate(violation).getNotifications();
 	}
 
 	/**
@@ -45,94 +146,354 @@ public class CalculateNotificationService {
 	 * propagate. Each trace is calculated as a chain of impacts. Each impact that
 	 * reaches the business process is wrapped into a notification and returned.
 	 * 
+	 * How the model is traversed depends on the {@link TraversalMode} of the
+	 * settings.
+	 * 
+	 * The impacts are collected in an {@link ImpactBatch} during the calculation,
+	 * and are handed to the {@link ImpactWriter} afterwards, that persists them
+	 * in the background.
+	 * 
+	 * If the violated rule was already violated for the same revision of the
+	 * model, the chains are taken from the {@link NotificationCache} instead, and
+	 * only the notifications are new.
+	 * 
+	 * The calculation is limited by a {@link PropagationBudget} with the limits of
+	 * the settings. If any limit is hit, the result is degraded and reports the
+	 * number of truncated paths. Degraded results are not cached.
+	 * 
 	 * @param violation violation to calculate impacts for
-	 * @return notification for each impact chain that reaches the business process
+	 * @return notification for each impact chain that reaches the business
+	 *         process, along with the exceeded limits
 	 */
-	public Set<Notification> calculateImpacts(Violation violation) {
+	public PropagationResult calculate(Violation violation) {
 		if (violation == null) {
 			throw new IllegalArgumentException("violation must not be null");
 		}
 
+		String architectureId = violation.getViolatedRule().getGropiusProject().getId();
+		System system = systemRepoProxy.findByArchitectureId(architectureId);
+		// revision of the loaded model, which may be older than the stored one
+		long revision = systemRepoProxy.getRevision(system);
+		String ruleId = violation.getViolatedRule().getId();
+		boolean cacheable = ruleId != null && revision >= 0;
+
+		PropagationBudget budget = settings.newBudget();
+		List<Impact> topLevelImpacts = !cacheable ? null
+				: notificationCache.get(system.getId(), revision, ruleId, settings);
+		if (topLevelImpacts == null) {
+			topLevelImpacts = calculateTopLevelImpacts(violation, indexes.get(system), budget);
+			budgetMetrics.record(budget);
+			if (budget.isDegraded()) {
+				logger.warn(String.format("calculation for rule %s stopped by %s, %d paths truncated.", ruleId,
+						budget.getExceeded(), budget.getTruncated()));
+			} else if (cacheable) {
+				notificationCache.put(system.getId(), revision, ruleId, settings, topLevelImpacts);
+			}
+		}
+
 		Set<Notification> notes = new HashSet<Notification>();
+		for (Impact topLevelImpact : topLevelImpacts) {
+			Notification note = ImpactFactory.eINSTANCE.createNotification();
+			note.setRootCause(violation);
+			note.setTopLevelImpact(topLevelImpact);
+			notes.add(note);
+		}
+		return new PropagationResult(notes, budget.getExceeded(), budget.getTruncated());
+	}
 
+	/**
+	 * Estimate how broad the impact of a violation is, without calculating it.
+	 * 
+	 * @param violation the violation
+	 * @return number of saga steps, that the violation may impact
+	 */
+	public int estimateBreadth(Violation violation) {
+		if (violation == null) {
+			throw new IllegalArgumentException("violation must not be null");
+		}
 		String architectureId = violation.getViolatedRule().getGropiusProject().getId();
-		System system = systemRepoProxy.findByArchitectureId(architectureId);
+		PropagationIndex index = indexes.get(systemRepoProxy.findByArchitectureId(architectureId));
+		return index.getGraph().countReachableSteps(getInitialInterfaces(makeInitialItems(violation), index));
+	}
+
+	/**
+	 * Calculate the impacts of a violation of each slo rule of a system, without
+	 * persisting them.
+	 * 
+	 * All rules share one {@link MemoizedTraversal}, thus the results for an
+	 * interface are calculated once, and reused for all rules that reach it. The
+	 * notifications of a rule are handed to the consumer as soon as the rule is
+	 * done, the root cause of each notification is a violation of the rule
+	 * without period, threshold or time. Rules without location are skipped.
+	 * 
+	 * The impacts get ids, such that notifications with a shared prefix can refer
+	 * to it, but they are neither persisted nor cached.
+	 * 
+	 * @param system   the system
+	 * @param consumer consumes the notifications
+	 */
+	public void calculateAllRules(System system, Consumer<Notification> consumer) {
+		assert (system != null && consumer != null);
+		PropagationIndex index = indexes.get(system);
+		MemoizedTraversal traversal = new MemoizedTraversal(index, PropagationBudget.ofChains(0));
+		ImpactMaker maker = (cause, location) -> {
+			Impact impact = ImpactFactory.eINSTANCE.createImpact();
+			impact.setCause(cause);
+			impact.setLocation(location);
+			impact.setId(new ObjectId().toHexString());
+			return impact;
+		};
+
+		for (SloRule rule : system.getSloRules()) {
+			if (rule.getGropiusComponentInterface() == null && rule.getGropiusComponent() == null) {
+				continue;
+			}
+			Violation violation = ImpactFactory.eINSTANCE.createViolation();
+			violation.setViolatedRule(rule);
+
+			List<ComponentInterface> initials = getInitialInterfaces(makeInitialItems(violation), index);
+			for (Impact topLevelImpact : traversal.traverse(initials, maker)) {
+				Notification note = ImpactFactory.eINSTANCE.createNotification();
+				note.setRootCause(violation);
+				note.setTopLevelImpact(topLevelImpact);
+				consumer.accept(note);
+			}
+		}
+		logger.debug(String.format("calculated all rules of system %s with %d memoized interfaces.", system.getId(),
+				traversal.getMemoizedCount()));
+	}
+
+	/**
+	 * Calculate the impacts of multiple violations of slo rules of the same
+	 * system at once.
+	 * 
+	 * All violations share one {@link MemoizedTraversal}, thus the results for an
+	 * interface are calculated once, and reused for all violations that reach it,
+	 * regardless of the {@link TraversalMode} of the settings. Each distinct rule
+	 * is calculated once, with a {@link PropagationBudget} of its own, and
+	 * further violations of the same rule get notifications with the same chains.
+	 * The impacts of all violations are handed to the {@link ImpactWriter} at
+	 * once.
+	 * 
+	 * The {@link NotificationCache} is neither read nor written, as its chains
+	 * depend on the mode of the settings.
+	 * 
+	 * @param system     system the violated rules belong to
+	 * @param violations violations to calculate impacts for
+	 * @return result for each violation, in the order of the violations
+	 */
+	public List<PropagationResult> calculateBatch(System system, List<Violation> violations) {
+		assert (system != null && violations != null);
+		PropagationIndex index = indexes.get(system);
+		MemoizedTraversal traversal = new MemoizedTraversal(index, PropagationBudget.ofChains(0));
+		ImpactBatch batch = new ImpactBatch();
+
+		Map<String, List<Impact>> chainsByRule = new HashMap<>();
+		Map<String, PropagationBudget> budgetsByRule = new HashMap<>();
+		List<Impact> allTopLevelImpacts = new ArrayList<>();
+		List<PropagationResult> results = new ArrayList<>();
+
+		for (Violation violation : violations) {
+			String ruleId = violation.getViolatedRule().getId();
+			if (!chainsByRule.containsKey(ruleId)) {
+				PropagationBudget budget = settings.newBudget();
+				List<Impact> topLevelImpacts = traversal
+						.traverse(getInitialInterfaces(makeInitialItems(violation), index), batch, budget);
+				budgetMetrics.record(budget);
+				if (budget.isDegraded()) {
+					logger.warn(String.format("calculation for rule %s stopped by %s, %d paths truncated.", ruleId,
+							budget.getExceeded(), budget.getTruncated()));
+				}
+				chainsByRule.put(ruleId, topLevelImpacts);
+				budgetsByRule.put(ruleId, budget);
+				allTopLevelImpacts.addAll(topLevelImpacts);
+			}
+
+			Set<Notification> notes = new HashSet<Notification>();
+			for (Impact topLevelImpact : chainsByRule.get(ruleId)) {
+				Notification note = ImpactFactory.eINSTANCE.createNotification();
+				note.setRootCause(violation);
+				note.setTopLevelImpact(topLevelImpact);
+				notes.add(note);
+			}
+			PropagationBudget budget = budgetsByRule.get(ruleId);
+			results.add(new PropagationResult(notes, budget.getExceeded(), budget.getTruncated()));
+		}
+
+		batch.flush(impactWriter, new ImpactTree(allTopLevelImpacts));
+		logger.debug(String.format("calculated %d violations of %d rules of system %s with %d memoized interfaces.",
+				violations.size(), chainsByRule.size(), system.getId(), traversal.getMemoizedCount()));
+		return results;
+	}
+
+	/**
+	 * Calculate and persist the impact chains of a violation.
+	 * 
+	 * @param violation violation to calculate impacts for
+	 * @param index     propagation index of the system
+	 * @param budget    limits of the calculation
+	 * @return top level impact of each chain that reaches the business process
+	 */
+	private List<Impact> calculateTopLevelImpacts(Violation violation, PropagationIndex index,
+			PropagationBudget budget) {
+		Set<QueueItem> initialItems = makeInitialItems(violation);
+		ImpactBatch batch = new ImpactBatch();
+
+		List<Impact> topLevelImpacts;
+		if (settings.getMode() == TraversalMode.MEMOIZED) {
+			topLevelImpacts = new MemoizedTraversal(index, budget)
+					.traverse(getInitialInterfaces(initialItems, index), batch);
+		} else if (settings.getMode() == TraversalMode.COMPILED) {
+			topLevelImpacts = new CompiledTraversal(index.getGraph(), budget)
+					.traverse(getInitialInterfaces(initialItems, index), batch);
+		} else if (settings.getMode() == TraversalMode.PARALLEL) {
+			topLevelImpacts = new ParallelTraversal(index.getGraph(), budget,
+					settings.getParallelThreshold(), ForkJoinPool.commonPool())
+							.traverse(getInitialInterfaces(initialItems, index), batch);
+		} else if (settings.getMode() == TraversalMode.PRECOMPUTED) {
+			topLevelImpacts = lookUpPrecomputed(violation, initialItems, index, budget, batch);
+		} else {
+			topLevelImpacts = traverseBreadthFirst(initialItems, index, budget, batch);
+		}
+		ImpactTree tree = new ImpactTree(topLevelImpacts);
+		batch.flush(impactWriter, tree);
+		logger.debug(String.format("calculated %d chains with %d distinct of %d impacts on the chains.",
+				topLevelImpacts.size(), tree.getImpacts().size(), tree.getPathLength()));
+		return topLevelImpacts;
+	}
+
+	/**
+	 * Traverse the model breadth first, along every path.
+	 * 
+	 * Creates an impact for each hop, even if the path never reaches the business
+	 * process. Does not terminate, if the architecture has cycles, unless the
+	 * budget limits the depth or the time.
+	 * 
+	 * @param initialItems queue items for the initial impacts
+	 * @param index        propagation index of the system
+	 * @param budget       limits of the traversal
+	 * @param maker        creates the impacts
+	 * @return top level impact of each chain that reaches the business process
+	 */
+	private List<Impact> traverseBreadthFirst(Set<QueueItem> initialItems, PropagationIndex index,
+			PropagationBudget budget, ImpactMaker maker) {
+		List<Impact> topLevelImpacts = new ArrayList<>();
 
 		Queue<QueueItem> queue = new LinkedList<QueueItem>();
-		queue.addAll(makeInitialItems(violation));
+		queue.addAll(initialItems);
 
 		Queue<QueueItem> sagaqueue = new LinkedList<QueueItem>();
 
 		// go along architecture
 		while (!queue.isEmpty()) {
+			if (budget.isExpired()) {
+				budget.truncate(queue.size());
+				break;
+			}
 			QueueItem currentItem = queue.remove();
 			ComponentInterface current = currentItem.getLocationAsFace();
 
 			// always cause new impact at current
-			Impact causedImpact = makeImpact(currentItem.getCause(), current);
+			Impact causedImpact = maker.makeImpact(currentItem.getCause(), current);
 
-			Set<SagaStep> nextSteps = getNextLevel(current, system);
+			List<SagaStep> nextSteps = getNextLevel(current, index);
 			if (nextSteps.isEmpty()) {
 				// stay at architecture
-				EList<Component> consumers = current.getConsumedBy();
-				for (Component component : consumers) {
-					for (ComponentInterface provided : component.getInterfaces()) {
-						queue.add(new QueueItem(causedImpact, provided));
+				for (ComponentInterface provided : index.getConsumerInterfaces(current)) {
+					if (!budget.allowsDepth(currentItem.depth + 1) || !budget.allowsFrontier(queue.size() + 1)) {
+						budget.truncate(1);
+						continue;
 					}
+					queue.add(new QueueItem(causedImpact, provided, currentItem.depth + 1));
 				}
 			} else {
 				// switch to saga
 				for (SagaStep step : nextSteps) {
-					sagaqueue.add(new QueueItem(causedImpact, step));
+					sagaqueue.add(new QueueItem(causedImpact, step, currentItem.depth));
 				}
 			}
 		}
 
 		// do saga
 		while (!sagaqueue.isEmpty()) {
+			if (!budget.allowsChain(topLevelImpacts.size())) {
+				break;
+			}
 			QueueItem currentItem = sagaqueue.remove();
 			SagaStep current = currentItem.getLocationAsStep();
 
 			// always cause new impact at current
-			Impact causedImpact = makeImpact(currentItem.getCause(), current);
+			Impact causedImpact = maker.makeImpact(currentItem.getCause(), current);
 
-			Impact topLevelImpact = makeImpact(causedImpact, current.getTask());
-
-			Notification note = ImpactFactory.eINSTANCE.createNotification();
-			note.setRootCause(violation);
-			note.setTopLevelImpact(topLevelImpact);
-			notes.add(note);
+			topLevelImpacts.add(maker.makeImpact(causedImpact, current.getTask()));
 		}
-		return notes;
+		return topLevelImpacts;
 	}
 
 	/**
-	 * Get the saga steps realized with the given component interface.
+	 * Look up the impact chains of a violation in the {@link ReachabilityTable}
+	 * of the system.
 	 * 
-	 * Get the saga steps by looking them up in the system model. The given
-	 * interface must be part of the system model.
+	 * Traverses the {@link CompiledTraversal} instead, if the table is outdated.
 	 * 
-	 * @param face   the interface whose steps to get
-	 * @param system model of the system
-	 * @return set of saga steps realized with face.
+	 * @param violation    the violation
+	 * @param initialItems queue items for the initial impacts
+	 * @param index        propagation index of the system
+	 * @param budget       limits of the look up
+	 * @param maker        creates the impacts
+	 * @return top level impact of each chain that reaches the business process
 	 */
-	protected Set<SagaStep> getNextLevel(ComponentInterface face, System system) {
-		assert (face != null && system != null);
-		if (!system.getComponentInterfaceById(face.getId()).equals(face)) {
-			throw new IllegalArgumentException(
-					String.format("Interface %s does not belong to system %s", face.getId(), system.getId()));
+	private List<Impact> lookUpPrecomputed(Violation violation, Set<QueueItem> initialItems,
+			PropagationIndex index, PropagationBudget budget, ImpactMaker maker) {
+		ReachabilityTable table = reachability.get(index.getSystem().getId());
+		if (table != null) {
+			List<Impact> topLevelImpacts = table.answer(violation.getViolatedRule().getId(), index, budget,
+					maker);
+			if (topLevelImpacts != null) {
+				return topLevelImpacts;
+			}
 		}
+		return new CompiledTraversal(index.getGraph(), budget)
+				.traverse(getInitialInterfaces(initialItems, index), maker);
+	}
 
-		Set<SagaStep> nexts = new HashSet<>();
-
-		for (Saga saga : system.getSagas()) {
-			for (SagaStep sagaStep : saga.getSteps()) {
-				if (sagaStep.getComponentInterface().equals(face)) {
-					nexts.add(sagaStep);
-				}
+	/**
+	 * Get the interfaces of the initial impacts, for the traversals that only
+	 * create impacts for chains that reach the business process.
+	 * 
+	 * @param initialItems queue items for the initial impacts
+	 * @param index        propagation index of the system
+	 * @return interfaces of the initial impacts
+	 */
+	private List<ComponentInterface> getInitialInterfaces(Set<QueueItem> initialItems, PropagationIndex index) {
+		List<ComponentInterface> initials = new ArrayList<>();
+		for (QueueItem item : initialItems) {
+			if (!index.contains(item.getLocationAsFace())) {
+				throw new IllegalArgumentException(String.format("Interface %s does not belong to system %s",
+						item.getLocationAsFace().getId(), index.getSystem().getId()));
 			}
+			initials.add(item.getLocationAsFace());
+		}
+		return initials;
+	}
+
+	/**
+	 * Get the saga steps realized with the given component interface.
+	 * 
+	 * Get the saga steps by looking them up in the propagation index of the
+	 * system model. The given interface must be part of the system model.
+	 * 
+	 * @param face  the interface whose steps to get
+	 * @param index propagation index of the system
+	 * @return saga steps realized with face.
+	 */
+	protected List<SagaStep> getNextLevel(ComponentInterface face, PropagationIndex index) {
+		assert (face != null && index != null);
+		if (!index.contains(face)) {
+			throw new IllegalArgumentException(String.format("Interface %s does not belong to system %s",
+					face.getId(), index.getSystem().getId()));
 		}
-		return nexts;
+		return index.getSteps(face);
 	}
 
 	/**
@@ -188,26 +549,6 @@ public class CalculateNotificationService {
 		return initialItems;
 	}
 
-	/**
-	 * Creates a new impact and saves it to the impact repository.
-	 * 
-	 * @param cause    cause of the impact
-	 * @param location location of the impact
-	 * @return new impact, that is also saved to the impact repository.
-	 */
-	private Impact makeImpact(Impact cause, EObject location) {
-		assert (location != null);
-		Impact causedImpact = ImpactFactory.eINSTANCE.createImpact();
-		causedImpact.setCause(cause);
-		causedImpact.setLocation(location);
-
-		ImpactItem item = impactRepo.save(new ImpactItem(causedImpact));
-
-		causedImpact.setId(item.getId());
-
-		return causedImpact;
-	}
-
 	/**
 	 * The sole reason of existence of this class is, that the impact calculation at
 	 * the CoreService happens in the opposite direction to the linking of the
@@ -218,11 +559,20 @@ public class CalculateNotificationService {
 	private class QueueItem {
 		public final Impact cause;
 		public final EObject location;
+		/**
+		 * number of interfaces on the path up to the location.
+		 */
+		public final int depth;
 
 		public QueueItem(Impact cause, EObject location) {
+			this(cause, location, 1);
+		}
+
+		public QueueItem(Impact cause, EObject location, int depth) {
 			super();
 			this.cause = cause;
 			this.location = location;
+			this.depth = depth;
 		}
 
 		public Impact getCause() {
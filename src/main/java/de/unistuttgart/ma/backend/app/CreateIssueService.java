@@ -1,9 +1,11 @@
 package de.unistuttgart.ma.backend.app;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.eclipse.bpmn2.Task;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,28 +16,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.shopify.graphql.support.ID;
 
-import de.unistuttgart.gropius.ComponentInterface;
 import de.unistuttgart.gropius.IssueLocation;
 import de.unistuttgart.gropius.api.Component;
 import de.unistuttgart.gropius.api.Issue;
 import de.unistuttgart.gropius.api.MutationQuery;
 import de.unistuttgart.gropius.api.Query;
-import de.unistuttgart.gropius.slo.SloRule;
 import de.unistuttgart.ma.backend.exceptions.IssueCreationFailedException;
 import de.unistuttgart.ma.backend.exceptions.IssueLinkageFailedException;
 import de.unistuttgart.ma.backend.importer.architecture.GropiusApiQuerier;
 import de.unistuttgart.ma.backend.importer.architecture.GropiusApiQueries;
-import de.unistuttgart.ma.backend.utility.ImpactSerializer;
-import de.unistuttgart.ma.backend.utility.InterfaceSerializer;
-import de.unistuttgart.ma.backend.utility.NotificationSerializer;
-import de.unistuttgart.ma.backend.utility.SloRuleSerializer;
-import de.unistuttgart.ma.backend.utility.StepSerializer;
-import de.unistuttgart.ma.backend.utility.TaskSerializer;
-import de.unistuttgart.ma.backend.utility.ViolationSerializer;
+import de.unistuttgart.ma.backend.utility.NotificationModule;
 import de.unistuttgart.ma.impact.Impact;
 import de.unistuttgart.ma.impact.Notification;
 import de.unistuttgart.ma.impact.Violation;
-import de.unistuttgart.ma.saga.SagaStep;
 
 /**
  * Create a Gropius issues for an impact that reached the business process.
@@ -54,15 +47,7 @@ public class CreateIssueService {
 	public CreateIssueService(@Value("${gropius.url}") String uri) {
 		assert (uri != null);
 
-		module = new SimpleModule();
-
-		module.addSerializer(Notification.class, new NotificationSerializer(Notification.class));
-		module.addSerializer(Impact.class, new ImpactSerializer(Impact.class));
-		module.addSerializer(Violation.class, new ViolationSerializer(Violation.class));
-		module.addSerializer(SagaStep.class, new StepSerializer(SagaStep.class));
-		module.addSerializer(Task.class, new TaskSerializer(Task.class));
-		module.addSerializer(ComponentInterface.class, new InterfaceSerializer(ComponentInterface.class));
-		module.addSerializer(SloRule.class, new SloRuleSerializer(SloRule.class));
+		module = new NotificationModule();
 
 		mapper = new ObjectMapper();
 		mapper.registerModule(module);
@@ -92,6 +77,66 @@ public class CreateIssueService {
 			return openIssue.getId();
 		}
 
+		return createNewIssue(notification, location);
+	}
+
+	/**
+	 * Create issues for multiple notifications at once.
+	 * 
+	 * Same as {@link CreateIssueService#createIssue(Notification, IssueLocation)}
+	 * for each notification, but the open issues at a location are queried only
+	 * once for all notifications. Notifications that match the same issue (i.e.
+	 * violation to same SLO rule, same locations impacted), e.g. of repeated
+	 * violations of the same rule, get the same issue, and it is created only
+	 * once.
+	 * 
+	 * @param notifications notifications to create issues for, each with the issue
+	 *                      location to create its issue at
+	 * @return id of each notification's issue
+	 * @throws IssueCreationFailedException if the creation of any issue failed
+	 */
+	public Map<Notification, ID> createIssues(Map<Notification, IssueLocation> notifications)
+			throws IssueCreationFailedException {
+		assert (notifications != null);
+		Map<String, List<Issue>> openIssuesByLocation = new HashMap<>();
+		Map<String, ID> issuesByKey = new HashMap<>();
+		Map<Notification, ID> ids = new LinkedHashMap<>();
+
+		for (Map.Entry<Notification, IssueLocation> entry : notifications.entrySet()) {
+			Notification note = entry.getKey();
+			IssueLocation location = entry.getValue();
+			String key = String.join("/", location.getId(), note.getRootCause().getViolatedRule().getId(),
+					note.getTopLevelImpact().getLocationId());
+
+			ID id = issuesByKey.get(key);
+			if (id == null) {
+				List<Issue> openIssues = openIssuesByLocation.computeIfAbsent(location.getId(),
+						locationId -> getOpenIssuesOnLocation(location));
+				Issue openIssue = findSameIssue(note, openIssues);
+				if (openIssue != null) {
+					logger.info(String.format("Issue \"%s\" alread exist with ID %s", openIssue.getTitle(),
+							openIssue.getId().toString()));
+					id = openIssue.getId();
+				} else {
+					id = createNewIssue(note, location);
+				}
+				issuesByKey.put(key, id);
+			}
+			ids.put(note, id);
+		}
+		return ids;
+	}
+
+	/**
+	 * Create a new issue for the given notification at the given issue location,
+	 * regardless of already existing issues.
+	 * 
+	 * @param notification notification to create issue for
+	 * @param location     issue location to create new issue at
+	 * @return id of the new issue
+	 * @throws IssueCreationFailedException if the creation of the issue failed
+	 */
+	private ID createNewIssue(Notification notification, IssueLocation location) throws IssueCreationFailedException {
 		String body = createBody(notification);
 		String title = createTitle(notification);
 
@@ -131,25 +176,46 @@ public class CreateIssueService {
 	 */
 	private Issue getOpenIssueOnLocationForNotification(Notification note, IssueLocation location) {
 		assert (note != null && location != null);
+		return findSameIssue(note, getOpenIssuesOnLocation(location));
+	}
+
+	/**
+	 * Get the open issues at the given location.
+	 * 
+	 * @param location location of issues
+	 * @return the open issues, or an empty list if they could not be queried
+	 */
+	private List<Issue> getOpenIssuesOnLocation(IssueLocation location) {
+		assert (location != null);
 		try {
 			Query query = querier.queryQuery(GropiusApiQueries.getOpenIssueOnComponentQuery(new ID(location.getId())));
 			if (!query.getNode().getGraphQlTypeName().equals("Component")) {
-				return null;
-			}
-
-			List<Issue> bodies = ((Component) query.getNode()).getIssues().getNodes();
-
-			for (Issue issue : bodies) {
-				String body = issue.getBody();
-
-				if (isSameIssue(note, body)) {
-					return issue;
-				}
+				return List.of();
 			}
+			return ((Component) query.getNode()).getIssues().getNodes();
 		} catch (IOException | InterruptedException e) {
 			logger.info(String.format("Could not get open issues at location %s because of %s", location.getName(),
 					e.getMessage()));
 		}
+		return List.of();
+	}
+
+	/**
+	 * Find the issue, that matches the given notification.
+	 * 
+	 * @param note   notification to match
+	 * @param issues issues to look at
+	 * @return an issue that matches the given notification, or null if no such
+	 *         issue exists
+	 */
+	private Issue findSameIssue(Notification note, List<Issue> issues) {
+		for (Issue issue : issues) {
+			String body = issue.getBody();
+
+			if (isSameIssue(note, body)) {
+				return issue;
+			}
+		}
 		return null;
 	}
 
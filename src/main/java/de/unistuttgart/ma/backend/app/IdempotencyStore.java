@@ -0,0 +1,137 @@
+package de.unistuttgart.ma.backend.app;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.unistuttgart.ma.backend.rest.Alert;
+import de.unistuttgart.ma.backend.rest.AlertStatus;
+
+/**
+ * An {@code IdempotencyStore} remembers the statuses of recently received
+ * alerts by their idempotency keys, such that repeated deliveries of the same
+ * alert, e.g. retries after a timeout, get the status of the first delivery
+ * instead of being processed again.
+ *
+ * The key of an alert is its idempotency key, if it has one, and is made of
+ * its slo rule, its time and its issue otherwise.
+ *
+ * Only alerts that are in flight or done are remembered. If an alert fails, it
+ * is forgotten, such that a retry is processed again. The store is bounded by
+ * the number of keys, the oldest keys are dropped first.
+ *
+ */
+@Component
+public class IdempotencyStore {
+
+	private final int maxEntries;
+
+	/**
+	 * maps keys to statuses, in order of receipt.
+	 */
+	private final Map<String, AlertStatus> statuses;
+
+	private final AtomicLong duplicates;
+
+	/**
+	 * Create a new store.
+	 *
+	 * @param maxEntries maximum number of remembered keys, 0 to disable the store
+	 */
+	public IdempotencyStore(@Value("${idempotency.maxentries:4096}") int maxEntries) {
+		if (maxEntries < 0) {
+			throw new IllegalArgumentException("bound of the store must not be negative.");
+		}
+		this.maxEntries = maxEntries;
+		this.statuses = new LinkedHashMap<>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, AlertStatus> eldest) {
+				return size() > IdempotencyStore.this.maxEntries;
+			}
+		};
+		this.duplicates = new AtomicLong();
+	}
+
+	/**
+	 * Get the idempotency key of an alert.
+	 *
+	 * @param alert the alert
+	 * @return the alert's own key, or a key made of slo rule, time and issue of the
+	 *         alert
+	 */
+	public static String keyOf(Alert alert) {
+		assert (alert != null);
+		if (alert.getIdempotencyKey() != null && !alert.getIdempotencyKey().isBlank()) {
+			return alert.getIdempotencyKey();
+		}
+		return String.join("|", alert.getSloId(), String.valueOf(alert.getAlertTime()), alert.getIssueId());
+	}
+
+	/**
+	 * Get the status of an earlier delivery of an alert.
+	 *
+	 * @param alert the alert
+	 * @return status of the earlier delivery, or null if there was none
+	 */
+	public synchronized AlertStatus get(Alert alert) {
+		if (maxEntries == 0) {
+			return null;
+		}
+		AlertStatus status = statuses.get(keyOf(alert));
+		if (status != null) {
+			duplicates.incrementAndGet();
+		}
+		return status;
+	}
+
+	/**
+	 * Remember the status of an alert, unless an earlier delivery of the alert is
+	 * remembered already.
+	 *
+	 * @param alert  the alert
+	 * @param status status of the alert
+	 * @return status of the earlier delivery, or null if the given status is
+	 *         remembered now
+	 */
+	public synchronized AlertStatus putIfAbsent(Alert alert, AlertStatus status) {
+		if (maxEntries == 0) {
+			return null;
+		}
+		AlertStatus known = statuses.putIfAbsent(keyOf(alert), status);
+		if (known != null) {
+			duplicates.incrementAndGet();
+		}
+		return known;
+	}
+
+	/**
+	 * Forget the status of an alert, such that the next delivery is processed
+	 * again.
+	 *
+	 * @param alert  the alert
+	 * @param status status of the alert, only forgotten if it is still the
+	 *               remembered one
+	 */
+	public synchronized void forget(Alert alert, AlertStatus status) {
+		statuses.remove(keyOf(alert), status);
+	}
+
+	/**
+	 * Get the number of deliveries, that were answered with the status of an
+	 * earlier delivery.
+	 *
+	 * @return number of duplicates
+	 */
+	public long getDuplicates() {
+		return duplicates.get();
+	}
+
+	public synchronized int size() {
+		return statuses.size();
+	}
+}
@@ -0,0 +1,149 @@
+package de.unistuttgart.ma.backend.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.unistuttgart.ma.backend.exceptions.IssueCreationFailedException;
+import de.unistuttgart.ma.backend.exceptions.IssueLinkageFailedException;
+
+/**
+ * An {@code IssueFanOut} runs the calls to Gropius of an alert, e.g. to look
+ * up, create and link the issue of each notification, concurrently on a
+ * shared pool of threads.
+ *
+ * The pool is bounded, thus the number of concurrent calls to Gropius is
+ * limited, no matter how many alerts are processed at once. The caller waits
+ * until all of its tasks are done, or until the first of them fails, whichever
+ * comes first. If a task fails, the tasks of the caller that did not start yet
+ * are cancelled, and the failure is rethrown to the caller right away. Running
+ * tasks are not interrupted, as that would abort their calls to Gropius
+ * halfway, they finish in the background instead.
+ *
+ */
+@Component
+public class IssueFanOut {
+
+	private final int concurrency;
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * A {@code IssueTask} is a sequence of calls to Gropius.
+	 *
+	 * @param <T> type of the result
+	 */
+	@FunctionalInterface
+	public interface IssueTask<T> {
+		T call() throws IssueCreationFailedException, IssueLinkageFailedException;
+	}
+
+	/**
+	 * Create a new fan out.
+	 *
+	 * @param concurrency maximum number of tasks that run at once, 1 to run all
+	 *                    tasks on the calling thread
+	 */
+	public IssueFanOut(@Value("${gropius.concurrency:8}") int concurrency) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be positive.");
+		}
+		this.concurrency = concurrency;
+
+		AtomicInteger count = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "gropius-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Run all tasks and wait for them.
+	 *
+	 * A single task, or all tasks if the concurrency is 1, run on the calling
+	 * thread.
+	 *
+	 * @param <T>   type of the results
+	 * @param tasks the tasks
+	 * @return result of each task, in the order of the tasks
+	 * @throws IssueCreationFailedException if any task failed to create an issue
+	 * @throws IssueLinkageFailedException  if any task failed to link an issue
+	 */
+	public <T> List<T> invokeAll(List<IssueTask<T>> tasks)
+			throws IssueCreationFailedException, IssueLinkageFailedException {
+		List<T> results = new ArrayList<>(tasks.size());
+		if (tasks.size() < 2 || concurrency == 1) {
+			for (IssueTask<T> task : tasks) {
+				results.add(task.call());
+			}
+			return results;
+		}
+
+		CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+		List<Future<T>> futures = new ArrayList<>(tasks.size());
+		for (IssueTask<T> task : tasks) {
+			futures.add(completion.submit(task::call));
+		}
+		try {
+			// in order of completion, such that the first failure is noticed right away
+			for (int i = 0; i < futures.size(); i++) {
+				completion.take().get();
+			}
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for gropius.", e);
+		} catch (ExecutionException | CancellationException e) {
+			Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+			if (cause instanceof IssueCreationFailedException) {
+				throw (IssueCreationFailedException) cause;
+			}
+			if (cause instanceof IssueLinkageFailedException) {
+				throw (IssueLinkageFailedException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			for (Future<T> future : futures) {
+				future.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * Get the number of tasks that wait for a thread.
+	 *
+	 * @return number of queued tasks
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Stop the threads of the pool.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -1,5 +1,6 @@
 package de.unistuttgart.ma.backend.app;
 
+import java.io.UncheckedIOException;
 import java.util.NoSuchElementException;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -78,6 +79,12 @@ public class ModelController {
 		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(exception.getMessage());
 	}
 	
+	@ExceptionHandler(UncheckedIOException.class)
+	@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+	public ResponseEntity<String> uncheckedIOException(UncheckedIOException exception) {
+		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(exception.getMessage());
+	}
+
 	@ExceptionHandler(NoSuchElementException.class)
 	@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
 	public ResponseEntity<String> noSuchElementException(NoSuchElementException exception) {
@@ -0,0 +1,79 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.unistuttgart.ma.backend.propagation.PropagationBudget.Limit;
+
+/**
+ * {@code BudgetMetrics} count how often the limits of the
+ * {@link PropagationBudget}s were hit, over all calculations.
+ * 
+ * The metrics are thread-safe.
+ *
+ */
+public class BudgetMetrics {
+
+	private final Map<Limit, AtomicLong> hits;
+	private final AtomicLong calculations = new AtomicLong();
+	private final AtomicLong degraded = new AtomicLong();
+	private final AtomicLong truncated = new AtomicLong();
+
+	public BudgetMetrics() {
+		this.hits = new EnumMap<>(Limit.class);
+		for (Limit limit : Limit.values()) {
+			hits.put(limit, new AtomicLong());
+		}
+	}
+
+	/**
+	 * Record the budget of a finished calculation.
+	 * 
+	 * @param budget the budget
+	 */
+	public void record(PropagationBudget budget) {
+		calculations.incrementAndGet();
+		if (!budget.isDegraded()) {
+			return;
+		}
+		degraded.incrementAndGet();
+		truncated.addAndGet(budget.getTruncated());
+		for (Limit limit : budget.getExceeded()) {
+			hits.get(limit).incrementAndGet();
+		}
+	}
+
+	/**
+	 * Get the number of calculations that hit the given limit.
+	 * 
+	 * @param limit the limit
+	 * @return number of calculations
+	 */
+	public long getHits(Limit limit) {
+		return hits.get(limit).get();
+	}
+
+	public long getCalculations() {
+		return calculations.get();
+	}
+
+	/**
+	 * Get the number of calculations that hit any limit.
+	 * 
+	 * @return number of degraded calculations
+	 */
+	public long getDegraded() {
+		return degraded.get();
+	}
+
+	/**
+	 * Get the number of paths that were not followed to the end, over all
+	 * calculations.
+	 * 
+	 * @return number of truncated paths
+	 */
+	public long getTruncated() {
+		return truncated.get();
+	}
+}
@@ -0,0 +1,216 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.unistuttgart.gropius.ComponentInterface;
+import de.unistuttgart.ma.saga.SagaStep;
+
+/**
+ * A {@code CompiledGraph} is a compact representation of the propagation edges
+ * of a system.
+ * 
+ * Each interface of the system is a node, identified by an int. For each node,
+ * the successors it propagates to are stored in compressed sparse row format,
+ * i.e. the successors of node {@code n} are the entries
+ * {@code offsets[n] .. offsets[n+1]-1} of one shared array. There is one such
+ * pair of arrays for the interfaces provided by the consumers of an interface,
+ * and one for the saga steps realised with an interface.
+ * 
+ * Thus a traversal needs neither EMF lists nor maps, only array lookups. The
+ * graph does not change after it is built, and may be shared between threads.
+ *
+ */
+public class CompiledGraph {
+
+	private final ComponentInterface[] faces;
+	/**
+	 * maps interface ids to nodes.
+	 */
+	private final Map<String, Integer> nodes;
+
+	private final int[] consumerOffsets;
+	private final int[] consumers;
+
+	private final int[] stepOffsets;
+	private final SagaStep[] steps;
+
+	/**
+	 * Compile the graph of an indexed system.
+	 * 
+	 * @param index propagation index of the system
+	 */
+	public CompiledGraph(PropagationIndex index) {
+		assert (index != null);
+		List<ComponentInterface> faceList = new ArrayList<>();
+		for (ComponentInterface face : index.getInterfaces()) {
+			faceList.add(face);
+		}
+		this.faces = faceList.toArray(new ComponentInterface[0]);
+		this.nodes = new HashMap<>();
+		for (int node = 0; node < faces.length; node++) {
+			nodes.put(faces[node].getId(), node);
+		}
+
+		this.consumerOffsets = new int[faces.length + 1];
+		this.stepOffsets = new int[faces.length + 1];
+		int consumerCount = 0;
+		int stepCount = 0;
+		for (int node = 0; node < faces.length; node++) {
+			consumerCount += index.getConsumerInterfaces(faces[node]).size();
+			stepCount += index.getSteps(faces[node]).size();
+			consumerOffsets[node + 1] = consumerCount;
+			stepOffsets[node + 1] = stepCount;
+		}
+
+		this.consumers = new int[consumerCount];
+		this.steps = new SagaStep[stepCount];
+		for (int node = 0; node < faces.length; node++) {
+			int i = consumerOffsets[node];
+			for (ComponentInterface next : index.getConsumerInterfaces(faces[node])) {
+				Integer nextNode = nodes.get(next.getId());
+				consumers[i++] = nextNode == null ? -1 : nextNode;
+			}
+			i = stepOffsets[node];
+			for (SagaStep step : index.getSteps(faces[node])) {
+				steps[i++] = step;
+			}
+		}
+	}
+
+	/**
+	 * Get the number of nodes.
+	 * 
+	 * @return number of nodes
+	 */
+	public int size() {
+		return faces.length;
+	}
+
+	/**
+	 * Get the node of an interface.
+	 * 
+	 * @param face the interface
+	 * @return the node, or -1 if the interface is not part of the graph
+	 */
+	public int getNode(ComponentInterface face) {
+		Integer node = nodes.get(face.getId());
+		return node == null ? -1 : node;
+	}
+
+	/**
+	 * Get the interface of a node.
+	 * 
+	 * @param node the node
+	 * @return the interface
+	 */
+	public ComponentInterface getInterface(int node) {
+		return faces[node];
+	}
+
+	/**
+	 * Get the position of the first consumer interface of a node.
+	 * 
+	 * @param node the node
+	 * @return position of the first consumer interface
+	 */
+	public int getConsumersStart(int node) {
+		return consumerOffsets[node];
+	}
+
+	/**
+	 * Get the position after the last consumer interface of a node.
+	 * 
+	 * @param node the node
+	 * @return position after the last consumer interface
+	 */
+	public int getConsumersEnd(int node) {
+		return consumerOffsets[node + 1];
+	}
+
+	/**
+	 * Get the consumer interface at a position.
+	 * 
+	 * @param position the position
+	 * @return node of the consumer interface, or -1 if it is not part of the graph
+	 */
+	public int getConsumer(int position) {
+		return consumers[position];
+	}
+
+	/**
+	 * Get the position of the first saga step of a node.
+	 * 
+	 * @param node the node
+	 * @return position of the first saga step
+	 */
+	public int getStepsStart(int node) {
+		return stepOffsets[node];
+	}
+
+	/**
+	 * Get the position after the last saga step of a node.
+	 * 
+	 * @param node the node
+	 * @return position after the last saga step
+	 */
+	public int getStepsEnd(int node) {
+		return stepOffsets[node + 1];
+	}
+
+	/**
+	 * Get the saga step at a position.
+	 * 
+	 * @param position the position
+	 * @return the saga step
+	 */
+	public SagaStep getStep(int position) {
+		return steps[position];
+	}
+
+	/**
+	 * Count the distinct saga steps reachable from the given interfaces, i.e. how
+	 * much of the business process a violation at the interfaces may impact.
+	 * 
+	 * Each node is visited once, thus the count is linear in the size of the
+	 * reachable subgraph, other than the number of impact chains.
+	 * 
+	 * @param initials interfaces to start at
+	 * @return number of reachable saga steps
+	 */
+	public int countReachableSteps(Collection<ComponentInterface> initials) {
+		BitSet visited = new BitSet(faces.length);
+		Deque<Integer> stack = new ArrayDeque<>();
+		for (ComponentInterface initial : initials) {
+			int node = getNode(initial);
+			if (node >= 0 && !visited.get(node)) {
+				visited.set(node);
+				stack.push(node);
+			}
+		}
+
+		Set<SagaStep> reached = new HashSet<>();
+		while (!stack.isEmpty()) {
+			int node = stack.pop();
+			for (int step = getStepsStart(node); step < getStepsEnd(node); step++) {
+				reached.add(steps[step]);
+			}
+			for (int i = getConsumersStart(node); i < getConsumersEnd(node); i++) {
+				int next = consumers[i];
+				if (next >= 0 && !visited.get(next)) {
+					visited.set(next);
+					stack.push(next);
+				}
+			}
+		}
+		return reached.size();
+	}
+}
@@ -0,0 +1,211 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import de.unistuttgart.gropius.ComponentInterface;
+import de.unistuttgart.ma.impact.Impact;
+import de.unistuttgart.ma.saga.SagaStep;
+
+/**
+ * A {@code CompiledTraversal} calculates the impact chains of a violation on
+ * the {@link CompiledGraph} of a system.
+ * 
+ * The traversal is breadth first along simple paths. Each visited path is a
+ * state, that consists of its last node and the state it was extended from.
+ * The states are kept in int arrays, which at the same time serve as the queue
+ * of the traversal. Thus the traversal itself creates no objects per hop.
+ * 
+ * Impacts are created afterwards, only for the states on chains that reach the
+ * business process. The impacts of the common prefix of different chains are
+ * shared.
+ * 
+ * The traversal respects all limits of its {@link PropagationBudget}. The
+ * frontier is the part of the queue that was not yet expanded.
+ * 
+ * A traversal is not thread-safe, and should be used for a single violation
+ * only.
+ *
+ */
+public class CompiledTraversal {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final CompiledGraph graph;
+	private final PropagationBudget budget;
+
+	/**
+	 * node, predecessor state and number of interfaces of each state.
+	 */
+	private int[] stateNodes;
+	private int[] stateParents;
+	private int[] stateDepths;
+	private int states;
+
+	/**
+	 * state and position of the saga step of each chain that reaches the business
+	 * process.
+	 */
+	private int[] hitStates;
+	private int[] hitSteps;
+	private int hits;
+
+	/**
+	 * Create a new traversal.
+	 * 
+	 * @param graph     compiled graph of the system to traverse
+	 * @param maxChains maximum number of chains to create, 0 for no limit
+	 */
+	public CompiledTraversal(CompiledGraph graph, int maxChains) {
+		this(graph, PropagationBudget.ofChains(maxChains));
+	}
+
+	/**
+	 * Create a new traversal.
+	 * 
+	 * @param graph  compiled graph of the system to traverse
+	 * @param budget limits of the traversal
+	 */
+	public CompiledTraversal(CompiledGraph graph, PropagationBudget budget) {
+		assert (graph != null && budget != null);
+		this.graph = graph;
+		this.budget = budget;
+
+		this.stateNodes = new int[INITIAL_CAPACITY];
+		this.stateParents = new int[INITIAL_CAPACITY];
+		this.stateDepths = new int[INITIAL_CAPACITY];
+		this.hitStates = new int[INITIAL_CAPACITY];
+		this.hitSteps = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Calculate the impact chains that start at the given interfaces and reach
+	 * the business process.
+	 * 
+	 * @param initials interfaces at which the chains start, must be part of the
+	 *                 graph
+	 * @param maker    creates the impacts
+	 * @return the top level impact of each chain, i.e. the impact at a task.
+	 */
+	public List<Impact> traverse(Collection<ComponentInterface> initials, ImpactMaker maker) {
+		for (ComponentInterface initial : initials) {
+			int node = graph.getNode(initial);
+			if (node < 0) {
+				throw new IllegalArgumentException(
+						String.format("Interface %s is not part of the graph", initial.getId()));
+			}
+			addState(node, -1, 1);
+		}
+
+		int state = 0;
+		expansion: for (; state < states; state++) {
+			if (budget.isExpired()) {
+				break;
+			}
+			int node = stateNodes[state];
+			int stepsStart = graph.getStepsStart(node);
+			int stepsEnd = graph.getStepsEnd(node);
+			if (stepsStart < stepsEnd) {
+				for (int step = stepsStart; step < stepsEnd; step++) {
+					if (!budget.allowsChain(hits)) {
+						break expansion;
+					}
+					addHit(state, step);
+				}
+				continue;
+			}
+			for (int i = graph.getConsumersStart(node); i < graph.getConsumersEnd(node); i++) {
+				int next = graph.getConsumer(i);
+				if (next < 0 || isOnPath(state, next)) {
+					continue;
+				}
+				if (!budget.allowsDepth(stateDepths[state] + 1) || !budget.allowsFrontier(states - state)) {
+					budget.truncate(1);
+					continue;
+				}
+				addState(next, state, stateDepths[state] + 1);
+			}
+		}
+		budget.truncate(states - state);
+
+		return materialize(maker);
+	}
+
+	/**
+	 * Create the impacts of all chains that reach the business process.
+	 * 
+	 * @param maker creates the impacts
+	 * @return the top level impact of each chain
+	 */
+	private List<Impact> materialize(ImpactMaker maker) {
+		Impact[] impacts = new Impact[states];
+		int[] path = new int[graph.size()];
+		List<Impact> topLevelImpacts = new ArrayList<>(hits);
+		for (int hit = 0; hit < hits; hit++) {
+			Impact impact = getImpact(hitStates[hit], impacts, path, maker);
+			SagaStep step = graph.getStep(hitSteps[hit]);
+			Impact stepImpact = maker.makeImpact(impact, step);
+			topLevelImpacts.add(maker.makeImpact(stepImpact, step.getTask()));
+		}
+		return topLevelImpacts;
+	}
+
+	/**
+	 * Get the impact of a state, and create it and the impacts of its
+	 * predecessors, if they do not yet exist.
+	 * 
+	 * @param state   the state
+	 * @param impacts impacts of the states created so far
+	 * @param path    buffer for the states without impact on the path
+	 * @param maker   creates the impacts
+	 * @return impact of the state
+	 */
+	private Impact getImpact(int state, Impact[] impacts, int[] path, ImpactMaker maker) {
+		int depth = 0;
+		for (int current = state; current >= 0 && impacts[current] == null; current = stateParents[current]) {
+			path[depth++] = current;
+		}
+		for (int i = depth - 1; i >= 0; i--) {
+			int parent = stateParents[path[i]];
+			impacts[path[i]] = maker.makeImpact(parent < 0 ? null : impacts[parent],
+					graph.getInterface(stateNodes[path[i]]));
+		}
+		return impacts[state];
+	}
+
+	/**
+	 * Check whether a node is on the path of a state.
+	 */
+	private boolean isOnPath(int state, int node) {
+		for (int current = state; current >= 0; current = stateParents[current]) {
+			if (stateNodes[current] == node) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addState(int node, int parent, int depth) {
+		if (states == stateNodes.length) {
+			stateNodes = Arrays.copyOf(stateNodes, states * 2);
+			stateParents = Arrays.copyOf(stateParents, states * 2);
+			stateDepths = Arrays.copyOf(stateDepths, states * 2);
+		}
+		stateNodes[states] = node;
+		stateParents[states] = parent;
+		stateDepths[states] = depth;
+		states++;
+	}
+
+	private void addHit(int state, int step) {
+		if (hits == hitStates.length) {
+			hitStates = Arrays.copyOf(hitStates, hits * 2);
+			hitSteps = Arrays.copyOf(hitSteps, hits * 2);
+		}
+		hitStates[hits] = state;
+		hitSteps[hits] = step;
+		hits++;
+	}
+}
@@ -0,0 +1,81 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.eclipse.emf.ecore.EObject;
+
+import de.unistuttgart.ma.backend.repository.ImpactItem;
+import de.unistuttgart.ma.backend.repository.ImpactWriter;
+import de.unistuttgart.ma.impact.Impact;
+import de.unistuttgart.ma.impact.ImpactFactory;
+
+/**
+ * An {@code ImpactBatch} creates the impacts of a single impact calculation
+ * and collects them, to persist them all at once afterwards.
+ * 
+ * The ids of the impacts are generated as {@link ObjectId}s, thus they are
+ * unique without asking the database, and the calculation itself does not
+ * access the database at all.
+ * 
+ * A batch is not thread-safe.
+ *
+ */
+public class ImpactBatch implements ImpactMaker {
+
+	private final List<Impact> impacts;
+
+	public ImpactBatch() {
+		this.impacts = new ArrayList<>();
+	}
+
+	/**
+	 * Creates a new impact with a new unique id, and collects it to be persisted
+	 * later.
+	 */
+	@Override
+	public Impact makeImpact(Impact cause, EObject location) {
+		assert (location != null);
+		Impact causedImpact = ImpactFactory.eINSTANCE.createImpact();
+		causedImpact.setCause(cause);
+		causedImpact.setLocation(location);
+		causedImpact.setId(new ObjectId().toHexString());
+
+		impacts.add(causedImpact);
+
+		return causedImpact;
+	}
+
+	/**
+	 * Get all impacts created so far, that are not yet persisted.
+	 * 
+	 * @return the impacts
+	 */
+	public List<Impact> getImpacts() {
+		return Collections.unmodifiableList(impacts);
+	}
+
+	/**
+	 * Hand all collected impacts to the writer, that persists them with a single
+	 * bulk insert.
+	 * 
+	 * Each impact is persisted once, along with the number of chains of the tree
+	 * that go through it. Impacts, that are not on any chain of the tree, are
+	 * persisted with no references.
+	 * 
+	 * @param writer writer to persist the impacts with
+	 * @param tree   the chains of the impacts
+	 */
+	public void flush(ImpactWriter writer, ImpactTree tree) {
+		List<ImpactItem> items = new ArrayList<>(impacts.size());
+		for (Impact impact : impacts) {
+			Impact cause = impact.getCause();
+			items.add(new ImpactItem(impact.getId(), cause == null ? null : cause.getId(), impact.getLocationId(),
+					tree.getReferences(impact)));
+		}
+		writer.write(items);
+		impacts.clear();
+	}
+}
@@ -0,0 +1,22 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import org.eclipse.emf.ecore.EObject;
+
+import de.unistuttgart.ma.impact.Impact;
+
+/**
+ * An {@code ImpactMaker} creates the impacts of an impact chain, one hop at a
+ * time.
+ */
+@FunctionalInterface
+public interface ImpactMaker {
+
+	/**
+	 * Create a new impact.
+	 * 
+	 * @param cause    cause of the impact, null for the first impact of a chain
+	 * @param location location of the impact
+	 * @return the new impact
+	 */
+	Impact makeImpact(Impact cause, EObject location);
+}
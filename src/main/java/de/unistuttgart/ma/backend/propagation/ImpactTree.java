@@ -0,0 +1,110 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.unistuttgart.ma.impact.Impact;
+
+/**
+ * An {@code ImpactTree} is a view on the impact chains of a violation as a
+ * prefix tree.
+ * 
+ * Chains that share a prefix share the impacts of that prefix, i.e. the
+ * impacts form a tree (or a forest, if the violation has multiple initial
+ * impacts) with the top level impacts as leaves. The tree knows each distinct
+ * impact once, along with the number of chains that go through it. Thus it can
+ * be built, persisted and serialised in time proportional to the number of
+ * distinct impacts, instead of the accumulated length of all chains.
+ * 
+ * Impacts are compared by identity.
+ *
+ */
+public class ImpactTree {
+
+	private final List<Impact> topLevelImpacts;
+	/**
+	 * all distinct impacts, each after its cause.
+	 */
+	private final List<Impact> impacts;
+	/**
+	 * maps impacts to the number of chains that go through them.
+	 */
+	private final Map<Impact, Integer> references;
+
+	/**
+	 * Build the tree of the given chains.
+	 * 
+	 * @param topLevelImpacts top level impacts of the chains
+	 */
+	public ImpactTree(Collection<Impact> topLevelImpacts) {
+		assert (topLevelImpacts != null);
+		this.topLevelImpacts = Collections.unmodifiableList(new ArrayList<>(topLevelImpacts));
+		this.impacts = new ArrayList<>();
+		this.references = new IdentityHashMap<>();
+
+		List<Impact> segment = new ArrayList<>();
+		for (Impact topLevelImpact : topLevelImpacts) {
+			for (Impact current = topLevelImpact; current != null
+					&& !references.containsKey(current); current = current.getCause()) {
+				segment.add(current);
+				references.put(current, 0);
+			}
+			for (int i = segment.size() - 1; i >= 0; i--) {
+				impacts.add(segment.get(i));
+			}
+			segment.clear();
+			references.merge(topLevelImpact, 1, Integer::sum);
+		}
+
+		for (int i = impacts.size() - 1; i >= 0; i--) {
+			Impact impact = impacts.get(i);
+			if (impact.getCause() != null) {
+				references.merge(impact.getCause(), references.get(impact), Integer::sum);
+			}
+		}
+	}
+
+	public List<Impact> getTopLevelImpacts() {
+		return topLevelImpacts;
+	}
+
+	/**
+	 * Get all distinct impacts of the chains.
+	 * 
+	 * @return distinct impacts, each after its cause
+	 */
+	public List<Impact> getImpacts() {
+		return Collections.unmodifiableList(impacts);
+	}
+
+	/**
+	 * Get the number of chains that go through an impact.
+	 * 
+	 * @param impact the impact
+	 * @return number of chains, or 0 if the impact is on none of the chains
+	 */
+	public int getReferences(Impact impact) {
+		return references.getOrDefault(impact, 0);
+	}
+
+	/**
+	 * Get the accumulated length of all chains, i.e. the number of impacts there
+	 * were, if the chains did not share their prefixes.
+	 * 
+	 * As each impact occurs on as many chains as go through it, that is the sum of
+	 * the references of all impacts.
+	 * 
+	 * @return accumulated length of all chains
+	 */
+	public long getPathLength() {
+		long length = 0;
+		for (int count : references.values()) {
+			length += count;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,235 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.unistuttgart.gropius.ComponentInterface;
+import de.unistuttgart.ma.impact.Impact;
+import de.unistuttgart.ma.saga.SagaStep;
+
+/**
+ * A {@code MemoizedTraversal} calculates the impact chains of a violation along
+ * simple paths only, i.e. it never visits an interface twice on the same chain.
+ * Thus it terminates, even if the architecture has cycles.
+ *
+ * The traversal happens in two phases. First, it calculates for each reachable
+ * interface, which of its successors lead to the business process. The result
+ * for an interface is memoized, unless it depends on the path it was reached
+ * by, which is only the case for interfaces that reach a cycle. Thus the first
+ * phase is linear in the size of the reachable subgraph, as long as there are
+ * no cycles. Second, it walks the result of the first phase and creates the
+ * impact chains. The impacts of the common prefix of different chains are
+ * shared, as with the breadth first traversal.
+ *
+ * The traversal respects the depth, notification and deadline limits of its
+ * {@link PropagationBudget}. It never has a frontier, thus the frontier limit
+ * does not apply.
+ *
+ * A traversal is not thread-safe, and should be used for a single violation,
+ * or for several violations of the same system with a budget each.
+ *
+ */
+public class MemoizedTraversal {
+
+	private final PropagationIndex index;
+	private PropagationBudget budget;
+
+	/**
+	 * maps interfaces to their path independent results.
+	 */
+	private final Map<ComponentInterface, Node> memo;
+
+	private int chains;
+
+	/**
+	 * Create a new traversal.
+	 *
+	 * @param index     propagation index of the system to traverse
+	 * @param maxChains maximum number of chains to create, 0 for no limit
+	 */
+	public MemoizedTraversal(PropagationIndex index, int maxChains) {
+		this(index, PropagationBudget.ofChains(maxChains));
+	}
+
+	/**
+	 * Create a new traversal.
+	 *
+	 * @param index  propagation index of the system to traverse
+	 * @param budget limits of the traversal
+	 */
+	public MemoizedTraversal(PropagationIndex index, PropagationBudget budget) {
+		assert (index != null && budget != null);
+		this.index = index;
+		this.budget = budget;
+		this.memo = new HashMap<>();
+		this.chains = 0;
+	}
+
+	/**
+	 * Calculate the impact chains that start at the given interfaces and reach
+	 * the business process.
+	 *
+	 * @param initials interfaces at which the chains start
+	 * @param maker    creates the impacts
+	 * @return the top level impact of each chain, i.e. the impact at a task.
+	 */
+	public List<Impact> traverse(Collection<ComponentInterface> initials, ImpactMaker maker) {
+		List<Impact> topLevelImpacts = new ArrayList<>();
+		for (ComponentInterface initial : initials) {
+			Node root = build(initial, new HashSet<>(), new boolean[1]);
+			emit(root, null, maker, topLevelImpacts);
+		}
+		return topLevelImpacts;
+	}
+
+	/**
+	 * Calculate the impact chains that start at the given interfaces and reach
+	 * the business process, within a budget of their own.
+	 *
+	 * The memoized results of previous calls are reused, thus chains of multiple
+	 * violations of the same system are cheaper to calculate with the same
+	 * traversal.
+	 *
+	 * @param initials interfaces at which the chains start
+	 * @param maker    creates the impacts
+	 * @param budget   limits of this call
+	 * @return the top level impact of each chain, i.e. the impact at a task.
+	 */
+	public List<Impact> traverse(Collection<ComponentInterface> initials, ImpactMaker maker,
+			PropagationBudget budget) {
+		assert (budget != null);
+		this.budget = budget;
+		this.chains = 0;
+		return traverse(initials, maker);
+	}
+
+	/**
+	 * Get the number of memoized interfaces.
+	 *
+	 * @return number of memoized interfaces
+	 */
+	public int getMemoizedCount() {
+		return memo.size();
+	}
+
+	/**
+	 * Calculate which successors of an interface lead to the business process.
+	 *
+	 * Successors that are already on the path are omitted. If that happens
+	 * anywhere below the interface, the result depends on the path and is not
+	 * memoized. The same applies to interfaces beyond the depth limit, and to
+	 * interfaces reached after the deadline, which count as dead ends. Memoized
+	 * results are only reused, if their chains fit into the depth limit.
+	 *
+	 * @param face   the interface
+	 * @param onPath interfaces on the path to the interface
+	 * @param cut    set to true, if any successor was omitted below the interface
+	 * @return result for the interface
+	 */
+	private Node build(ComponentInterface face, Set<ComponentInterface> onPath, boolean[] cut) {
+		Node memoized = memo.get(face);
+		if (memoized != null && budget.allowsDepth(onPath.size() + memoized.height)) {
+			return memoized;
+		}
+
+		if (!budget.allowsDepth(onPath.size() + 1) || budget.isExpired()) {
+			budget.truncate(1);
+			cut[0] = true;
+			return new Node(face, Collections.emptyList(), Collections.emptyList());
+		}
+
+		List<SagaStep> steps = index.getSteps(face);
+		if (!steps.isEmpty()) {
+			Node node = new Node(face, steps, Collections.emptyList());
+			memo.put(face, node);
+			return node;
+		}
+
+		onPath.add(face);
+		boolean wasCut = false;
+		List<Node> nexts = new ArrayList<>();
+		for (ComponentInterface next : index.getConsumerInterfaces(face)) {
+			if (onPath.contains(next)) {
+				wasCut = true;
+				continue;
+			}
+			boolean[] nextCut = new boolean[1];
+			Node child = build(next, onPath, nextCut);
+			wasCut |= nextCut[0];
+			if (!child.isDeadEnd()) {
+				nexts.add(child);
+			}
+		}
+		onPath.remove(face);
+
+		Node node = new Node(face, Collections.emptyList(), nexts);
+		if (wasCut) {
+			cut[0] = true;
+		} else {
+			memo.put(face, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Create the impacts of all chains through a node.
+	 *
+	 * @param node            the node
+	 * @param cause           impact at the predecessor of the node
+	 * @param maker           creates the impacts
+	 * @param topLevelImpacts collects the top level impacts
+	 */
+	private void emit(Node node, Impact cause, ImpactMaker maker, List<Impact> topLevelImpacts) {
+		if (budget.isChainLimitReached(chains) || node.isDeadEnd()) {
+			return;
+		}
+		Impact impact = maker.makeImpact(cause, node.face);
+
+		for (SagaStep step : node.steps) {
+			if (!budget.allowsChain(chains)) {
+				return;
+			}
+			Impact stepImpact = maker.makeImpact(impact, step);
+			topLevelImpacts.add(maker.makeImpact(stepImpact, step.getTask()));
+			chains++;
+		}
+		for (Node next : node.nexts) {
+			emit(next, impact, maker, topLevelImpacts);
+		}
+	}
+
+	/**
+	 * Result for an interface. Either the interface realises saga steps, or it
+	 * has successors that lead to the business process, or it is a dead end.
+	 */
+	private static class Node {
+		public final ComponentInterface face;
+		public final List<SagaStep> steps;
+		public final List<Node> nexts;
+		/**
+		 * maximum number of interfaces on the chains from the interface on.
+		 */
+		public final int height;
+
+		public Node(ComponentInterface face, List<SagaStep> steps, List<Node> nexts) {
+			this.face = face;
+			this.steps = steps;
+			this.nexts = nexts;
+			int nextHeight = 0;
+			for (Node next : nexts) {
+				nextHeight = Math.max(nextHeight, next.height);
+			}
+			this.height = nextHeight + 1;
+		}
+
+		public boolean isDeadEnd() {
+			return steps.isEmpty() && nexts.isEmpty();
+		}
+	}
+}
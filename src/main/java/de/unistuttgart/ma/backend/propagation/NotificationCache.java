@@ -0,0 +1,186 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.unistuttgart.ma.backend.repository.ModelDiff;
+import de.unistuttgart.ma.backend.repository.SystemListener;
+import de.unistuttgart.ma.impact.Impact;
+
+/**
+ * A {@code NotificationCache} holds the impact chains calculated for violations
+ * of slo rules, such that repeated violations of the same rule need not be
+ * propagated again.
+ * 
+ * The chains are identified by the system, the revision of its model, the id
+ * of the violated rule and the settings they were calculated with. The impacts
+ * of cached chains are already persisted, thus they may be handed out as they
+ * are.
+ * 
+ * The cache is bounded by the number of entries, the least recently used
+ * entries are evicted first. All entries of a system are invalidated, as soon
+ * as the system changes or its model is updated, as the locations of the cached
+ * impacts belong to the previous model. After an update, the
+ * {@link ReachabilityRegistry} patches the chains of the unaffected rules
+ * instead.
+ *
+ */
+@Component
+public class NotificationCache implements SystemListener {
+
+	private final int maxEntries;
+
+	/**
+	 * maps keys to the top level impacts of the chains, in order of access.
+	 */
+	private final LinkedHashMap<Key, List<Impact>> entries;
+
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+
+	/**
+	 * Create a new cache.
+	 * 
+	 * @param maxEntries maximum number of cached results, 0 to disable the cache
+	 */
+	public NotificationCache(@Value("${notificationcache.maxentries:256}") int maxEntries) {
+		if (maxEntries < 0) {
+			throw new IllegalArgumentException("bound of the cache must not be negative.");
+		}
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, List<Impact>> eldest) {
+				return size() > NotificationCache.this.maxEntries;
+			}
+		};
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * Get the cached chains for a violation.
+	 * 
+	 * @param systemId id of the system
+	 * @param revision revision of the system's model
+	 * @param ruleId   id of the violated rule
+	 * @param settings settings of the calculation
+	 * @return top level impacts of the chains, or null if there are no cached
+	 *         chains
+	 */
+	public synchronized List<Impact> get(String systemId, long revision, String ruleId,
+			PropagationSettings settings) {
+		List<Impact> topLevelImpacts = entries.get(new Key(systemId, revision, ruleId, settings));
+		if (topLevelImpacts == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return topLevelImpacts;
+	}
+
+	/**
+	 * Put the chains for a violation into the cache.
+	 * 
+	 * @param systemId        id of the system
+	 * @param revision        revision of the system's model
+	 * @param ruleId          id of the violated rule
+	 * @param settings        settings of the calculation
+	 * @param topLevelImpacts top level impacts of the chains
+	 */
+	public synchronized void put(String systemId, long revision, String ruleId, PropagationSettings settings,
+			List<Impact> topLevelImpacts) {
+		if (maxEntries == 0) {
+			return;
+		}
+		entries.put(new Key(systemId, revision, ruleId, settings), Collections.unmodifiableList(topLevelImpacts));
+	}
+
+	/**
+	 * Remove all cached chains of a system.
+	 * 
+	 * @param systemId id of the system
+	 */
+	public synchronized void invalidate(String systemId) {
+		Iterator<Key> iterator = entries.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().systemId.equals(systemId)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	@Override
+	public void systemChanged(String systemId) {
+		invalidate(systemId);
+	}
+
+	/**
+	 * Remove all chains of the system. Even the chains of unaffected rules refer
+	 * to the locations of the previous model, which is no longer loaded.
+	 */
+	@Override
+	public void systemUpdated(ModelDiff diff) {
+		invalidate(diff.getSystemId());
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Identifies the chains of a violation.
+	 */
+	private static class Key {
+		public final String systemId;
+		public final long revision;
+		public final String ruleId;
+		public final TraversalMode mode;
+		public final int maxChains;
+
+		public Key(String systemId, long revision, String ruleId, PropagationSettings settings) {
+			this(systemId, revision, ruleId, settings.getMode(), settings.getMaxChains());
+		}
+
+		private Key(String systemId, long revision, String ruleId, TraversalMode mode, int maxChains) {
+			this.systemId = systemId;
+			this.revision = revision;
+			this.ruleId = ruleId;
+			this.mode = mode;
+			this.maxChains = maxChains;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return systemId.equals(other.systemId) && revision == other.revision && ruleId.equals(other.ruleId)
+					&& mode == other.mode && maxChains == other.maxChains;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(systemId, revision, ruleId, mode, maxChains);
+		}
+	}
+}
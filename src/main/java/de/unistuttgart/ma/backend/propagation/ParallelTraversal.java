@@ -0,0 +1,270 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import de.unistuttgart.gropius.ComponentInterface;
+import de.unistuttgart.ma.impact.Impact;
+import de.unistuttgart.ma.saga.SagaStep;
+
+/**
+ * A {@code ParallelTraversal} calculates the impact chains of a violation on
+ * the {@link CompiledGraph} of a system, with multiple threads.
+ * 
+ * Like the {@link CompiledTraversal}, it traverses breadth first along simple
+ * paths. It expands the frontier level by level. Frontiers larger than the
+ * threshold are split into parts of at most the threshold's size, that are
+ * expanded in parallel on a {@link ForkJoinPool}. Smaller frontiers are
+ * expanded on the calling thread, as splitting them costs more than it gains.
+ * 
+ * Impacts are created afterwards on the calling thread, only for the chains
+ * that reach the business process, in the same order as the
+ * {@link CompiledTraversal} creates them. Thus the {@link ImpactMaker} need not
+ * be thread-safe.
+ * 
+ * The traversal respects all limits of its {@link PropagationBudget}. The
+ * frontier is the level that is about to be expanded, thus the depth and
+ * frontier limits apply per level, and the deadline is checked per path.
+ *
+ */
+public class ParallelTraversal {
+
+	private final CompiledGraph graph;
+	private final PropagationBudget budget;
+	private final int threshold;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Create a new traversal.
+	 * 
+	 * @param graph     compiled graph of the system to traverse
+	 * @param maxChains maximum number of chains to create, 0 for no limit
+	 * @param threshold maximum size of a frontier to expand on a single thread
+	 * @param pool      pool to expand larger frontiers on
+	 */
+	public ParallelTraversal(CompiledGraph graph, int maxChains, int threshold, ForkJoinPool pool) {
+		this(graph, PropagationBudget.ofChains(maxChains), threshold, pool);
+	}
+
+	/**
+	 * Create a new traversal.
+	 * 
+	 * @param graph     compiled graph of the system to traverse
+	 * @param budget    limits of the traversal
+	 * @param threshold maximum size of a frontier to expand on a single thread
+	 * @param pool      pool to expand larger frontiers on
+	 */
+	public ParallelTraversal(CompiledGraph graph, PropagationBudget budget, int threshold, ForkJoinPool pool) {
+		assert (graph != null && budget != null && threshold > 0 && pool != null);
+		this.graph = graph;
+		this.budget = budget;
+		this.threshold = threshold;
+		this.pool = pool;
+	}
+
+	/**
+	 * Calculate the impact chains that start at the given interfaces and reach
+	 * the business process.
+	 * 
+	 * @param initials interfaces at which the chains start, must be part of the
+	 *                 graph
+	 * @param maker    creates the impacts
+	 * @return the top level impact of each chain, i.e. the impact at a task.
+	 */
+	public List<Impact> traverse(Collection<ComponentInterface> initials, ImpactMaker maker) {
+		List<Path> frontier = new ArrayList<>();
+		for (ComponentInterface initial : initials) {
+			int node = graph.getNode(initial);
+			if (node < 0) {
+				throw new IllegalArgumentException(
+						String.format("Interface %s is not part of the graph", initial.getId()));
+			}
+			frontier.add(new Path(node, null));
+		}
+
+		List<Hit> hits = new ArrayList<>();
+		int depth = 1;
+		// go on until there are more chains than the budget allows, to tell whether it was exceeded
+		while (!frontier.isEmpty() && (budget.getMaxChains() == 0 || hits.size() <= budget.getMaxChains())) {
+			if (budget.isExpired()) {
+				budget.truncate(frontier.size());
+				break;
+			}
+			Level level;
+			if (frontier.size() <= threshold) {
+				level = expand(frontier, 0, frontier.size());
+			} else {
+				level = pool.invoke(new Expansion(frontier, 0, frontier.size()));
+			}
+			hits.addAll(level.hits);
+			frontier = level.next;
+			depth++;
+
+			if (!frontier.isEmpty() && !budget.allowsDepth(depth)) {
+				budget.truncate(frontier.size());
+				frontier = List.of();
+			} else if (!budget.allowsFrontier(frontier.size())) {
+				budget.truncate(frontier.size() - budget.getMaxFrontier());
+				frontier = frontier.subList(0, budget.getMaxFrontier());
+			}
+		}
+
+		if (budget.getMaxChains() > 0 && hits.size() > budget.getMaxChains()) {
+			budget.allowsChain(hits.size());
+			hits = hits.subList(0, budget.getMaxChains());
+		}
+		return materialize(hits, maker);
+	}
+
+	/**
+	 * Expand a part of a frontier.
+	 * 
+	 * @param frontier the frontier
+	 * @param from     first path of the part
+	 * @param to       position after the last path of the part
+	 * @return the expanded part
+	 */
+	private Level expand(List<Path> frontier, int from, int to) {
+		Level level = new Level();
+		for (int i = from; i < to; i++) {
+			if (budget.isExpired()) {
+				budget.truncate(to - i);
+				break;
+			}
+			Path path = frontier.get(i);
+			int stepsStart = graph.getStepsStart(path.node);
+			int stepsEnd = graph.getStepsEnd(path.node);
+			if (stepsStart < stepsEnd) {
+				for (int step = stepsStart; step < stepsEnd; step++) {
+					level.hits.add(new Hit(path, step));
+				}
+				continue;
+			}
+			for (int j = graph.getConsumersStart(path.node); j < graph.getConsumersEnd(path.node); j++) {
+				int next = graph.getConsumer(j);
+				if (next >= 0 && !path.contains(next)) {
+					level.next.add(new Path(next, path));
+				}
+			}
+		}
+		return level;
+	}
+
+	/**
+	 * Create the impacts of the given chains.
+	 * 
+	 * @param hits  the chains
+	 * @param maker creates the impacts
+	 * @return the top level impact of each chain
+	 */
+	private List<Impact> materialize(List<Hit> hits, ImpactMaker maker) {
+		Map<Path, Impact> impacts = new IdentityHashMap<>();
+		List<Impact> topLevelImpacts = new ArrayList<>(hits.size());
+		for (Hit hit : hits) {
+			Impact impact = getImpact(hit.path, impacts, maker);
+			SagaStep step = graph.getStep(hit.step);
+			Impact stepImpact = maker.makeImpact(impact, step);
+			topLevelImpacts.add(maker.makeImpact(stepImpact, step.getTask()));
+		}
+		return topLevelImpacts;
+	}
+
+	/**
+	 * Get the impact of a path, and create it and the impacts of its prefixes, if
+	 * they do not yet exist.
+	 */
+	private Impact getImpact(Path path, Map<Path, Impact> impacts, ImpactMaker maker) {
+		List<Path> missing = new ArrayList<>();
+		for (Path current = path; current != null && !impacts.containsKey(current); current = current.parent) {
+			missing.add(current);
+		}
+		for (int i = missing.size() - 1; i >= 0; i--) {
+			Path current = missing.get(i);
+			Impact cause = current.parent == null ? null : impacts.get(current.parent);
+			impacts.put(current, maker.makeImpact(cause, graph.getInterface(current.node)));
+		}
+		return impacts.get(path);
+	}
+
+	/**
+	 * Expands a part of a frontier, and splits it if it is larger than the
+	 * threshold.
+	 */
+	private class Expansion extends RecursiveTask<Level> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Path> frontier;
+		private final int from;
+		private final int to;
+
+		public Expansion(List<Path> frontier, int from, int to) {
+			this.frontier = frontier;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Level compute() {
+			if (to - from <= threshold) {
+				return expand(frontier, from, to);
+			}
+			int middle = (from + to) >>> 1;
+			Expansion left = new Expansion(frontier, from, middle);
+			left.fork();
+			Level right = new Expansion(frontier, middle, to).compute();
+			Level level = left.join();
+			level.hits.addAll(right.hits);
+			level.next.addAll(right.next);
+			return level;
+		}
+	}
+
+	/**
+	 * A simple path through the graph, that shares its prefix with other paths.
+	 */
+	private static class Path {
+		public final int node;
+		public final Path parent;
+
+		public Path(int node, Path parent) {
+			this.node = node;
+			this.parent = parent;
+		}
+
+		public boolean contains(int other) {
+			for (Path current = this; current != null; current = current.parent) {
+				if (current.node == other) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A path that reaches the business process, along with the position of the
+	 * reached saga step.
+	 */
+	private static class Hit {
+		public final Path path;
+		public final int step;
+
+		public Hit(Path path, int step) {
+			this.path = path;
+			this.step = step;
+		}
+	}
+
+	/**
+	 * The result of expanding (a part of) a frontier.
+	 */
+	private static class Level {
+		public final List<Hit> hits = new ArrayList<>();
+		public final List<Path> next = new ArrayList<>();
+	}
+}
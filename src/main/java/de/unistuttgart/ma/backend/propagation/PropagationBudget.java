@@ -0,0 +1,195 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code PropagationBudget} bounds the effort of the impact calculation for a
+ * single violation.
+ * 
+ * The budget limits the number of interfaces on a chain (depth), the number of
+ * paths waiting to be expanded (frontier), the number of chains that reach the
+ * business process (notifications) and the time spent (deadline). A limit of 0
+ * means no limit.
+ * 
+ * The traversals check the budget as they go. Whenever a limit stops them, the
+ * limit is recorded as exceeded and the paths that were not followed any
+ * further are counted as truncated. A result with any exceeded limit is
+ * degraded, i.e. it may lack chains.
+ * 
+ * A budget may be used by multiple threads of the same calculation.
+ *
+ */
+public class PropagationBudget {
+
+	/**
+	 * The limits of a budget.
+	 */
+	public enum Limit {
+		DEPTH, FRONTIER, NOTIFICATIONS, DEADLINE
+	}
+
+	private final int maxDepth;
+	private final int maxFrontier;
+	private final int maxChains;
+	/**
+	 * value of {@link System#nanoTime()} at which the budget expires, only valid
+	 * if there is a deadline at all.
+	 */
+	private final long deadline;
+	private final boolean hasDeadline;
+
+	private final Set<Limit> exceeded;
+	private final AtomicLong truncated;
+
+	/**
+	 * Create a new budget. The time starts to run right away.
+	 * 
+	 * @param maxDepth      maximum number of interfaces on a chain
+	 * @param maxFrontier   maximum number of paths waiting to be expanded
+	 * @param maxChains     maximum number of chains that reach the business
+	 *                      process
+	 * @param timeoutMillis maximum time to spend, in milliseconds
+	 */
+	public PropagationBudget(int maxDepth, int maxFrontier, int maxChains, long timeoutMillis) {
+		if (maxDepth < 0 || maxFrontier < 0 || maxChains < 0 || timeoutMillis < 0) {
+			throw new IllegalArgumentException("limits of the budget must not be negative.");
+		}
+		this.maxDepth = maxDepth;
+		this.maxFrontier = maxFrontier;
+		this.maxChains = maxChains;
+		this.hasDeadline = timeoutMillis > 0;
+		this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+		this.exceeded = ConcurrentHashMap.newKeySet();
+		this.truncated = new AtomicLong();
+	}
+
+	/**
+	 * Create a budget that only limits the number of chains.
+	 * 
+	 * @param maxChains maximum number of chains, 0 for no limit
+	 * @return the budget
+	 */
+	public static PropagationBudget ofChains(int maxChains) {
+		return new PropagationBudget(0, 0, maxChains, 0);
+	}
+
+	/**
+	 * Check whether a chain may have the given number of interfaces, and record
+	 * the depth limit as exceeded otherwise.
+	 * 
+	 * @param depth number of interfaces on the chain
+	 * @return true iff the depth is within the budget
+	 */
+	public boolean allowsDepth(int depth) {
+		if (maxDepth > 0 && depth > maxDepth) {
+			exceeded.add(Limit.DEPTH);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether the given number of paths may wait to be expanded, and record
+	 * the frontier limit as exceeded otherwise.
+	 * 
+	 * @param size number of waiting paths
+	 * @return true iff the frontier is within the budget
+	 */
+	public boolean allowsFrontier(int size) {
+		if (maxFrontier > 0 && size > maxFrontier) {
+			exceeded.add(Limit.FRONTIER);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether another chain may be added to the given number of chains, and
+	 * record the notification limit as exceeded otherwise.
+	 * 
+	 * @param chains number of chains so far
+	 * @return true iff another chain is within the budget
+	 */
+	public boolean allowsChain(int chains) {
+		if (isChainLimitReached(chains)) {
+			exceeded.add(Limit.NOTIFICATIONS);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether the given number of chains reached the limit, without
+	 * recording anything.
+	 * 
+	 * @param chains number of chains so far
+	 * @return true iff no more chains are within the budget
+	 */
+	public boolean isChainLimitReached(int chains) {
+		return maxChains > 0 && chains >= maxChains;
+	}
+
+	/**
+	 * Check whether the time is up, and record the deadline as exceeded if so.
+	 * 
+	 * @return true iff the time is up
+	 */
+	public boolean isExpired() {
+		if (hasDeadline && System.nanoTime() - deadline > 0) {
+			exceeded.add(Limit.DEADLINE);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Count paths that were not followed any further, because of the budget.
+	 * 
+	 * @param paths number of paths
+	 */
+	public void truncate(long paths) {
+		truncated.addAndGet(paths);
+	}
+
+	public int getMaxFrontier() {
+		return maxFrontier;
+	}
+
+	public int getMaxChains() {
+		return maxChains;
+	}
+
+	/**
+	 * Get the limits that stopped the calculation.
+	 * 
+	 * @return the exceeded limits
+	 */
+	public Set<Limit> getExceeded() {
+		return exceeded.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(exceeded));
+	}
+
+	/**
+	 * Get the number of paths that were not followed any further, because of the
+	 * budget.
+	 * 
+	 * @return number of truncated paths
+	 */
+	public long getTruncated() {
+		return truncated.get();
+	}
+
+	/**
+	 * Check whether any limit stopped the calculation.
+	 * 
+	 * @return true iff the result of the calculation may lack chains
+	 */
+	public boolean isDegraded() {
+		return !exceeded.isEmpty();
+	}
+}
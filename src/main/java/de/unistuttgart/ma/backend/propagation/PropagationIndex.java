@@ -0,0 +1,166 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.unistuttgart.gropius.Component;
+import de.unistuttgart.gropius.ComponentInterface;
+import de.unistuttgart.ma.saga.Saga;
+import de.unistuttgart.ma.saga.SagaStep;
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * A {@code PropagationIndex} knows for each interface of a system, where an
+ * impact at that interface propagates to.
+ * 
+ * An impact at an interface either propagates to the saga steps realised with
+ * that interface, or, if there are none, to the interfaces provided by the
+ * components that consume that interface.
+ * 
+ * The index is built once per system, such that each hop of the impact
+ * calculation is a lookup, instead of a search through the entire system. As
+ * the index does not change after it is built, it may be shared between
+ * threads.
+ *
+ */
+public class PropagationIndex {
+
+	private final System system;
+
+	/**
+	 * maps interface ids to interfaces.
+	 */
+	private final Map<String, ComponentInterface> interfaces;
+	/**
+	 * maps interface ids to the saga steps realised with the interface.
+	 */
+	private final Map<String, List<SagaStep>> steps;
+	/**
+	 * maps interface ids to the interfaces provided by the consumers of the
+	 * interface.
+	 */
+	private final Map<String, List<ComponentInterface>> consumerInterfaces;
+	/**
+	 * maps saga step ids to saga steps.
+	 */
+	private final Map<String, SagaStep> stepsById;
+
+	private final CompiledGraph graph;
+
+	/**
+	 * Build the index for the given system.
+	 * 
+	 * @param system the system
+	 */
+	public PropagationIndex(System system) {
+		assert (system != null);
+		this.system = system;
+		this.interfaces = new HashMap<>();
+		this.steps = new HashMap<>();
+		this.consumerInterfaces = new HashMap<>();
+		this.stepsById = new HashMap<>();
+
+		if (system.getArchitecture() != null) {
+			for (Component component : system.getArchitecture().getComponents()) {
+				for (ComponentInterface face : component.getInterfaces()) {
+					interfaces.put(face.getId(), face);
+				}
+			}
+		}
+
+		for (ComponentInterface face : interfaces.values()) {
+			List<ComponentInterface> nexts = new ArrayList<>();
+			for (Component consumer : face.getConsumedBy()) {
+				nexts.addAll(consumer.getInterfaces());
+			}
+			consumerInterfaces.put(face.getId(), Collections.unmodifiableList(nexts));
+		}
+
+		for (Saga saga : system.getSagas()) {
+			for (SagaStep step : saga.getSteps()) {
+				stepsById.put(step.getId(), step);
+				if (step.getComponentInterface() != null) {
+					steps.computeIfAbsent(step.getComponentInterface().getId(), id -> new ArrayList<>()).add(step);
+				}
+			}
+		}
+		steps.replaceAll((id, list) -> Collections.unmodifiableList(list));
+
+		this.graph = new CompiledGraph(this);
+	}
+
+	public System getSystem() {
+		return system;
+	}
+
+	/**
+	 * Check whether an interface is part of the indexed system.
+	 * 
+	 * @param face the interface
+	 * @return true iff the interface is part of the system
+	 */
+	public boolean contains(ComponentInterface face) {
+		return face != null && interfaces.get(face.getId()) == face;
+	}
+
+	/**
+	 * Get the interface with the given id.
+	 * 
+	 * @param id id of the interface
+	 * @return the interface, or null if the system has no such interface
+	 */
+	public ComponentInterface getInterface(String id) {
+		return interfaces.get(id);
+	}
+
+	/**
+	 * Get the saga step with the given id.
+	 * 
+	 * @param id id of the saga step
+	 * @return the saga step, or null if the system has no such saga step
+	 */
+	public SagaStep getStep(String id) {
+		return stepsById.get(id);
+	}
+
+	/**
+	 * Get the saga steps realised with an interface.
+	 * 
+	 * @param face the interface
+	 * @return the saga steps, or an empty list if there are none
+	 */
+	public List<SagaStep> getSteps(ComponentInterface face) {
+		return steps.getOrDefault(face.getId(), Collections.emptyList());
+	}
+
+	/**
+	 * Get the interfaces provided by the components that consume an interface.
+	 * 
+	 * @param face the interface
+	 * @return the interfaces, or an empty list if there are none
+	 */
+	public List<ComponentInterface> getConsumerInterfaces(ComponentInterface face) {
+		return consumerInterfaces.getOrDefault(face.getId(), Collections.emptyList());
+	}
+
+	/**
+	 * Get the compiled graph of the indexed system.
+	 * 
+	 * @return the compiled graph
+	 */
+	public CompiledGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Get all interfaces of the indexed system.
+	 * 
+	 * @return all interfaces
+	 */
+	public Iterable<ComponentInterface> getInterfaces() {
+		return Collections.unmodifiableCollection(interfaces.values());
+	}
+}
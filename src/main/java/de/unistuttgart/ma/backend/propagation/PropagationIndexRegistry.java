@@ -0,0 +1,86 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.unistuttgart.ma.backend.repository.ModelDiff;
+import de.unistuttgart.ma.backend.repository.SystemListener;
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * A {@code PropagationIndexRegistry} holds the {@link PropagationIndex} of each
+ * loaded system.
+ * 
+ * Indexes are built as soon as a system is loaded, or upon first access
+ * otherwise. Only the index of the latest instance of each system is kept. It
+ * is dropped as soon as its system changes or is evicted from the cache, such
+ * that the registry never holds on to instances that are no longer in use.
+ *
+ */
+public class PropagationIndexRegistry implements SystemListener {
+
+	/**
+	 * maps system ids to the index of the latest instance of the system.
+	 */
+	private final Map<String, PropagationIndex> indexes;
+
+	public PropagationIndexRegistry() {
+		this.indexes = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Get the index of a system, and build it if it does not yet exist.
+	 * 
+	 * The index of another instance of the same system is replaced. A system
+	 * without id is indexed, but its index is not kept.
+	 * 
+	 * @param system the system
+	 * @return index of the system
+	 */
+	public PropagationIndex get(System system) {
+		assert (system != null);
+		if (system.getId() == null) {
+			return new PropagationIndex(system);
+		}
+		return indexes.compute(system.getId(),
+				(id, index) -> index != null && index.getSystem() == system ? index : new PropagationIndex(system));
+	}
+
+	/**
+	 * Get the number of kept indexes.
+	 * 
+	 * @return number of indexes
+	 */
+	public int size() {
+		return indexes.size();
+	}
+
+	@Override
+	public void systemLoaded(System system) {
+		if (system.getId() != null) {
+			indexes.put(system.getId(), new PropagationIndex(system));
+		}
+	}
+
+	@Override
+	public void systemChanged(String systemId) {
+		indexes.remove(systemId);
+	}
+
+	/**
+	 * Drop the index of the previous instance and build the index of the updated
+	 * one. As the index refers to the model objects of its instance, it cannot be
+	 * carried over.
+	 */
+	@Override
+	public void systemUpdated(ModelDiff diff) {
+		indexes.put(diff.getSystemId(), new PropagationIndex(diff.getCurrent()));
+	}
+
+	@Override
+	public void systemEvicted(System system) {
+		if (system.getId() != null) {
+			indexes.computeIfPresent(system.getId(), (id, index) -> index.getSystem() == system ? null : index);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.Collections;
+import java.util.Set;
+
+import de.unistuttgart.ma.backend.propagation.PropagationBudget.Limit;
+import de.unistuttgart.ma.impact.Notification;
+
+/**
+ * A {@code PropagationResult} holds the notifications of a violation, along
+ * with the limits of the {@link PropagationBudget} that stopped their
+ * calculation.
+ * 
+ * If any limit stopped the calculation, the result is degraded, i.e. the
+ * notifications are correct, but there may be more impact chains than
+ * notifications.
+ *
+ */
+public class PropagationResult {
+
+	private final Set<Notification> notifications;
+	private final Set<Limit> exceeded;
+	private final long truncated;
+
+	/**
+	 * Create a new result.
+	 * 
+	 * @param notifications the notifications
+	 * @param exceeded      limits that stopped the calculation
+	 * @param truncated     number of paths that were not followed to the end
+	 */
+	public PropagationResult(Set<Notification> notifications, Set<Limit> exceeded, long truncated) {
+		assert (notifications != null && exceeded != null);
+		this.notifications = notifications;
+		this.exceeded = Collections.unmodifiableSet(exceeded);
+		this.truncated = truncated;
+	}
+
+	public Set<Notification> getNotifications() {
+		return notifications;
+	}
+
+	public Set<Limit> getExceeded() {
+		return exceeded;
+	}
+
+	/**
+	 * Get the number of paths that were not followed to the end, because of the
+	 * budget.
+	 * 
+	 * @return number of truncated paths
+	 */
+	public long getTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Check whether the notifications may lack impact chains.
+	 * 
+	 * @return true iff any limit stopped the calculation
+	 */
+	public boolean isDegraded() {
+		return !exceeded.isEmpty();
+	}
+}
@@ -0,0 +1,133 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code PropagationSettings} configure the impact calculation.
+ * 
+ * The defaults apply, unless the respective properties are set.
+ */
+@Component
+public class PropagationSettings {
+
+	@Value("${propagation.mode:BREADTH_FIRST}")
+	private TraversalMode mode = TraversalMode.BREADTH_FIRST;
+
+	/**
+	 * maximum number of impact chains, i.e. notifications, per violation, 0 for
+	 * no limit.
+	 */
+	@Value("${propagation.maxchains:0}")
+	private int maxChains = 0;
+
+	/**
+	 * maximum number of interfaces on an impact chain, 0 for no limit.
+	 */
+	@Value("${propagation.maxdepth:0}")
+	private int maxDepth = 0;
+
+	/**
+	 * maximum number of paths waiting to be expanded per violation, 0 for no
+	 * limit.
+	 */
+	@Value("${propagation.maxfrontier:0}")
+	private int maxFrontier = 0;
+
+	/**
+	 * maximum time to spend on the traversal per violation, in milliseconds, 0 for
+	 * no limit.
+	 */
+	@Value("${propagation.deadline:0}")
+	private long deadline = 0;
+
+	/**
+	 * maximum time to spend on precomputing the chains of a single slo rule in
+	 * {@link TraversalMode#PRECOMPUTED} mode, in milliseconds, 0 for no limit.
+	 */
+	@Value("${propagation.precomputedeadline:10000}")
+	private long precomputeDeadline = 10000;
+
+	/**
+	 * maximum size of a frontier to expand on a single thread in {@link TraversalMode#PARALLEL} mode.
+	 */
+	@Value("${propagation.parallelthreshold:1024}")
+	private int parallelThreshold = 1024;
+
+	public TraversalMode getMode() {
+		return mode;
+	}
+
+	public void setMode(TraversalMode mode) {
+		this.mode = mode;
+	}
+
+	public int getMaxChains() {
+		return maxChains;
+	}
+
+	public void setMaxChains(int maxChains) {
+		this.maxChains = maxChains;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	public int getMaxFrontier() {
+		return maxFrontier;
+	}
+
+	public void setMaxFrontier(int maxFrontier) {
+		this.maxFrontier = maxFrontier;
+	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Create a budget with the configured limits, for the calculation of a single
+	 * violation. The deadline starts to run right away.
+	 * 
+	 * @return the budget
+	 */
+	public PropagationBudget newBudget() {
+		return new PropagationBudget(maxDepth, maxFrontier, maxChains, deadline);
+	}
+
+	public long getPrecomputeDeadline() {
+		return precomputeDeadline;
+	}
+
+	public void setPrecomputeDeadline(long precomputeDeadline) {
+		this.precomputeDeadline = precomputeDeadline;
+	}
+
+	/**
+	 * Create a budget with the configured limits, for precomputing the chains of
+	 * a single slo rule. Instead of the deadline per violation, the deadline for
+	 * precomputing applies. The deadline starts to run right away.
+	 * 
+	 * @return the budget
+	 */
+	public PropagationBudget newPrecomputeBudget() {
+		return new PropagationBudget(maxDepth, maxFrontier, maxChains, precomputeDeadline);
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+}
@@ -0,0 +1,215 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.unistuttgart.ma.backend.repository.ModelDiff;
+import de.unistuttgart.ma.backend.repository.ReachabilityItem;
+import de.unistuttgart.ma.backend.repository.ReachabilityRepository;
+import de.unistuttgart.ma.backend.repository.SystemListener;
+import de.unistuttgart.ma.backend.repository.SystemRepositoryProxy;
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * A {@code ReachabilityRegistry} holds the {@link ReachabilityTable} of each
+ * system, and saves them to the {@link ReachabilityRepository}.
+ * 
+ * In {@link TraversalMode#PRECOMPUTED} mode, the table of a system is computed
+ * in the background as soon as the system is saved. A table whose revision
+ * differs from the revision of its system's model is outdated and never handed
+ * out. Instead, a new table is computed in the background. After an update of
+ * a model, its table is patched instead of computed from scratch.
+ * 
+ * A table is only saved, if no newer revision of its system is known, neither
+ * to the {@link SystemRepositoryProxy} nor to the repository. Thus a slow
+ * computation never replaces the table of a newer revision.
+ *
+ */
+public class ReachabilityRegistry implements SystemListener {
+
+	private final SystemRepositoryProxy systemRepoProxy;
+	private final ReachabilityRepository repository;
+	private final PropagationIndexRegistry indexes;
+	private final PropagationSettings settings;
+
+	/**
+	 * maps system ids to their tables.
+	 */
+	private final Map<String, ReachabilityTable> tables;
+	/**
+	 * ids of the systems whose tables are currently computed in the background.
+	 */
+	private final Set<String> ongoing;
+
+	private final AtomicLong misses;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	public ReachabilityRegistry(SystemRepositoryProxy systemRepoProxy, ReachabilityRepository repository,
+			PropagationIndexRegistry indexes, PropagationSettings settings) {
+		assert (systemRepoProxy != null && repository != null && indexes != null && settings != null);
+		this.systemRepoProxy = systemRepoProxy;
+		this.repository = repository;
+		this.indexes = indexes;
+		this.settings = settings;
+
+		this.tables = new ConcurrentHashMap<>();
+		this.ongoing = ConcurrentHashMap.newKeySet();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * Get the up to date table of a system.
+	 * 
+	 * If there is no up to date table, neither in memory nor in the repository, a
+	 * new table is computed in the background.
+	 * 
+	 * @param systemId id of the system
+	 * @return the table, or null if there is no up to date table
+	 */
+	public ReachabilityTable get(String systemId) {
+		long revision = systemRepoProxy.getRevision(systemId);
+
+		ReachabilityTable table = tables.get(systemId);
+		if (table != null && table.getRevision() == revision) {
+			return table;
+		}
+
+		List<ReachabilityItem> items = repository.findBySystemIdAndRevision(systemId, revision);
+		if (!items.isEmpty()) {
+			table = ReachabilityTable.fromItems(systemId, revision, items);
+			tables.put(systemId, table);
+			return table;
+		}
+
+		misses.incrementAndGet();
+		precomputeInBackground(systemId);
+		return null;
+	}
+
+	/**
+	 * Compute the table of a system and save it to the repository, unless a
+	 * newer revision of the system is known by then.
+	 * 
+	 * The revision of the table is the revision of the loaded model, not the
+	 * revision of the system at the time of the call.
+	 * 
+	 * @param systemId id of the system
+	 * @return the table
+	 * @throws NoSuchElementException if there is no such system
+	 */
+	public ReachabilityTable precompute(String systemId) {
+		System system = systemRepoProxy.findById(systemId);
+		long revision = systemRepoProxy.getRevision(system);
+		if (revision < 0) {
+			throw new IllegalStateException(String.format("revision of model %s is unknown.", systemId));
+		}
+
+		ReachabilityTable table = ReachabilityTable.compute(indexes.get(system), revision, settings);
+		if (store(table)) {
+			logger.info(String.format("precomputed impact chains of model %s in revision %d.", systemId, revision));
+		}
+		return table;
+	}
+
+	/**
+	 * Save a table to the repository and keep it in memory, unless a newer
+	 * revision of its system is known.
+	 * 
+	 * @param table the table
+	 * @return true iff the table was saved
+	 */
+	private boolean store(ReachabilityTable table) {
+		String systemId = table.getSystemId();
+		long revision = table.getRevision();
+		if (systemRepoProxy.getRevision(systemId) > revision
+				|| !repository.saveIfNotOutdated(systemId, revision, table.toItems())) {
+			logger.info(String.format("discarded impact chains of model %s in outdated revision %d.", systemId,
+					revision));
+			return false;
+		}
+		tables.merge(systemId, table, (current, stored) -> current.getRevision() > revision ? current : stored);
+		return true;
+	}
+
+	/**
+	 * Compute the table of a system in the background, unless that already
+	 * happens.
+	 * 
+	 * @param systemId id of the system
+	 */
+	private void precomputeInBackground(String systemId) {
+		if (!ongoing.add(systemId)) {
+			return;
+		}
+		CompletableFuture.runAsync(() -> {
+			try {
+				precompute(systemId);
+			} catch (RuntimeException e) {
+				logger.error(String.format("could not precompute impact chains of model %s : %s", systemId,
+						e.getMessage()));
+			} finally {
+				ongoing.remove(systemId);
+			}
+		});
+	}
+
+	/**
+	 * Get the number of requests, for which there was no up to date table.
+	 * 
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Patch the table of the previous revision, if there is any, such that only
+	 * the chains of the affected rules are computed. Otherwise, handle the update
+	 * as any other change.
+	 */
+	@Override
+	public void systemUpdated(ModelDiff diff) {
+		String systemId = diff.getSystemId();
+		ReachabilityTable table = tables.remove(systemId);
+		if (table == null || table.getRevision() != diff.getPreviousRevision()) {
+			List<ReachabilityItem> items = repository.findBySystemIdAndRevision(systemId,
+					diff.getPreviousRevision());
+			table = items.isEmpty() ? null
+					: ReachabilityTable.fromItems(systemId, diff.getPreviousRevision(), items);
+		}
+		if (table == null) {
+			systemChanged(systemId);
+			return;
+		}
+
+		try {
+			ReachabilityTable patched = table.patch(indexes.get(diff.getCurrent()), diff, settings);
+			if (!store(patched)) {
+				return;
+			}
+			logger.info(String.format("patched impact chains of model %s to revision %d, recomputed %d rules.",
+					systemId, diff.getCurrentRevision(), diff.getAffectedRules().size()));
+		} catch (RuntimeException e) {
+			logger.error(String.format("could not patch impact chains of model %s : %s", systemId,
+					e.getMessage()));
+			systemChanged(systemId);
+		}
+	}
+
+	@Override
+	public void systemChanged(String systemId) {
+		tables.remove(systemId);
+		if (settings.getMode() == TraversalMode.PRECOMPUTED) {
+			precomputeInBackground(systemId);
+		}
+	}
+}
@@ -0,0 +1,335 @@
+package de.unistuttgart.ma.backend.propagation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+
+import de.unistuttgart.gropius.ComponentInterface;
+import de.unistuttgart.gropius.slo.SloRule;
+import de.unistuttgart.ma.backend.repository.ModelDiff;
+import de.unistuttgart.ma.backend.repository.ReachabilityItem;
+import de.unistuttgart.ma.impact.Impact;
+import de.unistuttgart.ma.impact.ImpactFactory;
+import de.unistuttgart.ma.saga.SagaStep;
+
+/**
+ * A {@code ReachabilityTable} holds the precomputed impact chains of each slo
+ * rule of a system, such that the impacts of a violation can be created
+ * without traversing the system.
+ * 
+ * The chains of a rule are kept as a forest of location ids, in the order in
+ * which the {@link CompiledTraversal} created their impacts. The table belongs
+ * to a revision of the system's model, and is outdated as soon as the model
+ * changes. After an update, the table may be patched to the new revision. As
+ * it does not change after it is computed, it may be shared between threads.
+ * 
+ * The chains of each rule are computed within the precompute budget of the
+ * {@link PropagationSettings}. Chains whose computation was stopped by the
+ * budget, or that have too many locations to be stored, are kept as truncated,
+ * and the table has no answer for their rule.
+ *
+ */
+public class ReachabilityTable {
+
+	/**
+	 * maximum number of locations of the chains of a rule, such that the item of
+	 * the rule stays well within the size limit of a document.
+	 */
+	private static final int MAX_LOCATIONS = 100_000;
+
+	private final String systemId;
+	private final long revision;
+
+	/**
+	 * maps ids of slo rules to their chains.
+	 */
+	private final Map<String, Chains> rules;
+
+	private ReachabilityTable(String systemId, long revision, Map<String, Chains> rules) {
+		this.systemId = systemId;
+		this.revision = revision;
+		this.rules = rules;
+	}
+
+	/**
+	 * Compute the chains of all slo rules of an indexed system.
+	 * 
+	 * @param index    propagation index of the system
+	 * @param revision revision of the system's model
+	 * @param settings settings with the precompute budget
+	 * @return the table
+	 */
+	public static ReachabilityTable compute(PropagationIndex index, long revision, PropagationSettings settings) {
+		Map<String, Chains> rules = new HashMap<>();
+		for (SloRule rule : index.getSystem().getSloRules()) {
+			Chains chains = computeRule(rule, index, settings);
+			if (chains != null) {
+				rules.put(rule.getId(), chains);
+			}
+		}
+		return new ReachabilityTable(index.getSystem().getId(), revision, rules);
+	}
+
+	/**
+	 * Derive the table of the updated model from this table, which must belong to
+	 * the previous revision.
+	 * 
+	 * The chains of rules that the update did not affect are taken over, only the
+	 * chains of the affected rules are computed. As the chains consist of ids
+	 * only, they are valid for the updated model as well.
+	 * 
+	 * @param index    propagation index of the updated model
+	 * @param diff     difference between the previous and the updated model
+	 * @param settings settings with the precompute budget
+	 * @return the table of the updated model
+	 */
+	public ReachabilityTable patch(PropagationIndex index, ModelDiff diff, PropagationSettings settings) {
+		assert (diff.getPreviousRevision() == revision);
+		Map<String, Chains> patched = new HashMap<>();
+		for (SloRule rule : index.getSystem().getSloRules()) {
+			Chains chains = rules.get(rule.getId());
+			if (chains == null || diff.isAffected(rule.getId())) {
+				chains = computeRule(rule, index, settings);
+			}
+			if (chains != null) {
+				patched.put(rule.getId(), chains);
+			}
+		}
+		return new ReachabilityTable(systemId, diff.getCurrentRevision(), patched);
+	}
+
+	/**
+	 * Compute the chains of a rule.
+	 * 
+	 * @param rule     the rule
+	 * @param index    propagation index of the rule's system
+	 * @param settings settings with the precompute budget
+	 * @return the chains, or null if the rule has no location in the system
+	 */
+	private static Chains computeRule(SloRule rule, PropagationIndex index, PropagationSettings settings) {
+		Collection<ComponentInterface> initials = getInitialInterfaces(rule, index);
+		if (initials.isEmpty()) {
+			return null;
+		}
+		PropagationBudget budget = settings.newPrecomputeBudget();
+		Recorder recorder = new Recorder();
+		new CompiledTraversal(index.getGraph(), budget).traverse(initials, recorder);
+		if (budget.isDegraded() || recorder.size() > MAX_LOCATIONS) {
+			return Chains.TRUNCATED;
+		}
+		return recorder.toChains();
+	}
+
+	/**
+	 * Restore a table from the items of the repository.
+	 * 
+	 * @param systemId id of the system
+	 * @param revision revision of the system's model
+	 * @param items    items of the rules of the system in that revision
+	 * @return the table
+	 */
+	public static ReachabilityTable fromItems(String systemId, long revision, List<ReachabilityItem> items) {
+		Map<String, Chains> rules = new HashMap<>();
+		for (ReachabilityItem item : items) {
+			if (item.isTruncated()) {
+				rules.put(item.getRuleId(), Chains.TRUNCATED);
+				continue;
+			}
+			int size = item.getLocations().size();
+			Chains chains = new Chains(size);
+			for (int i = 0; i < size; i++) {
+				chains.locations[i] = item.getLocations().get(i);
+				chains.causes[i] = item.getCauses().get(i);
+				chains.steps[i] = item.getSteps().get(i);
+			}
+			rules.put(item.getRuleId(), chains);
+		}
+		return new ReachabilityTable(systemId, revision, rules);
+	}
+
+	/**
+	 * Translate this table into items for the repository, one per rule.
+	 * 
+	 * @return the items
+	 */
+	public List<ReachabilityItem> toItems() {
+		List<ReachabilityItem> items = new ArrayList<>();
+		rules.forEach((ruleId, chains) -> {
+			List<String> locations = new ArrayList<>(chains.locations.length);
+			List<Integer> causes = new ArrayList<>(chains.locations.length);
+			List<Boolean> steps = new ArrayList<>(chains.locations.length);
+			for (int i = 0; i < chains.locations.length; i++) {
+				locations.add(chains.locations[i]);
+				causes.add(chains.causes[i]);
+				steps.add(chains.steps[i]);
+			}
+			items.add(new ReachabilityItem(systemId, revision, ruleId, chains == Chains.TRUNCATED, locations, causes,
+					steps));
+		});
+		return items;
+	}
+
+	public String getSystemId() {
+		return systemId;
+	}
+
+	public long getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Create the impact chains of a violation of an slo rule.
+	 * 
+	 * The locations of the chains are resolved in the given index, which must be
+	 * the index of the same revision of the system as this table. Only as many
+	 * impacts as needed for the created chains are created.
+	 * 
+	 * Of the limits of the budget, only depth and notifications apply, as the
+	 * chains are not searched for.
+	 * 
+	 * @param ruleId id of the violated slo rule
+	 * @param index  propagation index of the system
+	 * @param budget limits of the answer
+	 * @param maker  creates the impacts
+	 * @return the top level impact of each chain, or null if the table has no
+	 *         chains for the rule, its chains are truncated or the locations
+	 *         could not be resolved
+	 */
+	public List<Impact> answer(String ruleId, PropagationIndex index, PropagationBudget budget, ImpactMaker maker) {
+		Chains chains = rules.get(ruleId);
+		if (chains == null || chains == Chains.TRUNCATED) {
+			return null;
+		}
+
+		int size = chains.locations.length;
+		EObject[] locations = new EObject[size];
+		for (int i = 0; i < size; i++) {
+			locations[i] = chains.steps[i] ? index.getStep(chains.locations[i])
+					: index.getInterface(chains.locations[i]);
+			if (locations[i] == null) {
+				return null;
+			}
+		}
+
+		Impact[] impacts = new Impact[size];
+		int[] depths = new int[size];
+		List<Impact> topLevelImpacts = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			int causePosition = chains.causes[i];
+			if (causePosition >= 0 && impacts[causePosition] == null) {
+				// cause was beyond the depth limit
+				continue;
+			}
+			if (chains.steps[i]) {
+				if (!budget.allowsChain(topLevelImpacts.size())) {
+					break;
+				}
+				impacts[i] = maker.makeImpact(impacts[causePosition], locations[i]);
+				topLevelImpacts.add(maker.makeImpact(impacts[i], ((SagaStep) locations[i]).getTask()));
+				continue;
+			}
+			depths[i] = causePosition < 0 ? 1 : depths[causePosition] + 1;
+			if (!budget.allowsDepth(depths[i])) {
+				budget.truncate(1);
+				continue;
+			}
+			impacts[i] = maker.makeImpact(causePosition < 0 ? null : impacts[causePosition], locations[i]);
+		}
+		return topLevelImpacts;
+	}
+
+	/**
+	 * Get the interfaces at which the chains of a rule start.
+	 * 
+	 * @param rule  the rule
+	 * @param index propagation index of the rule's system
+	 * @return interfaces of the rule's interface or component, that are part of
+	 *         the system
+	 */
+	private static Collection<ComponentInterface> getInitialInterfaces(SloRule rule, PropagationIndex index) {
+		Collection<ComponentInterface> candidates = Collections.emptyList();
+		if (rule.getGropiusComponentInterface() != null) {
+			candidates = List.of(rule.getGropiusComponentInterface());
+		} else if (rule.getGropiusComponent() != null) {
+			candidates = rule.getGropiusComponent().getInterfaces();
+		}
+		List<ComponentInterface> initials = new ArrayList<>();
+		for (ComponentInterface face : candidates) {
+			if (index.contains(face)) {
+				initials.add(face);
+			}
+		}
+		return initials;
+	}
+
+	/**
+	 * Chains of a single rule.
+	 */
+	private static class Chains {
+		/**
+		 * placeholder for the chains of a rule, whose computation was stopped by
+		 * the budget.
+		 */
+		public static final Chains TRUNCATED = new Chains(0);
+
+		public final String[] locations;
+		public final int[] causes;
+		public final boolean[] steps;
+
+		public Chains(int size) {
+			this.locations = new String[size];
+			this.causes = new int[size];
+			this.steps = new boolean[size];
+		}
+	}
+
+	/**
+	 * Records the impacts at interfaces and saga steps as chains, instead of
+	 * creating real impacts. Impacts at tasks are implied by the impacts at their
+	 * saga steps and are not recorded.
+	 */
+	private static class Recorder implements ImpactMaker {
+		private final Map<Impact, Integer> positions = new IdentityHashMap<>();
+		private final List<String> locations = new ArrayList<>();
+		private final List<Integer> causes = new ArrayList<>();
+		private final List<Boolean> steps = new ArrayList<>();
+
+		@Override
+		public Impact makeImpact(Impact cause, EObject location) {
+			Impact impact = ImpactFactory.eINSTANCE.createImpact();
+			if (location instanceof ComponentInterface) {
+				record(impact, cause, ((ComponentInterface) location).getId(), false);
+			} else if (location instanceof SagaStep) {
+				record(impact, cause, ((SagaStep) location).getId(), true);
+			}
+			return impact;
+		}
+
+		private void record(Impact impact, Impact cause, String location, boolean step) {
+			positions.put(impact, locations.size());
+			locations.add(location);
+			causes.add(cause == null ? -1 : positions.get(cause));
+			steps.add(step);
+		}
+
+		public int size() {
+			return locations.size();
+		}
+
+		public Chains toChains() {
+			Chains chains = new Chains(locations.size());
+			for (int i = 0; i < locations.size(); i++) {
+				chains.locations[i] = locations.get(i);
+				chains.causes[i] = causes.get(i);
+				chains.steps[i] = steps.get(i);
+			}
+			return chains;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package de.unistuttgart.ma.backend.propagation;
+
+/**
+ * A {@code TraversalMode} determines how the impact calculation traverses the
+ * system model.
+ */
+public enum TraversalMode {
+	/**
+	 * Breadth first along every path, with an impact for each hop, even if the
+	 * path never reaches the business process. Does not terminate if the
+	 * architecture has cycles.
+	 */
+	BREADTH_FIRST,
+	/**
+	 * Depth first along simple paths only, with memoized results per interface.
+	 * Only creates impacts for chains that reach the business process.
+	 */
+	MEMOIZED,
+	/**
+	 * Breadth first along simple paths only, on the {@link CompiledGraph} of the
+	 * system. Only creates impacts for chains that reach the business process.
+	 */
+	COMPILED,
+	/**
+	 * Look up the chains in the {@link ReachabilityTable} of the system, that is
+	 * computed whenever the system changes. Falls back to
+	 * {@link TraversalMode#COMPILED}, if the table is outdated.
+	 */
+	PRECOMPUTED,
+	/**
+	 * Like {@link TraversalMode#COMPILED}, but expands large frontiers in
+	 * parallel.
+	 */
+	PARALLEL
+}
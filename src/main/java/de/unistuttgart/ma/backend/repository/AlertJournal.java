@@ -0,0 +1,417 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.unistuttgart.ma.backend.rest.Alert;
+
+/**
+ * An {@code AlertJournal} persists received alerts locally, before they are
+ * acknowledged, such that alerts are not lost if the backend stops while
+ * processing them.
+ *
+ * The journal is append only, and split into segment files of a fixed size,
+ * that are mapped into memory. Appending an alert writes a record with the
+ * alert to the mapped pages of the current segment, completing an alert
+ * writes a record that marks it as done. Each record has a checksum, thus a
+ * record that was only partially written when the backend stopped, is
+ * detected and ends its segment. Depending on the {@link FsyncPolicy}, the
+ * records are forced to the disk right away or left to the operating system.
+ *
+ * Upon start up, the journal reads all segments, and keeps the alerts, that
+ * were appended but not completed, to be recovered. New records always go to a
+ * new segment. Segments are deleted, as soon as all their alerts and those of
+ * all older segments are completed.
+ *
+ * Without a directory, the journal is disabled, and does nothing.
+ *
+ */
+@Component
+public class AlertJournal {
+
+	private static final String PREFIX = "alerts-";
+	private static final String SUFFIX = ".journal";
+
+	private static final byte APPENDED = 1;
+	private static final byte COMPLETED = 2;
+
+	/**
+	 * checksum, length of the payload, type and entry.
+	 */
+	private static final int HEADER_SIZE = 4 + 4 + 1 + 8;
+
+	private final Path directory;
+	private final int segmentSize;
+	private final FsyncPolicy fsync;
+
+	private final ObjectMapper mapper;
+
+	/**
+	 * segments, oldest first. the last one is the one that is appended to.
+	 */
+	private final Deque<Segment> segments;
+
+	/**
+	 * maps entries, that are not yet completed, to the segments they were
+	 * appended to.
+	 */
+	private final Map<Long, Segment> pending;
+
+	/**
+	 * alerts that were not completed before the last stop, by entry.
+	 */
+	private final Map<Long, Alert> recovered;
+
+	private long nextEntry;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Create a new journal, and read the segments that already exist.
+	 *
+	 * @param directory   directory of the segment files, empty to disable the
+	 *                    journal
+	 * @param segmentSize size of a segment file in bytes
+	 * @param fsync       when to force records to the disk
+	 * @throws UncheckedIOException if the existing segments could not be read
+	 */
+	public AlertJournal(@Value("${alertjournal.dir:}") String directory,
+			@Value("${alertjournal.segmentsize:16777216}") int segmentSize,
+			@Value("${alertjournal.fsync:NEVER}") FsyncPolicy fsync) {
+		assert (fsync != null);
+		if (segmentSize <= HEADER_SIZE) {
+			throw new IllegalArgumentException("segments are too small to hold any alert.");
+		}
+		this.directory = directory == null || directory.isBlank() ? null : Paths.get(directory);
+		this.segmentSize = segmentSize;
+		this.fsync = fsync;
+
+		this.mapper = new ObjectMapper().findAndRegisterModules();
+
+		this.segments = new ArrayDeque<>();
+		this.pending = new HashMap<>();
+		this.recovered = new LinkedHashMap<>();
+		this.nextEntry = 0;
+
+		if (this.directory != null) {
+			try {
+				Files.createDirectories(this.directory);
+				readSegments();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			compact();
+			logger.info(String.format("opened alert journal at %s with %d alerts to recover.", this.directory,
+					recovered.size()));
+		}
+	}
+
+	/**
+	 * Check whether alerts are journaled at all.
+	 *
+	 * @return true iff the journal has a directory
+	 */
+	public boolean isEnabled() {
+		return directory != null;
+	}
+
+	/**
+	 * Append an alert to the journal.
+	 *
+	 * @param alert the alert
+	 * @return the alert's entry in the journal, to complete it with, or -1 if the
+	 *         journal is disabled
+	 * @throws UncheckedIOException if the alert could not be written
+	 */
+	public synchronized long append(Alert alert) {
+		assert (alert != null);
+		if (directory == null) {
+			return -1;
+		}
+		byte[] payload;
+		try {
+			payload = mapper.writeValueAsBytes(alert);
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException("alert can not be journaled", e);
+		}
+		if (HEADER_SIZE + payload.length > segmentSize) {
+			throw new IllegalArgumentException(
+					String.format("alert of %d bytes is larger than a journal segment", payload.length));
+		}
+
+		long entry = nextEntry++;
+		Segment segment = write(APPENDED, entry, payload);
+		segment.pending.add(entry);
+		pending.put(entry, segment);
+		return entry;
+	}
+
+	/**
+	 * Mark an alert as completed, such that it is not recovered, and delete the
+	 * segments that are no longer needed.
+	 *
+	 * @param entry entry of the alert, as returned on appending it
+	 * @throws UncheckedIOException if the mark could not be written
+	 */
+	public synchronized void complete(long entry) {
+		if (directory == null || entry < 0) {
+			return;
+		}
+		Segment segment = pending.remove(entry);
+		if (segment == null) {
+			return;
+		}
+		write(COMPLETED, entry, new byte[0]);
+		segment.pending.remove(entry);
+		recovered.remove(entry);
+		compact();
+	}
+
+	/**
+	 * Get the alerts that were appended, but not completed before the journal was
+	 * opened.
+	 *
+	 * The alerts stay in the journal, until they are completed.
+	 *
+	 * @return the alerts by entry, in order of appending
+	 */
+	public synchronized Map<Long, Alert> getRecovered() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(recovered));
+	}
+
+	/**
+	 * Get the number of alerts that are not yet completed.
+	 *
+	 * @return number of pending alerts
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Get the number of segment files.
+	 *
+	 * @return number of segments
+	 */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Close the current segment. Forces it to the disk, unless the fsync policy
+	 * leaves that to the operating system anyway.
+	 */
+	@PreDestroy
+	public synchronized void close() {
+		Segment current = segments.peekLast();
+		if (current != null && current.buffer != null) {
+			if (fsync == FsyncPolicy.ALWAYS) {
+				current.buffer.force();
+			}
+			current.buffer = null;
+		}
+	}
+
+	/**
+	 * Write a record to the current segment, or to a new one, if the current one
+	 * is full.
+	 *
+	 * @param type    type of the record
+	 * @param entry   entry of the alert
+	 * @param payload the alert, or nothing
+	 * @return the segment the record was written to
+	 */
+	private Segment write(byte type, long entry, byte[] payload) {
+		Segment current = segments.peekLast();
+		if (current == null || current.buffer == null
+				|| current.buffer.remaining() < HEADER_SIZE + payload.length) {
+			current = openSegment(current == null ? 0 : current.sequence + 1);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(type);
+		crc.update(ByteBuffer.allocate(8).putLong(0, entry));
+		crc.update(payload);
+
+		MappedByteBuffer buffer = current.buffer;
+		int start = buffer.position();
+		buffer.position(start + 4);
+		buffer.putInt(payload.length).put(type).putLong(entry).put(payload);
+		// the checksum goes last, such that a record without it is incomplete.
+		buffer.putInt(start, (int) crc.getValue());
+
+		if (fsync == FsyncPolicy.ALWAYS) {
+			buffer.force();
+		}
+		return current;
+	}
+
+	/**
+	 * Create and map a new segment, that is appended to from now on.
+	 *
+	 * @param sequence sequence number of the segment
+	 * @return the segment
+	 */
+	private Segment openSegment(long sequence) {
+		Segment previous = segments.peekLast();
+		if (previous != null) {
+			if (previous.buffer != null && fsync == FsyncPolicy.ALWAYS) {
+				previous.buffer.force();
+			}
+			previous.buffer = null;
+		}
+
+		Path path = directory.resolve(String.format("%s%016d%s", PREFIX, sequence, SUFFIX));
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			Segment segment = new Segment(sequence, path);
+			segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			segments.addLast(segment);
+			return segment;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Read all existing segments, oldest first, and collect the alerts that were
+	 * not completed.
+	 *
+	 * @throws IOException if a segment could not be read
+	 */
+	private void readSegments() throws IOException {
+		List<Path> paths = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+			for (Path path : stream) {
+				paths.add(path);
+			}
+		}
+		Collections.sort(paths);
+
+		for (Path path : paths) {
+			String name = path.getFileName().toString();
+			long sequence = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+			Segment segment = new Segment(sequence, path);
+			segments.addLast(segment);
+
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+			while (buffer.remaining() >= HEADER_SIZE) {
+				int start = buffer.position();
+				int checksum = buffer.getInt();
+				int length = buffer.getInt();
+				byte type = buffer.get();
+				long entry = buffer.getLong();
+				if (type == 0) {
+					break;
+				}
+				if (length < 0 || length > buffer.remaining()) {
+					logger.warn(String.format("incomplete record at %d of journal segment %s.", start, name));
+					break;
+				}
+				byte[] payload = new byte[length];
+				buffer.get(payload);
+
+				CRC32 crc = new CRC32();
+				crc.update(type);
+				crc.update(ByteBuffer.allocate(8).putLong(0, entry));
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) {
+					logger.warn(String.format("corrupt record at %d of journal segment %s.", start, name));
+					break;
+				}
+
+				nextEntry = Math.max(nextEntry, entry + 1);
+				if (type == APPENDED) {
+					try {
+						recovered.put(entry, mapper.readValue(payload, Alert.class));
+						segment.pending.add(entry);
+						pending.put(entry, segment);
+					} catch (IOException e) {
+						logger.error(String.format("could not read alert %d of journal segment %s : %s", entry, name,
+								e.getMessage()));
+					}
+				} else if (type == COMPLETED) {
+					Segment appendedTo = pending.remove(entry);
+					if (appendedTo != null) {
+						appendedTo.pending.remove(entry);
+					}
+					recovered.remove(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Delete the oldest segments, as long as all their alerts are completed. The
+	 * segment that is appended to, is never deleted.
+	 */
+	private void compact() {
+		while (!segments.isEmpty()) {
+			Segment oldest = segments.peekFirst();
+			if (oldest.buffer != null || !oldest.pending.isEmpty()) {
+				return;
+			}
+			try {
+				Files.deleteIfExists(oldest.path);
+			} catch (IOException e) {
+				logger.error(String.format("could not delete journal segment %s : %s", oldest.path, e.getMessage()));
+				return;
+			}
+			segments.removeFirst();
+		}
+	}
+
+	/**
+	 * A segment file of the journal.
+	 */
+	private static class Segment {
+		private final long sequence;
+		private final Path path;
+
+		/**
+		 * entries of the alerts appended to this segment, that are not yet
+		 * completed.
+		 */
+		private final Set<Long> pending;
+
+		/**
+		 * mapped pages of the segment, if it is the one that is appended to.
+		 */
+		private MappedByteBuffer buffer;
+
+		private Segment(long sequence, Path path) {
+			this.sequence = sequence;
+			this.path = path;
+			this.pending = new HashSet<>();
+		}
+	}
+}
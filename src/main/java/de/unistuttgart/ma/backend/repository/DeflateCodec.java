@@ -0,0 +1,46 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * A {@code DeflateCodec} compresses with plain deflate, i.e. without the gzip
+ * header and trailer, at the highest compression level.
+ */
+@Component
+public class DeflateCodec implements ModelCodec {
+
+	public static final String NAME = "deflate";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public OutputStream encode(OutputStream outputStream) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		return new DeflaterOutputStream(outputStream, deflater) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					// non default deflaters are not ended by the stream itself
+					deflater.end();
+				}
+			}
+		};
+	}
+
+	@Override
+	public InputStream decode(InputStream inputStream) {
+		return new InflaterInputStream(inputStream);
+	}
+}
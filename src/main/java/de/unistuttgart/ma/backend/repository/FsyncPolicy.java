@@ -0,0 +1,17 @@
+package de.unistuttgart.ma.backend.repository;
+
+/**
+ * When the {@link AlertJournal} forces its records to the disk.
+ */
+public enum FsyncPolicy {
+	/**
+	 * Force each record before the append returns. Survives crashes of the
+	 * machine, at the cost of a disk flush per alert.
+	 */
+	ALWAYS,
+	/**
+	 * Leave it to the operating system. Survives crashes of the backend, as the
+	 * records are written to the mapped pages of the journal right away.
+	 */
+	NEVER
+}
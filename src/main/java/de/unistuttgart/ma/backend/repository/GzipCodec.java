@@ -0,0 +1,33 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * A {@code GzipCodec} compresses with gzip.
+ */
+@Component
+public class GzipCodec implements ModelCodec {
+
+	public static final String NAME = "gzip";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public OutputStream encode(OutputStream outputStream) throws IOException {
+		return new GZIPOutputStream(outputStream);
+	}
+
+	@Override
+	public InputStream decode(InputStream inputStream) throws IOException {
+		return new GZIPInputStream(inputStream);
+	}
+}
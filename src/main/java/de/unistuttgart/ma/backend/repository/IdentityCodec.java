@@ -0,0 +1,30 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * A {@code IdentityCodec} does not compress at all.
+ */
+@Component
+public class IdentityCodec implements ModelCodec {
+
+	public static final String NAME = "none";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public OutputStream encode(OutputStream outputStream) {
+		return outputStream;
+	}
+
+	@Override
+	public InputStream decode(InputStream inputStream) {
+		return inputStream;
+	}
+}
@@ -1,5 +1,6 @@
 package de.unistuttgart.ma.backend.repository;
 
+import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
 
 import de.unistuttgart.ma.impact.Impact;
@@ -8,9 +9,14 @@ import de.unistuttgart.ma.impact.Impact;
  * An {@code ImpactItem} is an item to be saved in the {@link ImpactRepository}.
  * 
  * It consists of the impact location, its id and the id of its cause. The ids
- * come from the database to ensure that they are unique.
+ * are either generated by the database, or are {@link ObjectId}s generated by
+ * the backend, such that they are unique in any case.
  * 
  * In fact the unique ids are them main reason for persisting the impact at all.
+ * 
+ * Impacts are shared by all impact chains with the same prefix, thus each
+ * impact is persisted only once, along with the number of chains that go
+ * through it.
  *
  */
 public class ImpactItem {
@@ -18,15 +24,21 @@ public class ImpactItem {
 	private String id;
 	private String cause;
 	private String location;
+	private int references;
 
 	public ImpactItem() {
 	}
 
 	public ImpactItem(String id, String cause, String location) {
+		this(id, cause, location, 0);
+	}
+
+	public ImpactItem(String id, String cause, String location, int references) {
 		super();
 		this.id = id;
 		this.cause = cause;
 		this.location = location;
+		this.references = references;
 	}
 
 	public ImpactItem(Impact impact) {
@@ -50,4 +62,8 @@ public class ImpactItem {
 	public String getLocation() {
 		return location;
 	}
+
+	public int getReferences() {
+		return references;
+	}
 }
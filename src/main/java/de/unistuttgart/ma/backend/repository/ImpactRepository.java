@@ -14,5 +14,5 @@ import de.unistuttgart.ma.impact.Impact;
  * classes).
  *
  */
-public interface ImpactRepository extends MongoRepository<ImpactItem, String> {
+public interface ImpactRepository extends MongoRepository<ImpactItem, String>, ImpactRepositoryCustom {
 }
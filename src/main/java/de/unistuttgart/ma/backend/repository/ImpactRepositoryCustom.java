@@ -0,0 +1,21 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.List;
+
+/**
+ * Additional operations of the {@link ImpactRepository}, that can not be
+ * derived by spring.
+ */
+public interface ImpactRepositoryCustom {
+
+	/**
+	 * Insert all items with a single unordered bulk operation.
+	 * 
+	 * The items must already have their ids. As the operation is unordered, the
+	 * database may insert them in any order and does not stop at the first
+	 * failure.
+	 * 
+	 * @param items items to insert
+	 */
+	void insertUnordered(List<ImpactItem> items);
+}
@@ -0,0 +1,29 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+/**
+ * Implementation of the {@link ImpactRepositoryCustom} operations. Spring
+ * merges it into the {@link ImpactRepository}.
+ */
+public class ImpactRepositoryImpl implements ImpactRepositoryCustom {
+
+	private final MongoOperations operations;
+
+	public ImpactRepositoryImpl(@Autowired MongoOperations operations) {
+		assert (operations != null);
+		this.operations = operations;
+	}
+
+	@Override
+	public void insertUnordered(List<ImpactItem> items) {
+		if (items.isEmpty()) {
+			return;
+		}
+		operations.bulkOps(BulkMode.UNORDERED, ImpactItem.class).insert(items).execute();
+	}
+}
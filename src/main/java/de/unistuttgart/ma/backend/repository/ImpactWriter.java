@@ -0,0 +1,310 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * An {@code ImpactWriter} persists {@link ImpactItem}s to the
+ * {@link ImpactRepository} in the background.
+ *
+ * Writes are put into a bounded queue, that is drained by a single writer
+ * thread. The writer coalesces all queued writes, up to a maximum number of
+ * items, into one bulk insert. A single write with more items is split into
+ * multiple bulk inserts of at most that many items. If the queue is full,
+ * writing threads block until the writer made room again.
+ *
+ * Depending on the {@link WriteDurability}, a write either returns once the
+ * items are persisted, or as soon as they are queued.
+ *
+ */
+@Component
+public class ImpactWriter {
+
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	private final ImpactRepository repository;
+	private final WriteDurability durability;
+	private final int maxBatchSize;
+
+	private final BlockingQueue<PendingWrite> queue;
+	private final Thread writer;
+	private volatile boolean running;
+
+	private final AtomicLong flushes;
+	private final AtomicLong writtenItems;
+	private final AtomicLong failedItems;
+	private final AtomicLong lastFlushNanos;
+	private final AtomicLong totalFlushNanos;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Create a new writer and start its writer thread.
+	 *
+	 * @param repository   repository to write to
+	 * @param durability   how long writes block
+	 * @param capacity     maximum number of queued writes
+	 * @param maxBatchSize maximum number of items per bulk insert
+	 */
+	public ImpactWriter(@Autowired ImpactRepository repository,
+			@Value("${impactwriter.durability:ACKNOWLEDGED}") WriteDurability durability,
+			@Value("${impactwriter.capacity:1024}") int capacity,
+			@Value("${impactwriter.maxbatchsize:5000}") int maxBatchSize) {
+		assert (repository != null && durability != null);
+		if (capacity < 1 || maxBatchSize < 1) {
+			throw new IllegalArgumentException("capacity and batch size of the writer must be positive.");
+		}
+		this.repository = repository;
+		this.durability = durability;
+		this.maxBatchSize = maxBatchSize;
+
+		this.queue = new ArrayBlockingQueue<>(capacity);
+
+		this.flushes = new AtomicLong();
+		this.writtenItems = new AtomicLong();
+		this.failedItems = new AtomicLong();
+		this.lastFlushNanos = new AtomicLong();
+		this.totalFlushNanos = new AtomicLong();
+
+		this.running = true;
+		this.writer = new Thread(this::drain, "impact-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Queue items to be persisted.
+	 *
+	 * Blocks while the queue is full. With {@link WriteDurability#ACKNOWLEDGED}
+	 * it also blocks until the items are persisted.
+	 *
+	 * @param items items to persist
+	 * @return future, that completes once the items are persisted
+	 * @throws IllegalStateException if the writer is already shut down
+	 */
+	public CompletableFuture<Void> write(List<ImpactItem> items) {
+		assert (items != null);
+		if (!running) {
+			throw new IllegalStateException("impact writer is shut down.");
+		}
+		if (items.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		PendingWrite write = new PendingWrite(new ArrayList<>(items));
+		enqueue(write);
+
+		if (durability == WriteDurability.ACKNOWLEDGED) {
+			await(write.done);
+		}
+		return write.done;
+	}
+
+	/**
+	 * Block until everything that was queued so far is persisted.
+	 */
+	public void flush() {
+		if (!running) {
+			return;
+		}
+		PendingWrite marker = new PendingWrite(List.of());
+		try {
+			enqueue(marker);
+		} catch (IllegalStateException e) {
+			return;
+		}
+		marker.done.join();
+	}
+
+	/**
+	 * Put a write into the queue.
+	 *
+	 * If the writer was shut down meanwhile, the write is taken back, unless the
+	 * writer thread or the shut down already took it. Thus each queued write is
+	 * either persisted or rejected, never left behind in the queue.
+	 *
+	 * @param write the write
+	 * @throws IllegalStateException if the writer is shut down
+	 */
+	private void enqueue(PendingWrite write) {
+		try {
+			queue.put(write);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for the impact writer.", e);
+		}
+		if (!running && queue.remove(write)) {
+			throw new IllegalStateException("impact writer is shut down.");
+		}
+	}
+
+	/**
+	 * Persist all queued items and stop the writer thread.
+	 *
+	 * Writes that were queued while the writer thread was about to stop are
+	 * persisted by the shutting down thread.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (writer.isAlive()) {
+			logger.warn(String.format("impact writer did not stop in time, %d writes are still queued.",
+					queue.size()));
+			return;
+		}
+
+		List<PendingWrite> left = new ArrayList<>();
+		queue.drainTo(left);
+		if (!left.isEmpty()) {
+			persist(left, left.stream().mapToInt(write -> write.items.size()).sum());
+		}
+	}
+
+	/**
+	 * Take queued writes and persist them, until the writer is shut down. On
+	 * shut down, the remaining writes are persisted as well.
+	 */
+	private void drain() {
+		List<PendingWrite> writes = new ArrayList<>();
+		while (true) {
+			PendingWrite first;
+			try {
+				first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				first = queue.poll();
+			}
+			if (first == null) {
+				if (running) {
+					continue;
+				}
+				break;
+			}
+			writes.add(first);
+
+			int size = writes.get(0).items.size();
+			PendingWrite next;
+			while (size < maxBatchSize && (next = queue.peek()) != null
+					&& size + next.items.size() <= maxBatchSize) {
+				writes.add(queue.poll());
+				size += next.items.size();
+			}
+
+			persist(writes, size);
+			writes.clear();
+		}
+	}
+
+	/**
+	 * Persist the items of the given writes, with one bulk insert per maximum
+	 * batch size. Usually that is a single bulk insert, only a single write
+	 * larger than the maximum batch size, or the writes left on shut down, take
+	 * more.
+	 *
+	 * @param writes the writes
+	 * @param size   number of items of all writes
+	 */
+	private void persist(List<PendingWrite> writes, int size) {
+		List<ImpactItem> items = new ArrayList<>(size);
+		for (PendingWrite write : writes) {
+			items.addAll(write.items);
+		}
+
+		long start = System.nanoTime();
+		try {
+			for (int from = 0; from < size; from += maxBatchSize) {
+				long chunkStart = System.nanoTime();
+				repository.insertUnordered(items.subList(from, Math.min(size, from + maxBatchSize)));
+				long chunkDuration = System.nanoTime() - chunkStart;
+				flushes.incrementAndGet();
+				lastFlushNanos.set(chunkDuration);
+				totalFlushNanos.addAndGet(chunkDuration);
+			}
+			writtenItems.addAndGet(size);
+			writes.forEach(write -> write.done.complete(null));
+		} catch (RuntimeException e) {
+			failedItems.addAndGet(size);
+			logger.error(String.format("could not persist %d impacts : %s", size, e.getMessage()));
+			writes.forEach(write -> write.done.completeExceptionally(e));
+		}
+		logger.debug(String.format("persisted %d impacts of %d writes in %d ms.", size, writes.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+	}
+
+	public WriteDurability getDurability() {
+		return durability;
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getFlushes() {
+		return flushes.get();
+	}
+
+	public long getWrittenItems() {
+		return writtenItems.get();
+	}
+
+	public long getFailedItems() {
+		return failedItems.get();
+	}
+
+	public long getLastFlushNanos() {
+		return lastFlushNanos.get();
+	}
+
+	public long getAverageFlushNanos() {
+		long count = flushes.get();
+		return count == 0 ? 0 : totalFlushNanos.get() / count;
+	}
+
+	/**
+	 * Wait for a future and rethrow its failure, if any.
+	 */
+	private static void await(CompletableFuture<Void> future) {
+		try {
+			future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Queued items along with the future to complete, once they are persisted.
+	 */
+	private static class PendingWrite {
+		public final List<ImpactItem> items;
+		public final CompletableFuture<Void> done;
+
+		public PendingWrite(List<ImpactItem> items) {
+			this.items = items;
+			this.done = new CompletableFuture<>();
+		}
+	}
+}
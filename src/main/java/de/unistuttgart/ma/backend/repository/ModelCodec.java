@@ -0,0 +1,46 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A {@code ModelCodec} compresses the serialised models before they are saved
+ * to the {@link SystemRepository}.
+ * 
+ * Each codec is identified by its name, which is saved along with the
+ * compressed model, such that the model can be decompressed by the same codec
+ * later on.
+ *
+ */
+public interface ModelCodec {
+
+	/**
+	 * Get the name of this codec.
+	 * 
+	 * @return name of this codec
+	 */
+	String getName();
+
+	/**
+	 * Wrap a stream such that everything written to the wrapper is compressed
+	 * and then written to the given stream.
+	 * 
+	 * Closing the wrapper must finish the compression.
+	 * 
+	 * @param outputStream stream to write the compressed data to
+	 * @return stream to write the uncompressed data to
+	 * @throws IOException if the wrapper could not be created
+	 */
+	OutputStream encode(OutputStream outputStream) throws IOException;
+
+	/**
+	 * Wrap a stream such that everything read from the wrapper is read from the
+	 * given stream and decompressed on the fly.
+	 * 
+	 * @param inputStream stream to read the compressed data from
+	 * @return stream to read the decompressed data from
+	 * @throws IOException if the wrapper could not be created
+	 */
+	InputStream decode(InputStream inputStream) throws IOException;
+}
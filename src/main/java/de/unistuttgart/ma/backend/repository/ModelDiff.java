@@ -0,0 +1,299 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+
+import de.unistuttgart.gropius.Component;
+import de.unistuttgart.gropius.ComponentInterface;
+import de.unistuttgart.gropius.slo.SloRule;
+import de.unistuttgart.ma.saga.Saga;
+import de.unistuttgart.ma.saga.SagaStep;
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * A {@code ModelDiff} describes, how an update changed the model of a system,
+ * as far as the impact calculation is concerned.
+ * 
+ * An interface is changed, if it was added or removed, or if its name, its
+ * component, the interfaces its impacts propagate to or the saga steps
+ * realised with it differ. An interface is affected, if it reaches a changed
+ * interface in the updated model. The impact chains that start at unaffected
+ * interfaces are the same in both models, because they only pass unchanged
+ * interfaces.
+ * 
+ * A rule is affected, if it is new, if its name or initial interfaces differ,
+ * or if any of its initial interfaces is affected. Derived data of unaffected
+ * rules may be kept across the update, everything else must be recomputed.
+ *
+ */
+public class ModelDiff {
+
+	private final String systemId;
+	private final System previous;
+	private final System current;
+	private final long previousRevision;
+	private final long currentRevision;
+
+	private final Set<String> changedInterfaces;
+	private final Set<String> affectedInterfaces;
+	private final Set<String> affectedRules;
+
+	private ModelDiff(String systemId, System previous, long previousRevision, System current,
+			long currentRevision) {
+		this.systemId = systemId;
+		this.previous = previous;
+		this.current = current;
+		this.previousRevision = previousRevision;
+		this.currentRevision = currentRevision;
+
+		Map<String, String> previousInterfaces = describeInterfaces(previous);
+		Map<String, String> currentInterfaces = describeInterfaces(current);
+		this.changedInterfaces = diff(previousInterfaces, currentInterfaces);
+		this.affectedInterfaces = reachingAny(current, changedInterfaces);
+
+		Map<String, String> previousRules = describeRules(previous);
+		Map<String, String> currentRules = describeRules(current);
+		this.affectedRules = new HashSet<>();
+		for (SloRule rule : current.getSloRules()) {
+			if (!Objects.equals(previousRules.get(rule.getId()), currentRules.get(rule.getId()))) {
+				affectedRules.add(rule.getId());
+				continue;
+			}
+			for (ComponentInterface face : getInitialInterfaces(rule)) {
+				if (affectedInterfaces.contains(face.getId())) {
+					affectedRules.add(rule.getId());
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate the difference between two revisions of the model of a system.
+	 * 
+	 * @param systemId         id of the system
+	 * @param previous         model before the update
+	 * @param previousRevision revision of the model before the update
+	 * @param current          model after the update
+	 * @param currentRevision  revision of the model after the update
+	 * @return the difference
+	 */
+	public static ModelDiff between(String systemId, System previous, long previousRevision, System current,
+			long currentRevision) {
+		assert (systemId != null && previous != null && current != null);
+		return new ModelDiff(systemId, previous, previousRevision, current, currentRevision);
+	}
+
+	public String getSystemId() {
+		return systemId;
+	}
+
+	public System getPrevious() {
+		return previous;
+	}
+
+	public System getCurrent() {
+		return current;
+	}
+
+	public long getPreviousRevision() {
+		return previousRevision;
+	}
+
+	public long getCurrentRevision() {
+		return currentRevision;
+	}
+
+	/**
+	 * Get the ids of the interfaces that were added, removed or changed.
+	 * 
+	 * @return ids of the changed interfaces
+	 */
+	public Set<String> getChangedInterfaces() {
+		return Collections.unmodifiableSet(changedInterfaces);
+	}
+
+	/**
+	 * Get the ids of the interfaces of the updated model, whose impact chains may
+	 * have changed.
+	 * 
+	 * @return ids of the affected interfaces
+	 */
+	public Set<String> getAffectedInterfaces() {
+		return Collections.unmodifiableSet(affectedInterfaces);
+	}
+
+	/**
+	 * Get the ids of the rules of the updated model, whose impact chains may have
+	 * changed.
+	 * 
+	 * @return ids of the affected rules
+	 */
+	public Set<String> getAffectedRules() {
+		return Collections.unmodifiableSet(affectedRules);
+	}
+
+	/**
+	 * Check whether the impact chains of a rule of the updated model may have
+	 * changed.
+	 * 
+	 * @param ruleId id of the rule
+	 * @return true iff the rule is affected
+	 */
+	public boolean isAffected(String ruleId) {
+		return affectedRules.contains(ruleId);
+	}
+
+	/**
+	 * Check whether the update changed anything about the impact calculation.
+	 * 
+	 * @return true iff no interface changed and no rule is affected
+	 */
+	public boolean isEmpty() {
+		return changedInterfaces.isEmpty() && affectedRules.isEmpty();
+	}
+
+	/**
+	 * Get the ids of the keys whose values differ in the two maps, including keys
+	 * that are in one map only.
+	 */
+	private static Set<String> diff(Map<String, String> previous, Map<String, String> current) {
+		Set<String> changed = new HashSet<>();
+		for (Map.Entry<String, String> entry : previous.entrySet()) {
+			if (!entry.getValue().equals(current.get(entry.getKey()))) {
+				changed.add(entry.getKey());
+			}
+		}
+		for (String id : current.keySet()) {
+			if (!previous.containsKey(id)) {
+				changed.add(id);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Get the ids of the interfaces of a system, that reach any of the given
+	 * interfaces, including those interfaces themselves.
+	 */
+	private static Set<String> reachingAny(System system, Set<String> targets) {
+		Map<String, List<String>> producers = new HashMap<>();
+		Set<String> known = new HashSet<>();
+		for (ComponentInterface face : getInterfaces(system)) {
+			known.add(face.getId());
+			for (Component consumer : face.getConsumedBy()) {
+				for (ComponentInterface next : consumer.getInterfaces()) {
+					producers.computeIfAbsent(next.getId(), id -> new ArrayList<>()).add(face.getId());
+				}
+			}
+		}
+
+		Set<String> reaching = new HashSet<>();
+		Queue<String> queue = new ArrayDeque<>();
+		for (String target : targets) {
+			if (known.contains(target) && reaching.add(target)) {
+				queue.add(target);
+			}
+		}
+		while (!queue.isEmpty()) {
+			for (String producer : producers.getOrDefault(queue.remove(), Collections.emptyList())) {
+				if (reaching.add(producer)) {
+					queue.add(producer);
+				}
+			}
+		}
+		return reaching;
+	}
+
+	/**
+	 * Describe each interface of a system by everything that goes into the
+	 * impacts at and after it.
+	 * 
+	 * @return maps interface ids to their description
+	 */
+	private static Map<String, String> describeInterfaces(System system) {
+		Map<String, StringBuilder> descriptions = new HashMap<>();
+		if (system.getArchitecture() != null) {
+			for (Component component : system.getArchitecture().getComponents()) {
+				for (ComponentInterface face : component.getInterfaces()) {
+					StringBuilder description = new StringBuilder();
+					description.append(face.getName()).append('|');
+					description.append(component.getId()).append(':').append(component.getName()).append('|');
+					for (Component consumer : face.getConsumedBy()) {
+						for (ComponentInterface next : consumer.getInterfaces()) {
+							description.append(next.getId()).append(',');
+						}
+					}
+					description.append('|');
+					descriptions.put(face.getId(), description);
+				}
+			}
+		}
+
+		for (Saga saga : system.getSagas()) {
+			for (SagaStep step : saga.getSteps()) {
+				if (step.getComponentInterface() == null) {
+					continue;
+				}
+				StringBuilder description = descriptions.get(step.getComponentInterface().getId());
+				if (description != null) {
+					description.append(step.getId()).append(':').append(step.getName());
+					if (step.getTask() != null) {
+						description.append(':').append(step.getTask().getId()).append(':')
+								.append(step.getTask().getName());
+					}
+					description.append(',');
+				}
+			}
+		}
+
+		Map<String, String> result = new HashMap<>();
+		descriptions.forEach((id, description) -> result.put(id, description.toString()));
+		return result;
+	}
+
+	/**
+	 * Describe each rule of a system by its name and its initial interfaces.
+	 * 
+	 * @return maps rule ids to their description
+	 */
+	private static Map<String, String> describeRules(System system) {
+		Map<String, String> descriptions = new HashMap<>();
+		for (SloRule rule : system.getSloRules()) {
+			StringBuilder description = new StringBuilder();
+			description.append(rule.getName()).append('|');
+			for (ComponentInterface face : getInitialInterfaces(rule)) {
+				description.append(face.getId()).append(',');
+			}
+			descriptions.put(rule.getId(), description.toString());
+		}
+		return descriptions;
+	}
+
+	private static List<ComponentInterface> getInitialInterfaces(SloRule rule) {
+		if (rule.getGropiusComponentInterface() != null) {
+			return List.of(rule.getGropiusComponentInterface());
+		} else if (rule.getGropiusComponent() != null) {
+			return rule.getGropiusComponent().getInterfaces();
+		}
+		return Collections.emptyList();
+	}
+
+	private static List<ComponentInterface> getInterfaces(System system) {
+		List<ComponentInterface> faces = new ArrayList<>();
+		if (system.getArchitecture() != null) {
+			for (Component component : system.getArchitecture().getComponents()) {
+				faces.addAll(component.getInterfaces());
+			}
+		}
+		return faces;
+	}
+}
@@ -0,0 +1,17 @@
+package de.unistuttgart.ma.backend.repository;
+
+/**
+ * A {@code ModelFormat} is the format in which a system model is stored in a
+ * {@link SystemItem}.
+ */
+public enum ModelFormat {
+	/**
+	 * ecore xml, as produced by the editor. Items without any format are legacy
+	 * items and always in this format.
+	 */
+	XMI,
+	/**
+	 * EMF's binary resource serialisation.
+	 */
+	BINARY
+}
@@ -0,0 +1,209 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A {@code ProjectIndex} maps ids of gropius projects to the ids of the system
+ * models that import the project's architecture.
+ *
+ * The index may be read and written concurrently. Reads never block, because
+ * the systems of a project are kept as immutable sets that are replaced as a
+ * whole on each write. Each write increments the version of the index.
+ *
+ * Loading the systems of an unknown project, as well as reloading the entire
+ * index, happens at most once at a time. Concurrent callers wait for the
+ * ongoing load instead of starting another one.
+ *
+ */
+public class ProjectIndex {
+
+	/**
+	 * maps project ids to the ids of the systems, in order of registration.
+	 */
+	private final ConcurrentHashMap<String, Set<String>> project2Systems;
+	/**
+	 * maps system ids to project ids, to move a system if its project changes.
+	 */
+	private final ConcurrentHashMap<String, String> system2Project;
+
+	private final ConcurrentHashMap<String, CompletableFuture<Set<String>>> ongoingLoads;
+	private final AtomicReference<CompletableFuture<Void>> ongoingReload;
+
+	private final AtomicLong version;
+
+	public ProjectIndex() {
+		this.project2Systems = new ConcurrentHashMap<>();
+		this.system2Project = new ConcurrentHashMap<>();
+		this.ongoingLoads = new ConcurrentHashMap<>();
+		this.ongoingReload = new AtomicReference<>();
+		this.version = new AtomicLong();
+	}
+
+	/**
+	 * Get the ids of all systems for a project.
+	 *
+	 * @param projectId id of the project
+	 * @return ids of the systems, in order of registration, or an empty set if the
+	 *         project is unknown
+	 */
+	public Set<String> get(String projectId) {
+		return project2Systems.getOrDefault(projectId, Collections.emptySet());
+	}
+
+	/**
+	 * Register a system for a project.
+	 *
+	 * A system belongs to one project only, thus it is removed from any other
+	 * project. If the system is already registered for the project, it is moved to
+	 * the end of the registration order.
+	 *
+	 * @param projectId id of the project
+	 * @param systemId  id of the system
+	 */
+	public void put(String projectId, String systemId) {
+		assert (projectId != null && systemId != null);
+		String previous = system2Project.put(systemId, projectId);
+		if (previous != null && !previous.equals(projectId)) {
+			project2Systems.computeIfPresent(previous, (key, systems) -> without(systems, systemId));
+		}
+		project2Systems.compute(projectId, (key, systems) -> {
+			Set<String> copy = new LinkedHashSet<>();
+			if (systems != null) {
+				copy.addAll(systems);
+			}
+			copy.remove(systemId);
+			copy.add(systemId);
+			return Collections.unmodifiableSet(copy);
+		});
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Remove a system from the index.
+	 *
+	 * @param systemId id of the system
+	 */
+	public void remove(String systemId) {
+		String previous = system2Project.remove(systemId);
+		if (previous != null) {
+			project2Systems.computeIfPresent(previous, (key, systems) -> without(systems, systemId));
+			version.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Get the ids of all systems for a project, and load them if the project is
+	 * not yet known.
+	 *
+	 * Only one load per project happens at a time. Concurrent callers for the same
+	 * project wait for the ongoing load.
+	 *
+	 * @param projectId id of the project
+	 * @param loader    loads the ids of the systems for a project
+	 * @return ids of the systems, or an empty set if there are none
+	 */
+	public Set<String> getOrLoad(String projectId, Function<String, Collection<String>> loader) {
+		Set<String> systems = get(projectId);
+		if (!systems.isEmpty()) {
+			return systems;
+		}
+
+		CompletableFuture<Set<String>> load = new CompletableFuture<>();
+		CompletableFuture<Set<String>> ongoing = ongoingLoads.putIfAbsent(projectId, load);
+		if (ongoing != null) {
+			return await(ongoing);
+		}
+
+		try {
+			for (String systemId : loader.apply(projectId)) {
+				put(projectId, systemId);
+			}
+			load.complete(get(projectId));
+		} catch (RuntimeException e) {
+			load.completeExceptionally(e);
+		} finally {
+			ongoingLoads.remove(projectId, load);
+		}
+		return await(load);
+	}
+
+	/**
+	 * Replace the content of the index.
+	 *
+	 * Only one reload happens at a time. Concurrent callers wait for the ongoing
+	 * reload.
+	 *
+	 * @param loader loads a mapping from system ids to project ids
+	 */
+	public void reload(Supplier<Map<String, String>> loader) {
+		CompletableFuture<Void> reload = new CompletableFuture<>();
+		if (!ongoingReload.compareAndSet(null, reload)) {
+			CompletableFuture<Void> ongoing = ongoingReload.get();
+			if (ongoing != null) {
+				await(ongoing);
+				return;
+			}
+			reload(loader);
+			return;
+		}
+
+		try {
+			Map<String, String> system2ProjectIds = loader.get();
+			for (String systemId : system2Project.keySet()) {
+				if (!system2ProjectIds.containsKey(systemId)) {
+					remove(systemId);
+				}
+			}
+			system2ProjectIds.forEach((systemId, projectId) -> put(projectId, systemId));
+			reload.complete(null);
+		} catch (RuntimeException e) {
+			reload.completeExceptionally(e);
+		} finally {
+			ongoingReload.set(null);
+		}
+		await(reload);
+	}
+
+	/**
+	 * Get the version of the index, which is incremented on each change.
+	 *
+	 * @return version of the index
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	private static Set<String> without(Set<String> systems, String systemId) {
+		if (!systems.contains(systemId)) {
+			return systems;
+		}
+		Set<String> copy = new LinkedHashSet<>(systems);
+		copy.remove(systemId);
+		return copy.isEmpty() ? null : Collections.unmodifiableSet(copy);
+	}
+
+	/**
+	 * Wait for a future and rethrow its failure, if any.
+	 */
+	private static <T> T await(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A {@code ReachabilityItem} is an item to be saved in the
+ * {@link ReachabilityRepository}.
+ *
+ * It holds the precomputed impact chains of a single slo rule of one system
+ * model, along with the revision of the model they were computed for, such
+ * that no item grows with the number of rules. Its id consists of the id of
+ * the system, the revision and the id of the rule.
+ *
+ * The chains are a forest of locations. The i-th location is caused by the
+ * location at {@code causes[i]}, or by the violation if that is -1. Causes
+ * always precede the locations they cause. A location is either an interface,
+ * or a saga step that reaches the business process.
+ *
+ * Chains whose computation was stopped by the budget are truncated, and
+ * contain no locations.
+ *
+ */
+@Document
+@CompoundIndex(def = "{'systemId': 1, 'revision': 1}")
+public class ReachabilityItem {
+	@Id
+	private String id;
+	private String systemId;
+	private long revision;
+	private String ruleId;
+	private boolean truncated;
+	private List<String> locations;
+	private List<Integer> causes;
+	private List<Boolean> steps;
+
+	public ReachabilityItem() {
+	}
+
+	public ReachabilityItem(String systemId, long revision, String ruleId, boolean truncated, List<String> locations,
+			List<Integer> causes, List<Boolean> steps) {
+		super();
+		this.id = String.format("%s/%d/%s", systemId, revision, ruleId);
+		this.systemId = systemId;
+		this.revision = revision;
+		this.ruleId = ruleId;
+		this.truncated = truncated;
+		this.locations = locations;
+		this.causes = causes;
+		this.steps = steps;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getSystemId() {
+		return systemId;
+	}
+
+	public long getRevision() {
+		return revision;
+	}
+
+	public String getRuleId() {
+		return ruleId;
+	}
+
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	public List<String> getLocations() {
+		return locations;
+	}
+
+	public List<Integer> getCauses() {
+		return causes;
+	}
+
+	public List<Boolean> getSteps() {
+		return steps;
+	}
+}
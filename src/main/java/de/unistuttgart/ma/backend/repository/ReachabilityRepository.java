@@ -0,0 +1,22 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.List;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+/**
+ * A {@code ReachabilityRepository} is a repository that manages the
+ * precomputed impact chains of the system models.
+ *
+ */
+public interface ReachabilityRepository extends MongoRepository<ReachabilityItem, String>, ReachabilityRepositoryCustom {
+
+	/**
+	 * Find the items of all rules of a system, that belong to the given revision.
+	 * 
+	 * @param systemId id of the system
+	 * @param revision revision of the system's model
+	 * @return the items, or an empty list if there are none
+	 */
+	List<ReachabilityItem> findBySystemIdAndRevision(String systemId, long revision);
+}
@@ -0,0 +1,25 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.List;
+
+/**
+ * Additional operations of the {@link ReachabilityRepository}, that can not be
+ * derived by spring.
+ */
+public interface ReachabilityRepositoryCustom {
+
+	/**
+	 * Save the items of one revision of a system, unless items of a newer
+	 * revision of that system are stored already, and remove the items of older
+	 * revisions.
+	 * 
+	 * As the revision is part of the ids of the items, items of a newer revision
+	 * are never overwritten, even if they are saved concurrently.
+	 * 
+	 * @param systemId id of the system
+	 * @param revision revision of the system's model
+	 * @param items    items of the system's rules in that revision
+	 * @return true iff the items were saved
+	 */
+	boolean saveIfNotOutdated(String systemId, long revision, List<ReachabilityItem> items);
+}
@@ -0,0 +1,36 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Implementation of the {@link ReachabilityRepositoryCustom} operations.
+ * Spring merges it into the {@link ReachabilityRepository}.
+ */
+public class ReachabilityRepositoryImpl implements ReachabilityRepositoryCustom {
+
+	private final MongoOperations operations;
+
+	public ReachabilityRepositoryImpl(@Autowired MongoOperations operations) {
+		assert (operations != null);
+		this.operations = operations;
+	}
+
+	@Override
+	public boolean saveIfNotOutdated(String systemId, long revision, List<ReachabilityItem> items) {
+		Query newer = Query.query(Criteria.where("systemId").is(systemId).and("revision").gt(revision));
+		if (operations.exists(newer, ReachabilityItem.class)) {
+			return false;
+		}
+		for (ReachabilityItem item : items) {
+			operations.save(item);
+		}
+		Query older = Query.query(Criteria.where("systemId").is(systemId).and("revision").lt(revision));
+		operations.remove(older, ReachabilityItem.class);
+		return true;
+	}
+}
@@ -0,0 +1,211 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * A {@code SystemCache} holds deserialised {@link System}s, such that the
+ * {@link SystemRepositoryProxy} must not query the database and parse the
+ * model for each access.
+ *
+ * The cache is bounded by the number of entries as well as by the accumulated
+ * weight of the entries. The weight of an entry is the size of its serialised
+ * model, as that is roughly proportional to the size of the deserialised model
+ * on the heap. If either bound is exceeded, the least recently used entries are
+ * evicted.
+ *
+ * The owner of the deserialised systems is told about each evicted system, and
+ * about each system that was too heavy to be cached, such that it can release
+ * the system's resources.
+ *
+ */
+@Component
+public class SystemCache {
+
+	private final int maxEntries;
+	private final long maxWeight;
+
+	/**
+	 * maps ids of systems to cached systems, in order of access.
+	 */
+	private final LinkedHashMap<String, Entry> entries;
+	private long weight;
+
+	/**
+	 * is told about evicted systems.
+	 */
+	private volatile BiConsumer<String, System> evictionListener;
+
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final AtomicLong evictions;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * Create a new cache.
+	 *
+	 * @param maxEntries maximum number of cached systems
+	 * @param maxWeight  maximum accumulated weight of all cached systems
+	 */
+	public SystemCache(@Value("${systemcache.maxentries:64}") int maxEntries,
+			@Value("${systemcache.maxweight:268435456}") long maxWeight) {
+		if (maxEntries < 0 || maxWeight < 0) {
+			throw new IllegalArgumentException("bounds of the cache must not be negative.");
+		}
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.weight = 0;
+		this.evictionListener = (id, system) -> {
+		};
+
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.evictions = new AtomicLong();
+	}
+
+	/**
+	 * Set the listener to be told about systems that are evicted or not cached at
+	 * all. It is called while the cache is locked.
+	 *
+	 * @param evictionListener gets the id and the system of each evicted system
+	 */
+	public void setEvictionListener(BiConsumer<String, System> evictionListener) {
+		assert (evictionListener != null);
+		this.evictionListener = evictionListener;
+	}
+
+	/**
+	 * Get the cached system with the given id.
+	 *
+	 * @param id id of the system
+	 * @return the cached system, or null if there is no cached system with that id
+	 */
+	public synchronized System get(String id) {
+		Entry entry = entries.get(id);
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.system;
+	}
+
+	/**
+	 * Get the cached system with the given id, without counting a hit or miss.
+	 *
+	 * @param id id of the system
+	 * @return the cached system, or null if there is no cached system with that id
+	 */
+	public synchronized System peek(String id) {
+		Entry entry = entries.get(id);
+		return entry == null ? null : entry.system;
+	}
+
+	/**
+	 * Put a system into the cache.
+	 *
+	 * A system heavier than the maximum weight is not cached at all, and is
+	 * handed to the eviction listener right away.
+	 *
+	 * @param id     id of the system
+	 * @param system the system
+	 * @param weight weight of the system
+	 */
+	public synchronized void put(String id, System system, long weight) {
+		assert (id != null && system != null);
+		invalidate(id);
+
+		if (weight > maxWeight || maxEntries == 0) {
+			logger.debug(String.format("model %s with weight %d is too heavy to be cached.", id, weight));
+			evictionListener.accept(id, system);
+			return;
+		}
+
+		entries.put(id, new Entry(system, weight));
+		this.weight += weight;
+
+		evict();
+	}
+
+	/**
+	 * Remove the system with the given id from the cache.
+	 *
+	 * @param id id of the system
+	 */
+	public synchronized void invalidate(String id) {
+		Entry entry = entries.remove(id);
+		if (entry != null) {
+			weight -= entry.weight;
+		}
+	}
+
+	/**
+	 * Remove all systems from the cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Evict least recently used entries until the cache is within its bounds
+	 * again.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while ((entries.size() > maxEntries || weight > maxWeight) && iterator.hasNext()) {
+			Map.Entry<String, Entry> eldest = iterator.next();
+			iterator.remove();
+			weight -= eldest.getValue().weight;
+			evictions.incrementAndGet();
+			logger.debug(String.format("evicted model %s from cache.", eldest.getKey()));
+			evictionListener.accept(eldest.getKey(), eldest.getValue().system);
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * A cached system along with its weight.
+	 */
+	private static class Entry {
+		public final System system;
+		public final long weight;
+
+		public Entry(System system, long weight) {
+			this.system = system;
+			this.weight = weight;
+		}
+	}
+}
@@ -1,33 +1,172 @@
 package de.unistuttgart.ma.backend.repository;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 /**
  * A {@code SystemItem} is an item to be saved in the {@link SystemRepository}.
  * 
- * Content is the actual system, serialised into ecore xml format.
+ * The actual system is either serialised into ecore xml format and saved as
+ * content, or serialised with EMF's binary format and saved as data. The format
+ * tells which one it is. Legacy items without format are always xml.
+ * 
+ * The serialised model may also be compressed. In that case it is always saved
+ * as data, the compression is the name of the {@link ModelCodec} and the raw
+ * size is the size of the model before compression.
+ * 
+ * The id of the architecture (i.e. the gropius project) of the model is also
+ * saved separately, such that the model for an architecture can be found
+ * without deserialising any models.
+ * 
+ * The revision is incremented each time the model changes, such that data
+ * derived from the model can tell whether it is outdated.
  *
  */
+@Document
 public class SystemItem {
+	/**
+	 * version of the binary format, in case it ever changes.
+	 */
+	public static final int BINARY_FORMAT_VERSION = 1;
+
 	@Id
 	private final String id;
 	private final String content;
+	private final byte[] data;
+	private final ModelFormat format;
+	private final Integer formatVersion;
+	private final String compression;
+	private final Long rawSize;
 	private final String filename;
-	
+	@Indexed
+	private final String architectureId;
+	private final Long revision;
+
 	public SystemItem(String id, String content, String filename) {
+		this(id, content, null, ModelFormat.XMI, null, null, null, filename, null);
+	}
+
+	public SystemItem(String id, String content, byte[] data, ModelFormat format, Integer formatVersion,
+			String compression, Long rawSize, String filename, String architectureId) {
+		this(id, content, data, format, formatVersion, compression, rawSize, filename, architectureId, null);
+	}
+
+	@PersistenceConstructor
+	public SystemItem(String id, String content, byte[] data, ModelFormat format, Integer formatVersion,
+			String compression, Long rawSize, String filename, String architectureId, Long revision) {
 		super();
 		this.id = id;
 		this.content = content;
+		this.data = data;
+		this.format = format;
+		this.formatVersion = formatVersion;
+		this.compression = compression;
+		this.rawSize = rawSize;
 		this.filename = filename;
+		this.architectureId = architectureId;
+		this.revision = revision;
+	}
+
+	/**
+	 * Get a copy of this item with the given architecture id.
+	 * 
+	 * @param architectureId id of the model's architecture
+	 * @return copy of this item with the given architecture id
+	 */
+	public SystemItem withArchitectureId(String architectureId) {
+		return new SystemItem(id, content, data, format, formatVersion, compression, rawSize, filename,
+				architectureId, revision);
+	}
+
+	/**
+	 * Get a copy of this item with the given revision.
+	 * 
+	 * @param revision revision of the model
+	 * @return copy of this item with the given revision
+	 */
+	public SystemItem withRevision(long revision) {
+		return new SystemItem(id, content, data, format, formatVersion, compression, rawSize, filename,
+				architectureId, revision);
 	}
 
 	public String getId() {
 		return id;
 	}
+
 	public String getContent() {
 		return content;
 	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public ModelFormat getFormat() {
+		return format == null ? ModelFormat.XMI : format;
+	}
+
+	public Integer getFormatVersion() {
+		return formatVersion;
+	}
+
+	public String getCompression() {
+		return compression == null ? IdentityCodec.NAME : compression;
+	}
+
 	public String getFilename() {
 		return filename;
 	}
-}
\ No newline at end of file
+
+	public String getArchitectureId() {
+		return architectureId;
+	}
+
+	public long getRevision() {
+		return revision == null ? 0 : revision;
+	}
+
+	/**
+	 * Check whether this item has any model at all.
+	 * 
+	 * @return true iff this item has no model
+	 */
+	public boolean isEmpty() {
+		return content == null && data == null;
+	}
+
+	/**
+	 * Get the size of the stored model, i.e. the length of either the content or
+	 * the data.
+	 * 
+	 * @return size of the stored model
+	 */
+	public long getStoredSize() {
+		if (data != null) {
+			return data.length;
+		}
+		return content == null ? 0 : content.length();
+	}
+
+	/**
+	 * Get the size of the model before compression.
+	 * 
+	 * @return size of the uncompressed model
+	 */
+	public long getRawSize() {
+		return rawSize == null ? getStoredSize() : rawSize;
+	}
+
+	/**
+	 * Get the ratio of the uncompressed to the stored size of the model.
+	 * 
+	 * @return compression ratio, 1 for uncompressed or empty models
+	 */
+	public double getCompressionRatio() {
+		if (getStoredSize() == 0) {
+			return 1;
+		}
+		return (double) getRawSize() / getStoredSize();
+	}
+}
@@ -0,0 +1,52 @@
+package de.unistuttgart.ma.backend.repository;
+
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * A {@code SystemListener} is notified by the {@link SystemRepositoryProxy}
+ * whenever a system is loaded from or changed in the repository, or evicted
+ * from the cache, such that it can maintain data derived from the systems.
+ */
+public interface SystemListener {
+
+	/**
+	 * Called after a system was deserialised from the repository.
+	 * 
+	 * @param system the loaded system
+	 */
+	default void systemLoaded(System system) {
+	}
+
+	/**
+	 * Called after the system with the given id was saved or updated. Any
+	 * instances of that system loaded before are outdated.
+	 * 
+	 * @param systemId id of the changed system
+	 */
+	default void systemChanged(String systemId) {
+	}
+
+	/**
+	 * Called after the model of a loaded system was updated, instead of
+	 * {@link SystemListener#systemChanged(String)}. The updated model is already
+	 * loaded, thus derived data of the parts that the update did not affect may
+	 * be kept.
+	 * 
+	 * Listeners that cannot keep anything treat the update as any other change.
+	 * 
+	 * @param diff difference between the previous and the updated model
+	 */
+	default void systemUpdated(ModelDiff diff) {
+		systemChanged(diff.getSystemId());
+	}
+
+	/**
+	 * Called after a system was evicted from the cache of loaded systems. Data
+	 * derived from that instance of the system should be dropped, such that the
+	 * instance can be garbage collected.
+	 * 
+	 * @param system the evicted system
+	 */
+	default void systemEvicted(System system) {
+	}
+}
@@ -1,6 +1,10 @@
 package de.unistuttgart.ma.backend.repository;
 
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 /**
  * A {@code SystemRepository} is a repository that manages the system models. Each system model
@@ -8,6 +12,32 @@ import org.springframework.data.mongodb.repository.MongoRepository;
  * apparently can not handle the system models (c.f. {@link ImpactRepository}})
  *
  */
-public interface SystemRepository extends MongoRepository<SystemItem, String> {
+public interface SystemRepository extends MongoRepository<SystemItem, String>, SystemRepositoryCustom {
+
+	/**
+	 * Get all items, but only with their ids and architecture ids.
+	 * 
+	 * @return all items, without models
+	 */
+	@Query(value = "{}", fields = "{ '_id' : 1, 'architectureId' : 1 }")
+	List<SystemItem> findAllArchitectureIds();
+
+	/**
+	 * Get all items with the given architecture id, but only with their ids and
+	 * architecture ids.
+	 * 
+	 * @param architectureId id of an architecture
+	 * @return all items with the given architecture id, without models
+	 */
+	@Query(value = "{ 'architectureId' : ?0 }", fields = "{ '_id' : 1, 'architectureId' : 1 }")
+	List<SystemItem> findIdsByArchitectureId(String architectureId);
 
+	/**
+	 * Get the item with the given id, but only with its id and revision.
+	 * 
+	 * @param id id of the item
+	 * @return the item without model, if it exists
+	 */
+	@Query(value = "{ '_id' : ?0 }", fields = "{ '_id' : 1, 'revision' : 1 }")
+	Optional<SystemItem> findRevisionById(String id);
 }
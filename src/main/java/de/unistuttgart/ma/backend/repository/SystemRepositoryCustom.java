@@ -0,0 +1,22 @@
+package de.unistuttgart.ma.backend.repository;
+
+/**
+ * Additional operations of the {@link SystemRepository}, that can not be
+ * derived by spring.
+ */
+public interface SystemRepositoryCustom {
+
+	/**
+	 * Replace the stored item with the given item, but only if the stored item
+	 * still has the given revision.
+	 * 
+	 * The check and the replacement are a single operation of the database, thus
+	 * a concurrent save of a newer revision is never overwritten.
+	 * 
+	 * @param item     the replacement, with the id of the stored item
+	 * @param revision revision the stored item must have, 0 also matches legacy
+	 *                 items without revision
+	 * @return true iff the item was replaced
+	 */
+	boolean replaceIfRevision(SystemItem item, long revision);
+}
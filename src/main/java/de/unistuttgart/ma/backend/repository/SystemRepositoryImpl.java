@@ -0,0 +1,30 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Implementation of the {@link SystemRepositoryCustom} operations. Spring
+ * merges it into the {@link SystemRepository}.
+ */
+public class SystemRepositoryImpl implements SystemRepositoryCustom {
+
+	private final MongoOperations operations;
+
+	public SystemRepositoryImpl(@Autowired MongoOperations operations) {
+		assert (operations != null);
+		this.operations = operations;
+	}
+
+	@Override
+	public boolean replaceIfRevision(SystemItem item, long revision) {
+		List<Long> revisions = revision == 0 ? Arrays.asList(0L, null) : List.of(revision);
+		Query query = Query.query(Criteria.where("_id").is(item.getId()).and("revision").in(revisions));
+		return operations.findAndReplace(query, item) != null;
+	}
+}
@@ -1,26 +1,31 @@
 package de.unistuttgart.ma.backend.repository;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.emf.common.util.URI;
-import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import de.unistuttgart.ma.saga.SagaPackage;
 import de.unistuttgart.ma.saga.System;
 
 /**
@@ -29,6 +34,10 @@ import de.unistuttgart.ma.saga.System;
  * It translates the {@link System}s to {@link SystemItem}s to save them in the
  * repository and vice versa. All access to the repository should happen through
  * this proxy.
+ * 
+ * The actual translation is delegated to the {@link SystemSerializer}. If the
+ * serializer writes another format or compression than some of the stored
+ * items have, those items are migrated in the background.
  *
  */
 @Component
@@ -36,39 +45,117 @@ public class SystemRepositoryProxy {
 
 	private final SystemRepository repository;
 	private final ResourceSet set;
+	private final SystemCache cache;
+	private final SystemSerializer serializer;
+
+	private final List<SystemListener> listeners;
+
+	/**
+	 * maps ids of systems to the revisions of their models, as far as they are
+	 * known.
+	 */
+	private final Map<String, Long> revisions;
+	/**
+	 * maps loaded systems to the revisions of the models they were loaded from.
+	 * The systems are held weakly, such that evicted systems are dropped.
+	 */
+	private final Map<System, Long> loadedRevisions;
+	/**
+	 * guards the resource set, which is not thread safe. Systems are loaded into
+	 * and removed from the set, and put into the cache, which may evict others,
+	 * only while holding it.
+	 */
+	private final Object setLock = new Object();
+	/**
+	 * maps ids of systems to their ongoing loads, such that concurrent misses for
+	 * the same id share a single load.
+	 */
+	private final Map<String, CompletableFuture<System>> loads;
 
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 
-	public SystemRepositoryProxy(@Autowired SystemRepository repository, @Autowired ResourceSet set) {
-		assert (repository != null && set != null);
+	public SystemRepositoryProxy(@Autowired SystemRepository repository, @Autowired ResourceSet set,
+			@Autowired SystemCache cache, @Autowired SystemSerializer serializer) {
+		assert (repository != null && set != null && cache != null && serializer != null);
 		this.repository = repository;
 		this.set = set;
+		this.cache = cache;
+		this.serializer = serializer;
 
-		this.projectId2SystemId = new HashMap<>();
+		this.projectId2SystemId = new ProjectIndex();
+		this.listeners = new CopyOnWriteArrayList<>();
+		this.revisions = new ConcurrentHashMap<>();
+		this.loadedRevisions = Collections.synchronizedMap(new WeakHashMap<>());
+		this.loads = new ConcurrentHashMap<>();
 
-		SagaPackage e = SagaPackage.eINSTANCE;
+		cache.setEvictionListener((id, system) -> {
+			removeResource(system);
+			listeners.forEach(listener -> listener.systemEvicted(system));
+		});
 
 		init();
+
+		if (serializer.getFormat() != ModelFormat.XMI || !IdentityCodec.NAME.equals(serializer.getCompression())) {
+			migrateInBackground();
+		}
 	}
 
 	/**
-	 * Load the content of the {@code systemId2ResourceUri} and of the
-	 * {@code projectId2SystemId} mappings from the repository.
+	 * Load the content of the {@code projectId2SystemId} index from the
+	 * repository.
+	 * 
+	 * Only the ids and architecture ids of the items are fetched, the models are
+	 * not deserialised. Items from before the architecture id was saved separately
+	 * are backfilled.
+	 * 
+	 * Concurrent calls do not load the index multiple times, but wait for the
+	 * ongoing load.
 	 */
 	public void init() {
-		List<SystemItem> items = repository.findAll();
-		logger.info(String.format("loading %d entries from database.", items.size()));
-		for (SystemItem item : items) {
-			try {
-				System system = deserializeSystem(item.getContent(), item.getFilename());
-				projectId2SystemId.put(system.getArchitecture().getId(), system.getId());
-				logger.info(String.format("load model %s for architecture %s.", system.getId(),
-						system.getArchitecture().getId()));
-			} catch (IOException e) {
-				e.printStackTrace();
+		projectId2SystemId.reload(() -> {
+			List<SystemItem> items = repository.findAllArchitectureIds();
+			logger.info(String.format("loading %d entries from database.", items.size()));
+
+			Map<String, String> systemId2ProjectId = new HashMap<>();
+			for (SystemItem item : items) {
+				String architectureId = item.getArchitectureId();
+				if (architectureId == null) {
+					architectureId = backfillArchitectureId(item.getId());
+				}
+				if (architectureId != null) {
+					systemId2ProjectId.put(item.getId(), architectureId);
+					logger.info(String.format("load model %s for architecture %s.", item.getId(), architectureId));
+				}
 			}
-		}
+			return systemId2ProjectId;
+		});
+	}
 
+	/**
+	 * Deserialise the model of the item with the given id, to save its
+	 * architecture id separately.
+	 * 
+	 * @param id id of the item
+	 * @return the architecture id, or null if the item has no model or the model
+	 *         has no architecture
+	 */
+	private String backfillArchitectureId(String id) {
+		Optional<SystemItem> item = repository.findById(id);
+		if (item.isEmpty() || item.get().isEmpty()) {
+			return null;
+		}
+		try {
+			System system = serializer.toSystem(item.get(), new ResourceSetImpl());
+			String architectureId = serializer.getArchitectureId(system);
+			if (architectureId != null) {
+				repository.save(item.get().withArchitectureId(architectureId));
+				logger.info(String.format("backfilled architecture %s for model %s.", architectureId, id));
+			}
+			return architectureId;
+		} catch (IOException e) {
+			logger.error(String.format("could not backfill architecture for model %s : %s", id, e.getMessage()));
+		}
+		return null;
 	}
 
 	/**
@@ -76,12 +163,66 @@ public class SystemRepositoryProxy {
 	 * only know the gropius project but the impact calculation needs the model of
 	 * the entire system
 	 */
-	private final Map<String, String> projectId2SystemId;
+	private final ProjectIndex projectId2SystemId;
+
+	/**
+	 * Register a listener to be notified about loaded and changed systems.
+	 * 
+	 * @param listener the listener
+	 */
+	public void addListener(SystemListener listener) {
+		assert (listener != null);
+		listeners.add(listener);
+	}
+
+	/**
+	 * Migrate all items, that are not yet in the format of the serializer, to that
+	 * format.
+	 * 
+	 * Items are deserialised into a resource set of their own, such that the
+	 * migration does not interfere with the models in use. An item is only
+	 * replaced, if it still has the revision that was migrated. An item that was
+	 * saved or updated in the meantime is skipped, as it is written in the format
+	 * of the serializer anyway.
+	 * 
+	 * @return number of migrated items
+	 */
+	public int migrate() {
+		int migrated = 0;
+		for (SystemItem item : repository.findAll()) {
+			if (serializer.isOutdated(item)) {
+				try {
+					SystemItem migratedItem = serializer.migrate(item).withRevision(item.getRevision());
+					if (!repository.replaceIfRevision(migratedItem, item.getRevision())) {
+						logger.info(String.format("skipped migration of model %s, it changed meanwhile.",
+								item.getId()));
+						continue;
+					}
+					migrated++;
+					logger.info(String.format("migrated model %s to %s (compression %s), %d of %d bytes.",
+							item.getId(), serializer.getFormat(), migratedItem.getCompression(),
+							migratedItem.getStoredSize(), migratedItem.getRawSize()));
+				} catch (IOException e) {
+					logger.error(String.format("could not migrate model %s : %s", item.getId(), e.getMessage()));
+				}
+			}
+		}
+		return migrated;
+	}
+
+	/**
+	 * Migrate all outdated items in the background.
+	 * 
+	 * @return future with the number of migrated items
+	 */
+	public CompletableFuture<Integer> migrateInBackground() {
+		return CompletableFuture.supplyAsync(this::migrate);
+	}
 
 	/**
 	 * Save a system model to the repository.
 	 * 
-	 * The model is serialised to xml with the ecore utilities and that xml is saved to the repository.
+	 * The model is serialised with the {@link SystemSerializer} and the result is saved to the repository.
 	 * 
 	 * @param system the system model to be saved
 	 * @throws IOException if the model could not be saved
@@ -103,8 +244,13 @@ public class SystemRepositoryProxy {
 
 		SystemItem item = repository.findById(system.getId()).get();
 
-		repository.save(new SystemItem(item.getId(), serializeSystem(system), item.getFilename()));
-		projectId2SystemId.put(system.getArchitecture().getId(), system.getId());
+		SystemItem saved = saveItem(serializer.toItem(item.getId(), system, item.getFilename()),
+				item.getRevision() + 1);
+		cache.invalidate(item.getId());
+		if (saved.getArchitectureId() != null) {
+			projectId2SystemId.put(saved.getArchitectureId(), system.getId());
+		}
+		listeners.forEach(listener -> listener.systemChanged(item.getId()));
 
 		return item.getId();
 	}
@@ -115,20 +261,80 @@ public class SystemRepositoryProxy {
 	 * if there is no model matching the given systemId, the model is saved to the
 	 * db as a new entry.
 	 * 
+	 * The cached version of the model is invalidated and the model's resource is
+	 * removed from the resource set, such that the next access parses the new xml.
+	 * If the previous version was loaded, the new xml is parsed right away
+	 * instead, and the listeners are told the {@link ModelDiff} between both
+	 * versions, such that they can keep what the update did not affect.
+	 * 
 	 * @param xml      the model as xml
 	 * @param systemId id of the system in the model
+	 * @throws IllegalArgumentException if the xml could not be translated to the
+	 *                                  format of the serializer
 	 */
 	public void updateModel(String xml, String systemId) {
-		if (repository.existsById(systemId)) {
-			SystemItem item = repository.findById(systemId).get();
-			repository.save(new SystemItem(systemId, xml, item.getFilename()));
-			logger.info(String.format("updated model %s", systemId));
-		} else {
-			repository.save(new SystemItem(systemId, xml, systemId + ".saga"));
-			logger.info(String.format("no model %s, saved as new model", systemId));
+		try {
+			Optional<SystemItem> existing = repository.findById(systemId);
+			SystemItem saved;
+			System previous = null;
+			long previousRevision = 0;
+			if (existing.isPresent()) {
+				SystemItem item = existing.get();
+				previous = cache.get(systemId);
+				previousRevision = item.getRevision();
+				saved = saveItem(serializer.toItem(systemId, xml, item.getFilename()), item.getRevision() + 1);
+				synchronized (setLock) {
+					cache.invalidate(systemId);
+					removeResource(item.getFilename());
+				}
+				logger.info(String.format("updated model %s", systemId));
+			} else {
+				saved = saveItem(serializer.toItem(systemId, xml, systemId + ".saga"), 1);
+				logger.info(String.format("no model %s, saved as new model", systemId));
+			}
+			if (saved.getArchitectureId() != null) {
+				projectId2SystemId.put(saved.getArchitectureId(), systemId);
+			}
+			notifyUpdated(systemId, previous, previousRevision, saved);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(String.format("Could not update model %s", systemId), e);
 		}
 	}
 
+	/**
+	 * Tell the listeners about an updated model.
+	 * 
+	 * Without the previous version of the model, or if the updated version cannot
+	 * be loaded, the update is reported as any other change.
+	 * 
+	 * @param systemId         id of the system
+	 * @param previous         loaded previous version of the model, or null
+	 * @param previousRevision revision of the previous version
+	 * @param saved            item with the updated version
+	 */
+	private void notifyUpdated(String systemId, System previous, long previousRevision, SystemItem saved) {
+		if (previous != null) {
+			try {
+				System current;
+				synchronized (setLock) {
+					current = serializer.toSystem(saved, set);
+					loadedRevisions.put(current, saved.getRevision());
+					cache.put(systemId, current, saved.getRawSize());
+				}
+				ModelDiff diff = ModelDiff.between(systemId, previous, previousRevision, current,
+						saved.getRevision());
+				logger.info(String.format("update of model %s changed %d interfaces and affects %d of %d rules.",
+						systemId, diff.getChangedInterfaces().size(), diff.getAffectedRules().size(),
+						current.getSloRules().size()));
+				listeners.forEach(listener -> listener.systemUpdated(diff));
+				return;
+			} catch (IOException e) {
+				logger.warn(String.format("could not load updated model %s : %s", systemId, e.getMessage()));
+			}
+		}
+		listeners.forEach(listener -> listener.systemChanged(systemId));
+	}
+
 	/**
 	 * 
 	 * @param system system with unset id
@@ -143,92 +349,242 @@ public class SystemRepositoryProxy {
 	/**
 	 * Find the System that imports the architecture with the given project id.
 	 * 
+	 * If multiple systems import that architecture, the most recently saved one
+	 * is returned.
+	 * 
 	 * @param projectId id of a gropius project.
 	 * @return system that import the gropius architecture with the given projectId
 	 */
 	public System findByArchitectureId(String projectId) {
-		if (projectId2SystemId.isEmpty()) {
-			init();
-		}
-		if (projectId2SystemId.containsKey(projectId)) {
-			return findById(projectId2SystemId.get(projectId));
+		Set<String> systemIds = findSystemIds(projectId);
+		if (!systemIds.isEmpty()) {
+			String latest = null;
+			for (String systemId : systemIds) {
+				latest = systemId;
+			}
+			return findById(latest);
 		}
 		throw new NoSuchElementException(String.format("Missing Model for Architectrue with Id %s", projectId));
 	}
 
+	/**
+	 * Find all Systems that import the architecture with the given project id.
+	 * 
+	 * @param projectId id of a gropius project.
+	 * @return systems that import the gropius architecture with the given
+	 *         projectId, in order of saving, or an empty list if there are none
+	 */
+	public List<System> findAllByArchitectureId(String projectId) {
+		List<System> systems = new ArrayList<>();
+		for (String systemId : findSystemIds(projectId)) {
+			systems.add(findById(systemId));
+		}
+		return systems;
+	}
+
+	/**
+	 * Get the ids of the systems for a project.
+	 * 
+	 * If the project is not yet known, the repository is queried for it, with the
+	 * index on the architecture ids. Concurrent queries for the same project are
+	 * only sent to the repository once.
+	 * 
+	 * @param projectId id of a gropius project.
+	 * @return ids of the systems
+	 */
+	private Set<String> findSystemIds(String projectId) {
+		return projectId2SystemId.getOrLoad(projectId, id -> repository.findIdsByArchitectureId(id).stream()
+				.map(SystemItem::getId).collect(Collectors.toList()));
+	}
+
 	/**
 	 * Find the System with the given id.
 	 * 
+	 * The system is taken from the cache, if possible. Only on a cache miss, the
+	 * system is retrieved from the repository and deserialised. Its resource
+	 * stays in the resource set until the system is evicted from the cache.
+	 * Concurrent misses for the same id wait for a single load, and thus get the
+	 * same system.
+	 * 
 	 * @param id id of the system to be retrieved
 	 * @return the system with the given id
+	 * @throws NoSuchElementException if there is no model with the given id
+	 * @throws UncheckedIOException   if the stored model could not be
+	 *                                deserialised
 	 */
 	public System findById(String id) {
-		if (repository.existsById(id)) {
-			SystemItem item = repository.findById(id).get();
+		System cached = cache.get(id);
+		if (cached != null) {
+			return cached;
+		}
+
+		CompletableFuture<System> load = new CompletableFuture<>();
+		CompletableFuture<System> ongoing = loads.putIfAbsent(id, load);
+		if (ongoing != null) {
+			try {
+				return ongoing.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+		try {
+			System system = load(id);
+			load.complete(system);
+			return system;
+		} catch (RuntimeException e) {
+			load.completeExceptionally(e);
+			throw e;
+		} finally {
+			loads.remove(id, load);
+		}
+	}
+
+	/**
+	 * Load the System with the given id from the repository and cache it, unless
+	 * a load that finished in the meantime cached it already.
+	 * 
+	 * @param id id of the system to be retrieved
+	 * @return the system with the given id
+	 * @throws NoSuchElementException if there is no model with the given id
+	 * @throws UncheckedIOException   if the stored model could not be
+	 *                                deserialised
+	 */
+	private System load(String id) {
+		System cached = cache.peek(id);
+		if (cached != null) {
+			return cached;
+		}
+
+		Optional<SystemItem> item = repository.findById(id);
+		if (item.isPresent()) {
 			try {
-				System system = deserializeSystem(item.getContent(), item.getFilename());
+				System system;
+				synchronized (setLock) {
+					system = serializer.toSystem(item.get(), set);
+				}
+				revisions.put(id, item.get().getRevision());
+				loadedRevisions.put(system, item.get().getRevision());
+				listeners.forEach(listener -> listener.systemLoaded(system));
+				synchronized (setLock) {
+					cache.put(id, system, item.get().getRawSize());
+				}
 				return system;
 			} catch (IOException e) {
-				e.printStackTrace();
+				logger.error(String.format("could not load model %s : %s", id, e.getMessage()));
+				throw new UncheckedIOException(String.format("Could not load model %s", id), e);
 			}
 		}
 		throw new NoSuchElementException(String.format("Missing Model for Id %s", id));
 	}
 
+	/**
+	 * Get the revision of the model of the system with the given id.
+	 * 
+	 * The revision is incremented each time the model is saved or updated.
+	 * 
+	 * @param id id of the system
+	 * @return revision of the model, or 0 if there is no such system
+	 */
+	public long getRevision(String id) {
+		Long revision = revisions.get(id);
+		if (revision != null) {
+			return revision;
+		}
+		return repository.findRevisionById(id).map(SystemItem::getRevision).orElse(0L);
+	}
+
+	/**
+	 * Get the revision of the model, from which a system was loaded.
+	 * 
+	 * Unlike {@link #getRevision(String)}, the revision belongs to the given
+	 * system for sure, even if the model was updated in the meantime.
+	 * 
+	 * @param system a system returned by {@link #findById(String)}
+	 * @return revision of the model, or -1 if the system was not loaded by this
+	 *         proxy
+	 */
+	public long getRevision(System system) {
+		Long revision = loadedRevisions.get(system);
+		return revision == null ? -1 : revision;
+	}
+
 	/**
 	 * Find the System with the given id.
 	 * 
 	 * @param id id of the system to be retrieved
 	 * @return the system with the given id as xml
+	 * @throws NoSuchElementException if there is no model with the given id
+	 * @throws UncheckedIOException   if the stored model could not be translated
 	 */
 	public String findXMLById(String id) {
-		if (repository.existsById(id)) {
-			SystemItem item = repository.findById(id).get();
-			return item.getContent();
+		Optional<SystemItem> item = repository.findById(id);
+		if (item.isPresent()) {
+			try {
+				return serializer.toXml(item.get());
+			} catch (IOException e) {
+				logger.error(String.format("could not translate model %s to xml : %s", id, e.getMessage()));
+				throw new UncheckedIOException(String.format("Could not translate model %s to xml", id), e);
+			}
 		}
 		throw new NoSuchElementException(String.format("Missing Model for Id %s", id));
 	}
 
 	/**
-	 * Serialise system to ecore xml.
+	 * Save an item to the repository and report its compression ratio.
 	 * 
-	 * @param system
-	 * @return ecore xml representation of impact.
-	 * @throws IOException
+	 * @param item     item to be saved
+	 * @param revision revision of the item's model
+	 * @return the saved item
 	 */
-	protected String serializeSystem(System system) throws IOException {
-		Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().put("saga", new EcoreResourceFactoryImpl());
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-		Resource res = system.eResource();
-		res.save(outputStream, null);
-
-		return outputStream.toString(StandardCharsets.UTF_8);
+	private SystemItem saveItem(SystemItem item, long revision) {
+		SystemItem saved = repository.save(item.withRevision(revision));
+		revisions.put(saved.getId(), revision);
+		logger.info(String.format("saved model %s as %s (compression %s), %d of %d bytes, ratio %.2f.", item.getId(),
+				item.getFormat(), item.getCompression(), item.getStoredSize(), item.getRawSize(),
+				item.getCompressionRatio()));
+		return saved;
 	}
 
 	/**
-	 * Deserialise system from ecore xml.
+	 * Remove the resource with the given filename from the resource set.
 	 * 
-	 * @param impact
-	 * @return ecore xml representation of impact.
-	 * @throws IOException
+	 * The resource is not unloaded, because its contents might still be in use by
+	 * others.
+	 * 
+	 * @param filename name of the resource's file
 	 */
-	protected System deserializeSystem(String xml, String filename) throws IOException {
-		assert(xml != null && filename != null);
-		Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().put("saga", new EcoreResourceFactoryImpl());
-		InputStream targetStream = new ByteArrayInputStream(xml.getBytes());
-
-		Resource resource = set.getResource(URI.createPlatformResourceURI(filename, false), false);
-		if (resource == null) {
-			resource = set.createResource(URI.createPlatformResourceURI(filename, false));
+	private void removeResource(String filename) {
+		synchronized (setLock) {
+			Resource resource = set.getResource(URI.createPlatformResourceURI(filename, false), false);
+			if (resource != null) {
+				set.getResources().remove(resource);
+			}
 		}
-		resource.load(targetStream, null);
+	}
 
-		for (EObject eObject : resource.getContents()) {
-			if (eObject instanceof System) {
-				return (System) eObject;
+	/**
+	 * Remove the resource of a system, that was evicted from the cache, from the
+	 * resource set, such that the set does not grow beyond the bounds of the
+	 * cache. The next access loads the system into a new resource.
+	 * 
+	 * As with updates, the resource is not unloaded, because the system might
+	 * still be in use by an ongoing calculation. Once released, the resource is
+	 * garbage collected.
+	 * 
+	 * Evictions only happen while the resource set is locked already, as the
+	 * cache is only filled while holding the lock.
+	 * 
+	 * @param system the evicted system
+	 */
+	private void removeResource(System system) {
+		synchronized (setLock) {
+			Resource resource = system.eResource();
+			if (resource != null && resource.getResourceSet() == set) {
+				set.getResources().remove(resource);
 			}
 		}
-		throw new IOException("Could not deserialize " + xml);
 	}
 }
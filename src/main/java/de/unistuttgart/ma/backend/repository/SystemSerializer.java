@@ -0,0 +1,366 @@
+package de.unistuttgart.ma.backend.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.EObjectInputStream;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.EObjectOutputStream;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.unistuttgart.ma.saga.SagaPackage;
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * A {@code SystemSerializer} translates {@link System}s to {@link SystemItem}s
+ * and vice versa.
+ *
+ * New items are always written in the configured {@link ModelFormat} and
+ * compressed with the configured {@link ModelCodec}. Items in any format and
+ * with any known compression can be read, such that legacy xml items remain
+ * readable after switching to another format or compression.
+ *
+ * Compressed models are decompressed on the fly while they are loaded, i.e.
+ * without materialising the entire uncompressed model first.
+ *
+ */
+@Component
+public class SystemSerializer {
+
+	private final ModelFormat format;
+	private final ModelCodec codec;
+
+	/**
+	 * maps names of codecs to codecs.
+	 */
+	private final Map<String, ModelCodec> codecs;
+
+	/**
+	 * Create a new serializer.
+	 *
+	 * @param format      format for writing new items
+	 * @param compression name of the codec to compress new items with
+	 * @param codecs      all codecs, that may be needed to read items.
+	 */
+	public SystemSerializer(@Value("${systemrepository.format:XMI}") ModelFormat format,
+			@Value("${systemrepository.compression:none}") String compression, @Autowired List<ModelCodec> codecs) {
+		assert (format != null && compression != null && codecs != null);
+		this.format = format;
+
+		this.codecs = new HashMap<>();
+		this.codecs.put(IdentityCodec.NAME, new IdentityCodec());
+		for (ModelCodec modelCodec : codecs) {
+			this.codecs.put(modelCodec.getName(), modelCodec);
+		}
+		if (!this.codecs.containsKey(compression)) {
+			throw new IllegalArgumentException(String.format("unknown compression %s", compression));
+		}
+		this.codec = this.codecs.get(compression);
+
+		Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().put("saga", new EcoreResourceFactoryImpl());
+
+		@SuppressWarnings("unused")
+		SagaPackage packageInstance = SagaPackage.eINSTANCE;
+	}
+
+	public ModelFormat getFormat() {
+		return format;
+	}
+
+	public String getCompression() {
+		return codec.getName();
+	}
+
+	/**
+	 * Check whether the given item is stored in another format or with another
+	 * compression than the configured one.
+	 *
+	 * @param item the item
+	 * @return true iff the item should be migrated to the configured format
+	 */
+	public boolean isOutdated(SystemItem item) {
+		if (item.isEmpty()) {
+			return false;
+		}
+		if (item.getFormat() != format || !item.getCompression().equals(codec.getName())) {
+			return true;
+		}
+		return format == ModelFormat.BINARY
+				&& !Integer.valueOf(SystemItem.BINARY_FORMAT_VERSION).equals(item.getFormatVersion());
+	}
+
+	/**
+	 * Serialise a system into a new item.
+	 *
+	 * @param id       id of the item
+	 * @param system   the system, must be contained in a resource
+	 * @param filename filename of the item
+	 * @return item with the serialised system
+	 * @throws IOException if the serialisation failed
+	 */
+	public SystemItem toItem(String id, System system, String filename) throws IOException {
+		assert (system != null && system.eResource() != null);
+		Resource resource = system.eResource();
+
+		String architectureId = getArchitectureId(system);
+
+		if (format == ModelFormat.XMI && isUncompressed()) {
+			return new SystemItem(id, writeXml(resource), null, ModelFormat.XMI, null, null, null, filename,
+					architectureId);
+		}
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		CountingOutputStream countingStream = new CountingOutputStream(codec.encode(outputStream));
+		if (format == ModelFormat.BINARY) {
+			writeBinary(resource, countingStream);
+		} else {
+			resource.save(countingStream, null);
+		}
+		countingStream.close();
+
+		return makeItem(id, outputStream.toByteArray(), countingStream.getCount(), filename, architectureId);
+	}
+
+	/**
+	 * Put a system, given as ecore xml, into a new item.
+	 *
+	 * If the configured format is xml, the xml is stored as it is, or compressed.
+	 * Otherwise it is translated to the configured format. In any case it is
+	 * parsed, to get the id of the model's architecture.
+	 *
+	 * @param id       id of the item
+	 * @param xml      the system as ecore xml
+	 * @param filename filename of the item
+	 * @return item with the system
+	 * @throws IOException if the xml could not be parsed
+	 */
+	public SystemItem toItem(String id, String xml, String filename) throws IOException {
+		System system = toSystem(new SystemItem(id, xml, filename), new ResourceSetImpl());
+		if (format == ModelFormat.BINARY) {
+			return toItem(id, system, filename);
+		}
+		String architectureId = getArchitectureId(system);
+		if (isUncompressed()) {
+			return new SystemItem(id, xml, null, ModelFormat.XMI, null, null, null, filename, architectureId);
+		}
+
+		byte[] raw = xml.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try (OutputStream encoder = codec.encode(outputStream)) {
+			encoder.write(raw);
+		}
+		return makeItem(id, outputStream.toByteArray(), raw.length, filename, architectureId);
+	}
+
+	/**
+	 * Translate an item into the configured format.
+	 *
+	 * @param item the item
+	 * @return new item with same id and filename, but in the configured format
+	 * @throws IOException if the item could not be translated
+	 */
+	public SystemItem migrate(SystemItem item) throws IOException {
+		System system = toSystem(item, new ResourceSetImpl());
+		return toItem(item.getId(), system, item.getFilename());
+	}
+
+	/**
+	 * Deserialise the system of an item.
+	 *
+	 * The system is loaded into the resource with the filename of the item. If
+	 * that resource already exists and is loaded, it is reused as it is.
+	 *
+	 * @param item the item
+	 * @param set  resource set to load the system into
+	 * @return the deserialised system
+	 * @throws IOException if the deserialisation failed
+	 */
+	public System toSystem(SystemItem item, ResourceSet set) throws IOException {
+		assert (item != null && set != null && item.getFilename() != null);
+		if (item.isEmpty()) {
+			throw new IOException(String.format("Item %s has no model", item.getId()));
+		}
+
+		URI uri = URI.createPlatformResourceURI(item.getFilename(), false);
+		Resource resource = set.getResource(uri, false);
+		if (resource == null) {
+			resource = set.createResource(uri);
+		}
+
+		if (!resource.isLoaded()) {
+			try (InputStream inputStream = openModel(item)) {
+				if (item.getFormat() == ModelFormat.BINARY) {
+					readBinary(inputStream, resource);
+				} else {
+					resource.load(inputStream, null);
+				}
+			}
+		}
+
+		for (EObject eObject : resource.getContents()) {
+			if (eObject instanceof System) {
+				return (System) eObject;
+			}
+		}
+		throw new IOException(String.format("Could not deserialize item %s", item.getId()));
+	}
+
+	/**
+	 * Get the system of an item as ecore xml.
+	 *
+	 * @param item the item
+	 * @return the system as ecore xml
+	 * @throws IOException if the item could not be translated to xml
+	 */
+	public String toXml(SystemItem item) throws IOException {
+		if (item.getFormat() == ModelFormat.BINARY) {
+			System system = toSystem(item, new ResourceSetImpl());
+			return writeXml(system.eResource());
+		}
+		if (item.getData() == null) {
+			return item.getContent();
+		}
+		try (InputStream inputStream = openModel(item)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Open a stream to read the decompressed model of an item.
+	 *
+	 * @param item the item
+	 * @return stream of the decompressed model
+	 * @throws IOException if the item's compression is unknown
+	 */
+	protected InputStream openModel(SystemItem item) throws IOException {
+		if (item.getData() == null) {
+			return new ByteArrayInputStream(item.getContent().getBytes(StandardCharsets.UTF_8));
+		}
+		ModelCodec itemCodec = codecs.get(item.getCompression());
+		if (itemCodec == null) {
+			throw new IOException(
+					String.format("Item %s has unknown compression %s", item.getId(), item.getCompression()));
+		}
+		return itemCodec.decode(new ByteArrayInputStream(item.getData()));
+	}
+
+	/**
+	 * Create a new item with data in the configured format and compression.
+	 *
+	 * @param id       id of the item
+	 * @param data     the compressed model
+	 * @param rawSize        size of the uncompressed model
+	 * @param filename       filename of the item
+	 * @param architectureId id of the model's architecture
+	 * @return the new item
+	 */
+	private SystemItem makeItem(String id, byte[] data, long rawSize, String filename, String architectureId) {
+		Integer formatVersion = format == ModelFormat.BINARY ? SystemItem.BINARY_FORMAT_VERSION : null;
+		String compression = isUncompressed() ? null : codec.getName();
+		return new SystemItem(id, null, data, format, formatVersion, compression, rawSize, filename,
+				architectureId);
+	}
+
+	/**
+	 * Get the id of a system's architecture.
+	 *
+	 * @param system the system
+	 * @return id of the architecture, or null if the system has no architecture
+	 */
+	public String getArchitectureId(System system) {
+		if (system.getArchitecture() == null) {
+			return null;
+		}
+		return system.getArchitecture().getId();
+	}
+
+	private boolean isUncompressed() {
+		return IdentityCodec.NAME.equals(codec.getName());
+	}
+
+	/**
+	 * Serialise a resource to ecore xml.
+	 *
+	 * @param resource the resource
+	 * @return ecore xml representation of the resource
+	 * @throws IOException if the serialisation failed
+	 */
+	protected String writeXml(Resource resource) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		resource.save(outputStream, null);
+		return outputStream.toString(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Serialise a resource with EMF's binary format.
+	 *
+	 * The resource itself remains as it is, e.g. an xml resource, only the output
+	 * is binary.
+	 *
+	 * @param resource     the resource
+	 * @param outputStream stream to write the binary representation to
+	 * @throws IOException if the serialisation failed
+	 */
+	protected void writeBinary(Resource resource, OutputStream outputStream) throws IOException {
+		EObjectOutputStream eObjectOutputStream = new EObjectOutputStream(outputStream, null);
+		eObjectOutputStream.saveResource(resource);
+		eObjectOutputStream.flush();
+	}
+
+	/**
+	 * Deserialise the binary representation of a resource into the given
+	 * resource.
+	 *
+	 * @param inputStream binary representation of a resource
+	 * @param resource    resource to load into
+	 * @throws IOException if the deserialisation failed
+	 */
+	protected void readBinary(InputStream inputStream, Resource resource) throws IOException {
+		EObjectInputStream eObjectInputStream = new EObjectInputStream(inputStream, null);
+		eObjectInputStream.loadResource(resource);
+	}
+
+	/**
+	 * Counts the bytes written through it, to get the size of a model before
+	 * compression.
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+			this.count = 0;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+}
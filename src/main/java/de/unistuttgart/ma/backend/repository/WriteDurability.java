@@ -0,0 +1,15 @@
+package de.unistuttgart.ma.backend.repository;
+
+/**
+ * How long a write to the {@link ImpactWriter} blocks the writing thread.
+ */
+public enum WriteDurability {
+	/**
+	 * Block until the database acknowledged the write.
+	 */
+	ACKNOWLEDGED,
+	/**
+	 * Block only until the write is queued.
+	 */
+	FIRE_AND_FORGET
+}
@@ -39,6 +39,11 @@ public class Alert {
 	String gropiusComponentId;
 	String issueId;
 
+	/**
+	 * identifies repeated deliveries of the same alert, optional.
+	 */
+	String idempotencyKey;
+
 	public String getAlertName() {
 		return alertName;
 	}
@@ -82,4 +87,12 @@ public class Alert {
 	public String getIssueId() {
 		return issueId;
 	}
+
+	public String getIdempotencyKey() {
+		return idempotencyKey;
+	}
+
+	public void setIdempotencyKey(String idempotencyKey) {
+		this.idempotencyKey = idempotencyKey;
+	}
 }
@@ -0,0 +1,133 @@
+package de.unistuttgart.ma.backend.rest;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@code AlertStatus} tracks the processing of an {@link Alert} that was
+ * accepted for asynchronous processing, or that was processed as part of a
+ * batch.
+ * 
+ * The status is updated by the thread that processes the alert, and may be
+ * read by any other thread. Other threads may also wait for the status to
+ * finish.
+ */
+public class AlertStatus {
+
+	/**
+	 * The stages of the processing of an alert.
+	 */
+	public enum State {
+		QUEUED, PROCESSING, DONE, FAILED
+	}
+
+	private final String id;
+	private final String sloId;
+	private final String gropiusProjectId;
+	private final LocalDateTime received;
+
+	private volatile State state;
+	private volatile int notifications;
+	private volatile String error;
+	private volatile LocalDateTime finished;
+
+	public AlertStatus(String id, Alert alert) {
+		this.id = id;
+		this.sloId = alert.getSloId();
+		this.gropiusProjectId = alert.getGropiusProjectId();
+		this.received = LocalDateTime.now();
+		this.state = State.QUEUED;
+	}
+
+	/**
+	 * Mark the alert as being processed.
+	 */
+	public void processing() {
+		this.state = State.PROCESSING;
+	}
+
+	/**
+	 * Mark the alert as processed.
+	 * 
+	 * @param notifications number of notifications, i.e. impacts that reached the
+	 *                      business process
+	 */
+	public synchronized void done(int notifications) {
+		this.notifications = notifications;
+		this.finished = LocalDateTime.now();
+		this.state = State.DONE;
+		notifyAll();
+	}
+
+	/**
+	 * Mark the processing of the alert as failed.
+	 * 
+	 * @param error message of the failure
+	 */
+	public synchronized void failed(String error) {
+		this.error = error;
+		this.finished = LocalDateTime.now();
+		this.state = State.FAILED;
+		notifyAll();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getSloId() {
+		return sloId;
+	}
+
+	public String getGropiusProjectId() {
+		return gropiusProjectId;
+	}
+
+	public LocalDateTime getReceived() {
+		return received;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public int getNotifications() {
+		return notifications;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public LocalDateTime getFinished() {
+		return finished;
+	}
+
+	/**
+	 * Check whether the processing of the alert is over, successful or not.
+	 * 
+	 * @return true iff the alert is done or failed
+	 */
+	public boolean isFinished() {
+		return state == State.DONE || state == State.FAILED;
+	}
+
+	/**
+	 * Wait for the processing of the alert to be over.
+	 * 
+	 * @param timeoutMillis maximum time to wait, in milliseconds
+	 * @return true iff the alert is finished
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized boolean await(long timeoutMillis) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (!isFinished()) {
+			long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			if (left <= 0) {
+				return false;
+			}
+			wait(left);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,70 @@
+package de.unistuttgart.ma.backend.rest;
+
+/**
+ * A {@code ProjectQueueStatus} is a snapshot of the queue of alerts of one
+ * Gropius project, waiting to be processed in the background.
+ */
+public class ProjectQueueStatus {
+
+	private final String gropiusProjectId;
+	private final int weight;
+	private final int queued;
+	private final int running;
+	private final long dispatched;
+	private final long averageWaitMillis;
+	private final long maxWaitMillis;
+
+	public ProjectQueueStatus(String gropiusProjectId, int weight, int queued, int running, long dispatched,
+			long averageWaitMillis, long maxWaitMillis) {
+		this.gropiusProjectId = gropiusProjectId;
+		this.weight = weight;
+		this.queued = queued;
+		this.running = running;
+		this.dispatched = dispatched;
+		this.averageWaitMillis = averageWaitMillis;
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	public String getGropiusProjectId() {
+		return gropiusProjectId;
+	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return number of tasks waiting for a worker
+	 */
+	public int getQueued() {
+		return queued;
+	}
+
+	/**
+	 * @return number of tasks being processed right now
+	 */
+	public int getRunning() {
+		return running;
+	}
+
+	/**
+	 * @return number of tasks handed to a worker so far
+	 */
+	public long getDispatched() {
+		return dispatched;
+	}
+
+	/**
+	 * @return average time between queueing and dispatching a task
+	 */
+	public long getAverageWaitMillis() {
+		return averageWaitMillis;
+	}
+
+	/**
+	 * @return maximum time between queueing and dispatching a task
+	 */
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+}
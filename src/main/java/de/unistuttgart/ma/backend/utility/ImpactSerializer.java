@@ -10,6 +10,10 @@ import de.unistuttgart.ma.impact.Impact;
 
 /**
  * Serialises an {@link Impact} to JSON.
+ * 
+ * The id of the impact is only written, if shared prefixes are enabled for the
+ * call, as then the {@link NotificationSerializer} refers to impacts by their
+ * ids.
  *
  */
 public class ImpactSerializer extends StdSerializer<Impact> {
@@ -22,6 +26,9 @@ public class ImpactSerializer extends StdSerializer<Impact> {
 	public void serialize(Impact value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
 
 		jgen.writeStartObject();
+		if (value.getId() != null && NotificationSerializer.isSharingPrefixes(provider)) {
+			jgen.writeStringField("impact", value.getId());
+		}
 		jgen.writeStringField("id", value.getLocationId());
 		jgen.writeStringField("name", value.getLocationName());
 		jgen.writeStringField("type", value.getLocationType());
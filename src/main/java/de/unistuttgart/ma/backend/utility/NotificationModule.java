@@ -0,0 +1,32 @@
+package de.unistuttgart.ma.backend.utility;
+
+import org.eclipse.bpmn2.Task;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import de.unistuttgart.gropius.ComponentInterface;
+import de.unistuttgart.gropius.slo.SloRule;
+import de.unistuttgart.ma.impact.Impact;
+import de.unistuttgart.ma.impact.Notification;
+import de.unistuttgart.ma.impact.Violation;
+import de.unistuttgart.ma.saga.SagaStep;
+
+/**
+ * Module with the serialisers for {@link Notification}s and everything they
+ * refer to.
+ *
+ */
+public class NotificationModule extends SimpleModule {
+
+	private static final long serialVersionUID = 1L;
+
+	public NotificationModule() {
+		addSerializer(Notification.class, new NotificationSerializer(Notification.class));
+		addSerializer(Impact.class, new ImpactSerializer(Impact.class));
+		addSerializer(Violation.class, new ViolationSerializer(Violation.class));
+		addSerializer(SagaStep.class, new StepSerializer(SagaStep.class));
+		addSerializer(Task.class, new TaskSerializer(Task.class));
+		addSerializer(ComponentInterface.class, new InterfaceSerializer(ComponentInterface.class));
+		addSerializer(SloRule.class, new SloRuleSerializer(SloRule.class));
+	}
+}
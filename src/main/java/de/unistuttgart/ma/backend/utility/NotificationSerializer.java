@@ -1,6 +1,9 @@
 package de.unistuttgart.ma.backend.utility;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
@@ -16,9 +19,31 @@ import de.unistuttgart.ma.impact.Violation;
  * For now, let's skip the violation, because that is already represented by
  * some linked issues.
  * 
+ * By default, each notification is serialised with its entire impact path,
+ * such that it is self-contained, e.g. as the body of an issue.
+ * 
+ * If the per call attribute {@link #SHARED_PREFIXES} is set, notifications
+ * whose impact chains share a prefix are serialised with that prefix only once.
+ * If multiple notifications are serialised with one call, e.g. as a
+ * collection, the impact path of a notification ends at the first impact
+ * already written for a previous notification, and refers to it by its id as
+ * shared prefix. The {@link ImpactSerializer} writes the ids of the impacts
+ * then as well.
+ * 
  */
 public class NotificationSerializer extends StdSerializer<Notification> {
 
+	/**
+	 * key of the per call attribute, that enables shared prefixes, if set to
+	 * {@link Boolean#TRUE}.
+	 */
+	public static final Object SHARED_PREFIXES = NotificationSerializer.class.getName() + ".sharedPrefixes";
+
+	/**
+	 * key of the per call attribute with the impacts written so far.
+	 */
+	private static final Object WRITTEN_IMPACTS = NotificationSerializer.class.getName() + ".writtenImpacts";
+
 	public NotificationSerializer(Class<Notification> t) {
 		super(t);
 	}
@@ -29,7 +54,11 @@ public class NotificationSerializer extends StdSerializer<Notification> {
 		jgen.writeStartObject();
 		jgen.writeObjectField("impactlocation", value.getTopLevelImpact().getLocation());
 		jgen.writeObjectField("violatedrule", value.getRootCause().getViolatedRule());
-		serializeImpacts(value.getTopLevelImpact(), jgen);
+		if (isSharingPrefixes(provider)) {
+			serializeImpacts(value.getTopLevelImpact(), jgen, getWrittenImpacts(provider));
+		} else {
+			serializeImpacts(value.getTopLevelImpact(), jgen);
+		}
 		// serializeViolation(value.getRootCause(), jgen);
 		jgen.writeEndObject();
 
@@ -42,13 +71,55 @@ public class NotificationSerializer extends StdSerializer<Notification> {
 	}
 
 	protected void serializeImpacts(Impact impact, JsonGenerator jgen) throws IOException {
+		serializeImpacts(impact, jgen, Collections.newSetFromMap(new IdentityHashMap<>()));
+	}
+
+	/**
+	 * Serialise the impact path up to the first impact that was already written.
+	 * 
+	 * @param impact  top level impact of the path
+	 * @param jgen    generator to write to
+	 * @param written impacts written so far, the impacts of the path are added
+	 * @throws IOException if writing failed
+	 */
+	protected void serializeImpacts(Impact impact, JsonGenerator jgen, Set<Impact> written) throws IOException {
 		jgen.writeArrayFieldStart("impactpath");
 
 		Impact current = impact;
-		while (current != null) {
+		while (current != null && written.add(current)) {
 			jgen.writeObject(current);
 			current = current.getCause();
 		}
 		jgen.writeEndArray();
+
+		if (current != null) {
+			jgen.writeStringField("sharedprefix", current.getId());
+		}
+	}
+
+	/**
+	 * Check whether shared prefixes are enabled for the current call.
+	 * 
+	 * @param provider provider of the current call
+	 * @return true iff shared prefixes are enabled
+	 */
+	static boolean isSharingPrefixes(SerializerProvider provider) {
+		return Boolean.TRUE.equals(provider.getAttribute(SHARED_PREFIXES));
+	}
+
+	/**
+	 * Get the impacts written so far in the current call.
+	 * 
+	 * @param provider provider of the current call
+	 * @return impacts written so far
+	 */
+	@SuppressWarnings("unchecked")
+	private Set<Impact> getWrittenImpacts(SerializerProvider provider) {
+		Set<Impact> written = (Set<Impact>) provider.getAttribute(WRITTEN_IMPACTS);
+		if (written == null) {
+			written = Collections.newSetFromMap(new IdentityHashMap<>());
+			provider.setAttribute(WRITTEN_IMPACTS, written);
+		}
+		return written;
 	}
 }
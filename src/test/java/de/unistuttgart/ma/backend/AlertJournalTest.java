@@ -0,0 +1,136 @@
+package de.unistuttgart.ma.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.unistuttgart.ma.backend.repository.AlertJournal;
+import de.unistuttgart.ma.backend.repository.FsyncPolicy;
+import de.unistuttgart.ma.backend.rest.Alert;
+
+/**
+ * Tests for {@link AlertJournal}.
+ */
+public class AlertJournalTest {
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Test that alerts, that were not completed, are recovered after a restart.
+	 */
+	@Test
+	public void recoverTest() {
+		AlertJournal journal = new AlertJournal(dir.toString(), 4096, FsyncPolicy.ALWAYS);
+		long first = journal.append(makeAlert("first"));
+		long second = journal.append(makeAlert("second"));
+		journal.complete(first);
+		journal.close();
+
+		AlertJournal reopened = new AlertJournal(dir.toString(), 4096, FsyncPolicy.ALWAYS);
+		Map<Long, Alert> recovered = reopened.getRecovered();
+		assertEquals(1, recovered.size());
+		assertEquals("second", recovered.get(second).getSloId());
+		assertEquals(LocalDateTime.of(2021, 7, 23, 12, 0), recovered.get(second).getAlertTime());
+
+		long third = reopened.append(makeAlert("third"));
+		assertTrue(third > second);
+		reopened.complete(second);
+		reopened.complete(third);
+		assertTrue(reopened.getRecovered().isEmpty());
+		assertEquals(0, reopened.getPendingCount());
+	}
+
+	/**
+	 * Test that full segments are deleted, once all of their alerts are
+	 * completed, but not before the alerts of older segments are completed.
+	 */
+	@Test
+	public void compactionTest() throws IOException {
+		AlertJournal journal = new AlertJournal(dir.toString(), 1024, FsyncPolicy.NEVER);
+		long first = journal.append(makeAlert("first"));
+		long[] entries = new long[20];
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = journal.append(makeAlert("alert" + i));
+		}
+		int segments = journal.getSegmentCount();
+		assertTrue(segments > 2);
+
+		for (long entry : entries) {
+			journal.complete(entry);
+		}
+		// the segment of the first alert holds back all younger ones.
+		assertTrue(journal.getSegmentCount() >= segments);
+		assertEquals(journal.getSegmentCount(), countSegmentFiles());
+
+		journal.complete(first);
+		assertEquals(1, journal.getSegmentCount());
+		assertEquals(1, countSegmentFiles());
+	}
+
+	/**
+	 * Test that a partially written record ends its segment.
+	 */
+	@Test
+	public void tornRecordTest() throws IOException {
+		AlertJournal journal = new AlertJournal(dir.toString(), 4096, FsyncPolicy.NEVER);
+		journal.append(makeAlert("first"));
+		long second = journal.append(makeAlert("second"));
+		journal.close();
+
+		// corrupt the checksum of the second record, as if it was never written.
+		Path segment = listSegmentFiles().get(0);
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+		buffer.position(4);
+		int length = buffer.getInt();
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(4), 4 + 4 + 1 + 8 + length);
+		}
+
+		AlertJournal reopened = new AlertJournal(dir.toString(), 4096, FsyncPolicy.NEVER);
+		assertEquals(1, reopened.getRecovered().size());
+		assertFalse(reopened.getRecovered().containsKey(second));
+	}
+
+	/**
+	 * Test that a journal without directory does nothing.
+	 */
+	@Test
+	public void disabledTest() {
+		AlertJournal journal = new AlertJournal("", 4096, FsyncPolicy.NEVER);
+		assertFalse(journal.isEnabled());
+		assertEquals(-1, journal.append(makeAlert("first")));
+		journal.complete(-1);
+		assertEquals(0, journal.getSegmentCount());
+	}
+
+	private Alert makeAlert(String sloId) {
+		return new Alert(1.0, 2.0, sloId, sloId, LocalDateTime.of(2021, 7, 23, 12, 0), sloId, sloId, "trigger",
+				"project", "component", "issue");
+	}
+
+	private long countSegmentFiles() throws IOException {
+		return listSegmentFiles().size();
+	}
+
+	private List<Path> listSegmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.sorted().collect(Collectors.toList());
+		}
+	}
+}
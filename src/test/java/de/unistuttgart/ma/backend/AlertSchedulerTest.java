@@ -0,0 +1,137 @@
+package de.unistuttgart.ma.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.unistuttgart.ma.backend.app.AlertScheduler;
+import de.unistuttgart.ma.backend.rest.ProjectQueueStatus;
+
+/**
+ * Tests for {@link AlertScheduler}.
+ */
+public class AlertSchedulerTest {
+
+	AlertScheduler scheduler;
+
+	CountDownLatch started = new CountDownLatch(1);
+	CountDownLatch gate = new CountDownLatch(1);
+
+	@AfterEach
+	public void shutDown() {
+		gate.countDown();
+		if (scheduler != null) {
+			scheduler.shutdown(10, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Test that a quiet project is served in between the tasks of a noisy one, and
+	 * that tasks of a project are ordered by priority.
+	 */
+	@Test
+	public void fairnessTest() throws InterruptedException {
+		scheduler = new AlertScheduler("test-", 1, 16, 0, Map.of());
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+		blockWorker("gate");
+		for (int i = 0; i < 4; i++) {
+			String name = "noisy" + i;
+			scheduler.submit("noisy", i, () -> order.add(name));
+		}
+		scheduler.submit("quiet", 0, () -> order.add("quiet0"));
+		scheduler.submit("quiet", 0, () -> order.add("quiet1"));
+		assertEquals(6, scheduler.getQueueDepth());
+
+		gate.countDown();
+		assertEquals(0, scheduler.shutdown(10, TimeUnit.SECONDS));
+		assertEquals(List.of("noisy3", "quiet0", "noisy2", "quiet1", "noisy1", "noisy0"), order);
+	}
+
+	/**
+	 * Test that a project with a higher weight gets more of the workers.
+	 */
+	@Test
+	public void weightTest() throws InterruptedException {
+		scheduler = new AlertScheduler("test-", 1, 16, 0, Map.of("heavy", 2));
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+		blockWorker("gate");
+		for (int i = 0; i < 3; i++) {
+			scheduler.submit("light", 0, () -> order.add("light"));
+			scheduler.submit("heavy", 0, () -> order.add("heavy"));
+		}
+
+		gate.countDown();
+		assertEquals(0, scheduler.shutdown(10, TimeUnit.SECONDS));
+		assertEquals(List.of("light", "heavy", "heavy", "light", "heavy", "light"), order);
+	}
+
+	/**
+	 * Test that a project can not occupy more workers than its bulkhead, and that
+	 * the other projects get the remaining workers.
+	 */
+	@Test
+	public void bulkheadTest() throws InterruptedException {
+		scheduler = new AlertScheduler("test-", 2, 16, 1, Map.of());
+		CountDownLatch other = new CountDownLatch(1);
+
+		blockWorker("busy");
+		scheduler.submit("busy", 0, () -> {
+		});
+		scheduler.submit("other", 0, other::countDown);
+
+		assertTrue(other.await(10, TimeUnit.SECONDS));
+		ProjectQueueStatus busy = scheduler.getProjectStatuses().get(0);
+		assertEquals("busy", busy.getGropiusProjectId());
+		assertEquals(1, busy.getRunning());
+		assertEquals(1, busy.getQueued());
+
+		gate.countDown();
+		assertEquals(0, scheduler.shutdown(10, TimeUnit.SECONDS));
+		busy = scheduler.getProjectStatuses().get(0);
+		assertEquals(0, busy.getRunning());
+		assertEquals(2, busy.getDispatched());
+	}
+
+	/**
+	 * Test that tasks are rejected, if too many are waiting.
+	 */
+	@Test
+	public void capacityTest() throws InterruptedException {
+		scheduler = new AlertScheduler("test-", 1, 1, 0, Map.of());
+
+		blockWorker("gate");
+		scheduler.submit("project", 0, () -> {
+		});
+		assertThrows(RejectedExecutionException.class, () -> scheduler.submit("other", 0, () -> {
+		}));
+	}
+
+	/**
+	 * Submit a task of the given project, that blocks its worker until the gate
+	 * opens, and wait for it to start.
+	 */
+	private void blockWorker(String projectId) throws InterruptedException {
+		scheduler.submit(projectId, 0, () -> {
+			started.countDown();
+			try {
+				gate.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+	}
+}
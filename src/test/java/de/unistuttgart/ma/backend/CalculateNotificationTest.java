@@ -1,11 +1,15 @@
 package de.unistuttgart.ma.backend;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.bpmn2.FlowElement;
@@ -13,15 +17,40 @@ import org.eclipse.bpmn2.Task;
 import org.eclipse.emf.ecore.EObject;
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import de.unistuttgart.gropius.Component;
 import de.unistuttgart.gropius.ComponentInterface;
 import de.unistuttgart.gropius.slo.SloRule;
 import de.unistuttgart.ma.backend.app.CalculateNotificationService;
+import de.unistuttgart.ma.backend.propagation.CompiledTraversal;
+import de.unistuttgart.ma.backend.propagation.ImpactTree;
+import de.unistuttgart.ma.backend.propagation.MemoizedTraversal;
+import de.unistuttgart.ma.backend.propagation.PropagationBudget.Limit;
+import de.unistuttgart.ma.backend.propagation.PropagationIndex;
+import de.unistuttgart.ma.backend.propagation.PropagationIndexRegistry;
+import de.unistuttgart.ma.backend.propagation.PropagationResult;
+import de.unistuttgart.ma.backend.propagation.ReachabilityTable;
+import de.unistuttgart.ma.backend.propagation.TraversalMode;
 import de.unistuttgart.ma.backend.repository.ImpactItem;
+import de.unistuttgart.ma.backend.repository.ModelDiff;
+import de.unistuttgart.ma.backend.repository.SystemListener;
+import de.unistuttgart.ma.backend.utility.ImpactSerializer;
+import de.unistuttgart.ma.backend.utility.InterfaceSerializer;
+import de.unistuttgart.ma.backend.utility.NotificationSerializer;
+import de.unistuttgart.ma.backend.utility.SloRuleSerializer;
+import de.unistuttgart.ma.backend.utility.StepSerializer;
+import de.unistuttgart.ma.backend.utility.TaskSerializer;
 import de.unistuttgart.ma.impact.Impact;
 import de.unistuttgart.ma.impact.ImpactFactory;
 import de.unistuttgart.ma.impact.Notification;
 import de.unistuttgart.ma.impact.Violation;
 import de.unistuttgart.ma.saga.SagaStep;
+import de.unistuttgart.ma.saga.System;
 
 /**
  * Tests for {@linkplain CalculateNotificationService}}
@@ -67,6 +96,467 @@ public class CalculateNotificationTest extends TestWithRepo{
 		}
 	}
 	
+	/**
+	 * Calculate the impact chains in memoized mode, assert that they are the same
+	 * as in breadth first mode, but without impacts for paths that never reach the
+	 * business process.
+	 */
+	@Test
+	public void computeNotificationMemoizedTest() {
+		loadSystem();
+		propagationSettings.setMode(TraversalMode.MEMOIZED);
+
+		ComponentInterface creditInstituteFace = getSystem().getComponentInterfaceById("5e8cf780c585a029");
+		SloRule rule = getSystem().getSloForNode(creditInstituteFace).iterator().next();
+		Violation violation = ImpactFactory.eINSTANCE.createViolation();
+		violation.setViolatedRule(rule);
+
+		Set<Notification> actuals = computationService.calculateImpacts(violation);
+
+		assertEquals(2, actuals.size());
+		assertEquals(9, impactRepo.count()); // only the impacts on the two chains, with a shared root
+
+		for (Notification actual : actuals) {
+			if (((Task) actual.getTopLevelImpact().getLocation()).getId().equals("Task_4")) {
+				assertPaymentImpact(actual);
+			} else {
+				assertInventoryImpact(actual);
+			}
+		}
+
+		propagationSettings.setMaxChains(1);
+		assertEquals(1, computationService.calculateImpacts(violation).size());
+	}
+
+	/**
+	 * Calculate the impact chains in compiled mode, assert that they are the same
+	 * as in memoized mode.
+	 */
+	@Test
+	public void computeNotificationCompiledTest() {
+		loadSystem();
+		propagationSettings.setMode(TraversalMode.COMPILED);
+
+		ComponentInterface creditInstituteFace = getSystem().getComponentInterfaceById("5e8cf780c585a029");
+		SloRule rule = getSystem().getSloForNode(creditInstituteFace).iterator().next();
+		Violation violation = ImpactFactory.eINSTANCE.createViolation();
+		violation.setViolatedRule(rule);
+
+		Set<Notification> actuals = computationService.calculateImpacts(violation);
+
+		assertEquals(2, actuals.size());
+		assertEquals(9, impactRepo.count()); // only the impacts on the two chains, with a shared root
+
+		for (Notification actual : actuals) {
+			if (((Task) actual.getTopLevelImpact().getLocation()).getId().equals("Task_4")) {
+				assertPaymentImpact(actual);
+			} else {
+				assertInventoryImpact(actual);
+			}
+		}
+
+		propagationSettings.setMaxChains(1);
+		assertEquals(1, computationService.calculateImpacts(violation).size());
+	}
+
+	/**
+	 * Calculate the impact chains in precomputed mode, assert that they are the
+	 * same as in compiled mode, with and without an up to date table.
+	 */
+	@Test
+	public void computeNotificationPrecomputedTest() {
+		propagationSettings.setMode(TraversalMode.PRECOMPUTED);
+		loadSystem();
+		// the table is computed in the background, compute it right away instead
+		computationService.getReachability().precompute(systemId);
+
+		ReachabilityTable table = computationService.getReachability().get(systemId);
+		assertNotNull(table);
+		assertEquals(systemRepoProxy.getRevision(systemId), table.getRevision());
+		assertFalse(reachabilityRepo.findBySystemIdAndRevision(systemId, table.getRevision()).isEmpty());
+
+		ComponentInterface creditInstituteFace = getSystem().getComponentInterfaceById("5e8cf780c585a029");
+		SloRule rule = getSystem().getSloForNode(creditInstituteFace).iterator().next();
+		Violation violation = ImpactFactory.eINSTANCE.createViolation();
+		violation.setViolatedRule(rule);
+
+		Set<Notification> actuals = computationService.calculateImpacts(violation);
+
+		assertEquals(2, actuals.size());
+		assertEquals(9, impactRepo.count()); // only the impacts on the two chains, with a shared root
+
+		for (Notification actual : actuals) {
+			if (((Task) actual.getTopLevelImpact().getLocation()).getId().equals("Task_4")) {
+				assertPaymentImpact(actual);
+			} else {
+				assertInventoryImpact(actual);
+			}
+		}
+
+		// outdate the table, without precomputing or patching a new one
+		propagationSettings.setMode(TraversalMode.COMPILED);
+		systemCache.clear();
+		systemRepoProxy.updateModel(systemRepoProxy.findXMLById(systemId), systemId);
+		propagationSettings.setMode(TraversalMode.PRECOMPUTED);
+
+		System updated = systemRepoProxy.findById(systemId);
+		ComponentInterface updatedFace = updated.getComponentInterfaceById("5e8cf780c585a029");
+		violation.setViolatedRule(updated.getSloForNode(updatedFace).iterator().next());
+		assertEquals(2, computationService.calculateImpacts(violation).size());
+		assertTrue(computationService.getReachability().getMisses() > 0);
+	}
+
+	/**
+	 * Calculate the impact chains in parallel mode, with a threshold small enough
+	 * to split every frontier, assert that they are the same as in compiled mode.
+	 */
+	@Test
+	public void computeNotificationParallelTest() {
+		loadSystem();
+		propagationSettings.setMode(TraversalMode.PARALLEL);
+		propagationSettings.setParallelThreshold(1);
+
+		ComponentInterface creditInstituteFace = getSystem().getComponentInterfaceById("5e8cf780c585a029");
+		SloRule rule = getSystem().getSloForNode(creditInstituteFace).iterator().next();
+		Violation violation = ImpactFactory.eINSTANCE.createViolation();
+		violation.setViolatedRule(rule);
+
+		Set<Notification> actuals = computationService.calculateImpacts(violation);
+
+		assertEquals(2, actuals.size());
+		assertEquals(9, impactRepo.count()); // only the impacts on the two chains, with a shared root
+
+		for (Notification actual : actuals) {
+			if (((Task) actual.getTopLevelImpact().getLocation()).getId().equals("Task_4")) {
+				assertPaymentImpact(actual);
+			} else {
+				assertInventoryImpact(actual);
+			}
+		}
+	}
+
+	/**
+	 * Test that chains with a common prefix share the impacts of that prefix, in
+	 * memory, in the repository and when serialised together.
+	 */
+	@Test
+	public void impactTreeTest() throws JsonProcessingException {
+		loadSystem();
+		propagationSettings.setMode(TraversalMode.MEMOIZED);
+
+		ComponentInterface creditInstituteFace = getSystem().getComponentInterfaceById("5e8cf780c585a029");
+		SloRule rule = getSystem().getSloForNode(creditInstituteFace).iterator().next();
+		Violation violation = ImpactFactory.eINSTANCE.createViolation();
+		violation.setViolatedRule(rule);
+
+		List<Notification> actuals = new ArrayList<>(computationService.calculateImpacts(violation));
+		List<Impact> topLevelImpacts = new ArrayList<>();
+		actuals.forEach(note -> topLevelImpacts.add(note.getTopLevelImpact()));
+
+		ImpactTree tree = new ImpactTree(topLevelImpacts);
+		assertEquals(9, tree.getImpacts().size());
+		assertEquals(10, tree.getPathLength()); // 4 on the payment chain, 6 on the inventory chain
+
+		Impact root = tree.getImpacts().get(0);
+		assertEquals("5e8cf780c585a029", root.getLocationId());
+		assertEquals(2, tree.getReferences(root));
+		assertEquals(2, impactRepo.findById(root.getId()).get().getReferences());
+		assertEquals(1, impactRepo.findById(topLevelImpacts.get(0).getId()).get().getReferences());
+
+		SimpleModule module = new SimpleModule();
+		module.addSerializer(Notification.class, new NotificationSerializer(Notification.class));
+		module.addSerializer(Impact.class, new ImpactSerializer(Impact.class));
+		module.addSerializer(SagaStep.class, new StepSerializer(SagaStep.class));
+		module.addSerializer(Task.class, new TaskSerializer(Task.class));
+		module.addSerializer(ComponentInterface.class, new InterfaceSerializer(ComponentInterface.class));
+		module.addSerializer(SloRule.class, new SloRuleSerializer(SloRule.class));
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(module);
+
+		ObjectWriter sharing = mapper.writer().withAttribute(NotificationSerializer.SHARED_PREFIXES, Boolean.TRUE);
+		JsonNode notes = mapper.readTree(sharing.writeValueAsString(actuals));
+		assertEquals(9, notes.get(0).get("impactpath").size() + notes.get(1).get("impactpath").size());
+		assertTrue(notes.get(0).path("sharedprefix").isMissingNode());
+		assertEquals(root.getId(), notes.get(1).get("sharedprefix").asText());
+		assertTrue(notes.get(0).get("impactpath").get(0).get("impact").isTextual());
+
+		JsonNode single = mapper.readTree(sharing.writeValueAsString(actuals.get(1)));
+		assertTrue(single.path("sharedprefix").isMissingNode());
+
+		// without shared prefixes, e.g. for issue bodies, notifications are self-contained
+		JsonNode plain = mapper.readTree(mapper.writeValueAsString(actuals));
+		assertEquals(10, plain.get(0).get("impactpath").size() + plain.get(1).get("impactpath").size());
+		assertTrue(plain.get(1).path("sharedprefix").isMissingNode());
+		assertTrue(plain.get(0).get("impactpath").get(0).path("impact").isMissingNode());
+	}
+
+	/**
+	 * Test that a repeated violation of the same rule takes its chains from the
+	 * cache, and that an update of the model invalidates the cache.
+	 */
+	@Test
+	public void notificationCacheTest() {
+		loadSystem();
+
+		ComponentInterface creditInstituteFace = getSystem().getComponentInterfaceById("5e8cf780c585a029");
+		SloRule rule = getSystem().getSloForNode(creditInstituteFace).iterator().next();
+		Violation violation = ImpactFactory.eINSTANCE.createViolation();
+		violation.setViolatedRule(rule);
+
+		assertEquals(2, computationService.calculateImpacts(violation).size());
+		assertEquals(12, impactRepo.count());
+		assertEquals(1, notificationCache.size());
+
+		Violation repeated = ImpactFactory.eINSTANCE.createViolation();
+		repeated.setViolatedRule(rule);
+		Set<Notification> actuals = computationService.calculateImpacts(repeated);
+
+		assertEquals(2, actuals.size());
+		assertEquals(12, impactRepo.count()); // no new impacts
+		assertEquals(1, notificationCache.getHits());
+		for (Notification actual : actuals) {
+			assertEquals(repeated, actual.getRootCause());
+		}
+
+		// the rule reaches the payment interface
+		String xml = systemRepoProxy.findXMLById(systemId).replace("name=\"payment interface\"",
+				"name=\"payment interface v2\"");
+		systemRepoProxy.updateModel(xml, systemId);
+		assertEquals(0, notificationCache.size());
+	}
+
+	/**
+	 * Test that an update of the model only recomputes the precomputed chains and
+	 * drops the cached chains of the rules that reach the changed part of the
+	 * model.
+	 */
+	/**
+	 * Test that the registry keeps one index per system, and drops it as soon as
+	 * the system changes or is evicted.
+	 */
+	@Test
+	public void indexRegistryTest() {
+		loadSystem();
+		System system = systemRepoProxy.findById(systemId);
+		PropagationIndexRegistry registry = new PropagationIndexRegistry();
+
+		PropagationIndex index = registry.get(system);
+		assertSame(index, registry.get(system));
+		assertEquals(1, registry.size());
+
+		registry.systemEvicted(system);
+		assertEquals(0, registry.size());
+
+		registry.get(system);
+		registry.systemChanged(systemId);
+		assertEquals(0, registry.size());
+	}
+
+	@Test
+	public void incrementalUpdateTest() {
+		propagationSettings.setMode(TraversalMode.PRECOMPUTED);
+		loadSystem();
+		System system = systemRepoProxy.findById(systemId);
+		assertNotNull(computationService.getReachability().precompute(systemId));
+
+		Violation unaffected = ImpactFactory.eINSTANCE.createViolation();
+		unaffected.setViolatedRule(system.getSloById("other_respT_slo"));
+		Violation affected = ImpactFactory.eINSTANCE.createViolation();
+		affected.setViolatedRule(system.getSloById("CI_respT_slo"));
+		int unaffectedChains = computationService.calculateImpacts(unaffected).size();
+		assertEquals(2, computationService.calculateImpacts(affected).size());
+		assertEquals(2, notificationCache.size());
+
+		List<ModelDiff> diffs = new ArrayList<>();
+		systemRepoProxy.addListener(new SystemListener() {
+			@Override
+			public void systemUpdated(ModelDiff diff) {
+				diffs.add(diff);
+			}
+		});
+		String xml = systemRepoProxy.findXMLById(systemId).replace("name=\"payment interface\"",
+				"name=\"payment interface v2\"");
+		systemRepoProxy.updateModel(xml, systemId);
+
+		assertEquals(1, diffs.size());
+		assertEquals(Set.of("5e8cf760d345a028"), diffs.get(0).getChangedInterfaces());
+		assertEquals(Set.of("payment_avail_slo", "CI_respT_slo", "CI_avail_slo"), diffs.get(0).getAffectedRules());
+
+		// the table was patched to the new revision, without a miss
+		ReachabilityTable table = computationService.getReachability().get(systemId);
+		assertNotNull(table);
+		assertEquals(systemRepoProxy.getRevision(systemId), table.getRevision());
+		assertEquals(0, computationService.getReachability().getMisses());
+
+		// no chain of the previous model is cached, the patched table answers instead
+		assertEquals(0, notificationCache.size());
+		System updated = systemRepoProxy.findById(systemId);
+		unaffected.setViolatedRule(updated.getSloById("other_respT_slo"));
+		affected.setViolatedRule(updated.getSloById("CI_respT_slo"));
+		List<Notification> notifications = computationService.calculateImpacts(unaffected);
+		assertEquals(unaffectedChains, notifications.size());
+		assertEquals(0, computationService.getReachability().getMisses());
+		PropagationIndex current = new PropagationIndex(updated);
+		for (Notification actual : notifications) {
+			for (Impact impact = actual.getTopLevelImpact(); impact != null; impact = impact.getCause()) {
+				if (impact.getLocation() instanceof ComponentInterface) {
+					ComponentInterface face = (ComponentInterface) impact.getLocation();
+					assertSame(current.getInterface(face.getId()), face);
+				}
+			}
+		}
+
+		for (Notification actual : computationService.calculateImpacts(affected)) {
+			if (((Task) actual.getTopLevelImpact().getLocation()).getId().equals("Task_4")) {
+				assertEquals("payment interface v2", actual.getTopLevelImpact().getCause().getCause().getLocationName());
+			}
+		}
+	}
+
+	/**
+	 * Test that chains that exceed the precompute budget are stored as truncated,
+	 * and that their violations fall back to a traversal.
+	 */
+	@Test
+	public void precomputeTruncatedTest() {
+		loadSystem();
+		propagationSettings.setMode(TraversalMode.PRECOMPUTED);
+		propagationSettings.setMaxChains(1);
+		computationService.getReachability().precompute(systemId);
+
+		ComponentInterface creditInstituteFace = getSystem().getComponentInterfaceById("5e8cf780c585a029");
+		SloRule rule = getSystem().getSloForNode(creditInstituteFace).iterator().next();
+		assertTrue(reachabilityRepo.findBySystemIdAndRevision(systemId, systemRepoProxy.getRevision(systemId))
+				.stream().anyMatch(item -> item.getRuleId().equals(rule.getId()) && item.isTruncated()));
+
+		Violation violation = ImpactFactory.eINSTANCE.createViolation();
+		violation.setViolatedRule(rule);
+		PropagationResult actual = computationService.calculate(violation);
+		assertEquals(1, actual.getNotifications().size());
+		assertTrue(actual.isDegraded());
+	}
+
+	/**
+	 * Test that all modes respect the depth limit of the budget and report their
+	 * results as degraded, and that degraded results are not cached.
+	 */
+	@Test
+	public void propagationBudgetTest() {
+		loadSystem();
+
+		ComponentInterface creditInstituteFace = getSystem().getComponentInterfaceById("5e8cf780c585a029");
+		SloRule rule = getSystem().getSloForNode(creditInstituteFace).iterator().next();
+		Violation violation = ImpactFactory.eINSTANCE.createViolation();
+		violation.setViolatedRule(rule);
+
+		// the payment chain has two interfaces, the inventory chain has four.
+		propagationSettings.setMaxDepth(2);
+		for (TraversalMode mode : List.of(TraversalMode.BREADTH_FIRST, TraversalMode.MEMOIZED,
+				TraversalMode.COMPILED, TraversalMode.PARALLEL)) {
+			propagationSettings.setMode(mode);
+			PropagationResult actual = computationService.calculate(violation);
+
+			assertEquals(1, actual.getNotifications().size(), mode.name());
+			assertPaymentImpact(actual.getNotifications().iterator().next());
+			assertTrue(actual.isDegraded(), mode.name());
+			assertEquals(Set.of(Limit.DEPTH), actual.getExceeded(), mode.name());
+			assertTrue(actual.getTruncated() > 0, mode.name());
+		}
+		assertEquals(0, notificationCache.size());
+		assertEquals(4, computationService.getBudgetMetrics().getHits(Limit.DEPTH));
+
+		propagationSettings.setMaxDepth(4);
+		PropagationResult complete = computationService.calculate(violation);
+		assertEquals(2, complete.getNotifications().size());
+		assertFalse(complete.isDegraded());
+		assertEquals(1, notificationCache.size());
+
+		propagationSettings.setMode(TraversalMode.COMPILED);
+		propagationSettings.setMaxChains(1);
+		PropagationResult limited = computationService.calculate(violation);
+		assertEquals(1, limited.getNotifications().size());
+		assertEquals(Set.of(Limit.NOTIFICATIONS), limited.getExceeded());
+		assertEquals(5, computationService.getBudgetMetrics().getDegraded());
+	}
+
+	/**
+	 * Test that the compiled traversal terminates on a cyclic architecture.
+	 */
+	@Test
+	public void compiledTraversalCycleTest() {
+		loadSystem();
+		ComponentInterface otherFace = getSystem().getComponentInterfaceById("5e94539417ca7005");
+		ComponentInterface anotherFace = getSystem().getComponentInterfaceById("5e94553f2a4a7006");
+
+		for (Component component : getSystem().getArchitecture().getComponents()) {
+			if (component.getInterfaces().contains(otherFace)) {
+				anotherFace.getConsumedBy().add(component);
+			}
+		}
+
+		CompiledTraversal traversal = new CompiledTraversal(new PropagationIndex(getSystem()).getGraph(), 0);
+		List<Impact> actuals = traversal.traverse(
+				List.of(getSystem().getComponentInterfaceById("5e8cf780c585a029")), (cause, location) -> {
+					Impact impact = ImpactFactory.eINSTANCE.createImpact();
+					impact.setCause(cause);
+					impact.setLocation(location);
+					return impact;
+				});
+
+		assertEquals(2, actuals.size());
+	}
+
+	/**
+	 * Test that the memoized traversal terminates on a cyclic architecture.
+	 */
+	@Test
+	public void memoizedTraversalCycleTest() {
+		loadSystem();
+		ComponentInterface otherFace = getSystem().getComponentInterfaceById("5e94539417ca7005");
+		ComponentInterface anotherFace = getSystem().getComponentInterfaceById("5e94553f2a4a7006");
+
+		// the component of otherFace consumes anotherFace, which is in turn (indirectly) consumed by otherFace.
+		for (Component component : getSystem().getArchitecture().getComponents()) {
+			if (component.getInterfaces().contains(otherFace)) {
+				anotherFace.getConsumedBy().add(component);
+			}
+		}
+
+		MemoizedTraversal traversal = new MemoizedTraversal(new PropagationIndex(getSystem()), 0);
+		List<Impact> actuals = traversal.traverse(
+				List.of(getSystem().getComponentInterfaceById("5e8cf780c585a029")), (cause, location) -> {
+					Impact impact = ImpactFactory.eINSTANCE.createImpact();
+					impact.setCause(cause);
+					impact.setLocation(location);
+					return impact;
+				});
+
+		assertEquals(2, actuals.size());
+	}
+
+	/**
+	 * Test that the propagation index knows where impacts propagate to.
+	 */
+	@Test
+	public void propagationIndexTest() {
+		loadSystem();
+		PropagationIndex index = computationService.getIndex(getSystem());
+
+		ComponentInterface creditInstituteFace = getSystem().getComponentInterfaceById("5e8cf780c585a029");
+		ComponentInterface paymentFace = getSystem().getComponentInterfaceById("5e8cf760d345a028");
+
+		assertTrue(index.contains(creditInstituteFace));
+		assertTrue(index.getSteps(creditInstituteFace).isEmpty());
+		assertTrue(index.getConsumerInterfaces(creditInstituteFace).contains(paymentFace));
+		assertTrue(index.getConsumerInterfaces(creditInstituteFace)
+				.contains(getSystem().getComponentInterfaceById("5e94539417ca7005")));
+
+		assertEquals(1, index.getSteps(paymentFace).size());
+		assertEquals("paymentStep", index.getSteps(paymentFace).get(0).getId());
+
+		assertEquals(index, computationService.getIndex(getSystem()));
+	}
+
 	/**
 	 * Helper to assert correctness of notification.
 	 * 
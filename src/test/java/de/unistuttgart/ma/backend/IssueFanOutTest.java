@@ -0,0 +1,94 @@
+package de.unistuttgart.ma.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.unistuttgart.ma.backend.app.IssueFanOut;
+import de.unistuttgart.ma.backend.exceptions.IssueCreationFailedException;
+
+/**
+ * Tests for {@link IssueFanOut}.
+ */
+public class IssueFanOutTest {
+
+	IssueFanOut fanOut = new IssueFanOut(4);
+
+	@AfterEach
+	public void shutDown() {
+		fanOut.shutdown();
+	}
+
+	/**
+	 * Test that tasks run concurrently and their results keep the order of the
+	 * tasks.
+	 */
+	@Test
+	public void concurrentTest() throws Exception {
+		CountDownLatch all = new CountDownLatch(4);
+		List<IssueFanOut.IssueTask<Integer>> tasks = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			int result = i;
+			tasks.add(() -> {
+				all.countDown();
+				try {
+					// only returns, if all tasks run at once.
+					assertTrue(all.await(10, TimeUnit.SECONDS));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return result;
+			});
+		}
+		assertEquals(List.of(0, 1, 2, 3), fanOut.invokeAll(tasks));
+	}
+
+	/**
+	 * Test that the failure of a task is rethrown to the caller.
+	 */
+	@Test
+	public void failureTest() {
+		List<IssueFanOut.IssueTask<Integer>> tasks = List.of(() -> 1, () -> {
+			throw new IssueCreationFailedException("failed", null);
+		});
+		assertThrows(IssueCreationFailedException.class, () -> fanOut.invokeAll(tasks));
+	}
+
+	/**
+	 * Test that the failure of a task is rethrown without waiting for the tasks
+	 * before it, and that running tasks are not interrupted.
+	 */
+	@Test
+	public void failFastTest() throws Exception {
+		CountDownLatch gate = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(1);
+		AtomicBoolean interrupted = new AtomicBoolean();
+		List<IssueFanOut.IssueTask<Integer>> tasks = List.of(() -> {
+			try {
+				gate.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				interrupted.set(true);
+			}
+			finished.countDown();
+			return 1;
+		}, () -> {
+			throw new IssueCreationFailedException("failed", null);
+		});
+		assertThrows(IssueCreationFailedException.class, () -> fanOut.invokeAll(tasks));
+		assertEquals(1, finished.getCount());
+
+		gate.countDown();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		assertFalse(interrupted.get());
+	}
+}
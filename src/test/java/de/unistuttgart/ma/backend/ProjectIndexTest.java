@@ -0,0 +1,96 @@
+package de.unistuttgart.ma.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import de.unistuttgart.ma.backend.repository.ProjectIndex;
+
+/**
+ * Tests for {@link ProjectIndex}.
+ */
+public class ProjectIndexTest {
+
+	/**
+	 * Test that a project may have multiple systems and that systems move when
+	 * their project changes.
+	 */
+	@Test
+	public void multipleSystemsTest() {
+		ProjectIndex index = new ProjectIndex();
+
+		index.put("project", "system1");
+		index.put("project", "system2");
+		assertEquals(List.of("system1", "system2"), new ArrayList<>(index.get("project")));
+
+		index.put("other", "system1");
+		assertEquals(Set.of("system2"), index.get("project"));
+		assertEquals(Set.of("system1"), index.get("other"));
+
+		index.remove("system2");
+		assertTrue(index.get("project").isEmpty());
+		assertEquals(4, index.getVersion());
+	}
+
+	/**
+	 * Test that concurrent lookups of an unknown project load it only once.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void singleFlightTest() throws InterruptedException {
+		ProjectIndex index = new ProjectIndex();
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<Set<String>> first = CompletableFuture.supplyAsync(() -> index.getOrLoad("project", id -> {
+			loads.incrementAndGet();
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return List.of("system");
+		}));
+		started.await();
+
+		List<CompletableFuture<Set<String>>> others = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			others.add(CompletableFuture.supplyAsync(() -> index.getOrLoad("project", id -> {
+				loads.incrementAndGet();
+				return List.of("system");
+			})));
+		}
+		release.countDown();
+
+		assertEquals(Set.of("system"), first.join());
+		for (CompletableFuture<Set<String>> other : others) {
+			assertEquals(Set.of("system"), other.join());
+		}
+		assertEquals(1, loads.get());
+	}
+
+	/**
+	 * Test that a reload replaces the content of the index.
+	 */
+	@Test
+	public void reloadTest() {
+		ProjectIndex index = new ProjectIndex();
+		index.put("project", "stale");
+
+		index.reload(() -> Map.of("system", "project"));
+
+		assertEquals(Set.of("system"), index.get("project"));
+	}
+}
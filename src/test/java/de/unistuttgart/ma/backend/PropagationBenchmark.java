@@ -0,0 +1,168 @@
+package de.unistuttgart.ma.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import de.unistuttgart.gropius.Component;
+import de.unistuttgart.gropius.ComponentInterface;
+import de.unistuttgart.gropius.GropiusFactory;
+import de.unistuttgart.gropius.Project;
+import de.unistuttgart.ma.backend.propagation.CompiledTraversal;
+import de.unistuttgart.ma.backend.propagation.ImpactMaker;
+import de.unistuttgart.ma.backend.propagation.ParallelTraversal;
+import de.unistuttgart.ma.backend.propagation.PropagationIndex;
+import de.unistuttgart.ma.impact.Impact;
+import de.unistuttgart.ma.impact.ImpactFactory;
+import de.unistuttgart.ma.saga.Saga;
+import de.unistuttgart.ma.saga.SagaFactory;
+import de.unistuttgart.ma.saga.SagaStep;
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * Benchmark of the sequential {@link CompiledTraversal} against the
+ * {@link ParallelTraversal}, on generated architectures of increasing width.
+ * 
+ * Each architecture has a fixed number of layers of components with one
+ * interface each. Each interface is consumed by some random components of the
+ * next layer, and the interfaces of the last layer realise saga steps. The
+ * violation happens at all interfaces of the first layer, as for a violation
+ * at a component with many interfaces.
+ * 
+ * Prints the median time per traversal for each width and the smallest width,
+ * at which the parallel traversal is faster. Only runs with
+ * {@code -Dbenchmark=true}.
+ *
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class PropagationBenchmark {
+
+	private static final int LAYERS = 6;
+	private static final int FAN_OUT = 3;
+	private static final int REPETITIONS = 15;
+	private static final int[] WIDTHS = { 2, 4, 8, 16, 32, 64, 128, 256 };
+
+	@Test
+	public void crossoverBenchmark() {
+		Integer crossover = null;
+		java.lang.System.out.println("width | interfaces | chains | sequential ms | parallel ms");
+		for (int width : WIDTHS) {
+			PropagationIndex index = new PropagationIndex(makeSystem(width, new Random(42)));
+			List<ComponentInterface> initials = new ArrayList<>();
+			for (ComponentInterface face : index.getInterfaces()) {
+				if (face.getId().startsWith("0-")) {
+					initials.add(face);
+				}
+			}
+
+			int chains = new CompiledTraversal(index.getGraph(), 0).traverse(initials, makeMaker()).size();
+			assertEquals(chains, new ParallelTraversal(index.getGraph(), 0, 64, ForkJoinPool.commonPool())
+					.traverse(initials, makeMaker()).size());
+
+			double sequential = median(() -> new CompiledTraversal(index.getGraph(), 0).traverse(initials,
+					makeMaker()));
+			double parallel = median(() -> new ParallelTraversal(index.getGraph(), 0, 64, ForkJoinPool.commonPool())
+					.traverse(initials, makeMaker()));
+
+			java.lang.System.out.println(String.format("%5d | %10d | %6d | %13.3f | %11.3f", width,
+					index.getGraph().size(), chains, sequential, parallel));
+			if (crossover == null && parallel < sequential) {
+				crossover = width;
+			}
+		}
+		java.lang.System.out.println(String.format("parallel traversal is faster from width %s on, with %d cores.",
+				crossover, ForkJoinPool.commonPool().getParallelism() + 1));
+	}
+
+	/**
+	 * Run a traversal repeatedly and get the median duration.
+	 * 
+	 * @param traversal the traversal
+	 * @return median duration in milliseconds
+	 */
+	private double median(Supplier<List<Impact>> traversal) {
+		for (int i = 0; i < REPETITIONS; i++) {
+			traversal.get(); // warm up
+		}
+		double[] durations = new double[REPETITIONS];
+		for (int i = 0; i < REPETITIONS; i++) {
+			long start = java.lang.System.nanoTime();
+			traversal.get();
+			durations[i] = (java.lang.System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(durations);
+		return durations[REPETITIONS / 2];
+	}
+
+	/**
+	 * Create an impact maker, that does not persist anything.
+	 * 
+	 * @return the impact maker
+	 */
+	private ImpactMaker makeMaker() {
+		return (cause, location) -> {
+			Impact impact = ImpactFactory.eINSTANCE.createImpact();
+			impact.setCause(cause);
+			return impact;
+		};
+	}
+
+	/**
+	 * Generate a layered system.
+	 * 
+	 * @param width  number of components per layer
+	 * @param random source of the consumers
+	 * @return the system
+	 */
+	private System makeSystem(int width, Random random) {
+		System system = SagaFactory.eINSTANCE.createSystem();
+		system.setId("benchmark-" + width);
+		Project project = GropiusFactory.eINSTANCE.createProject();
+		project.setId("benchmark-project");
+		system.setArchitecture(project);
+
+		ComponentInterface[][] faces = new ComponentInterface[LAYERS][width];
+		Component[][] components = new Component[LAYERS][width];
+		for (int layer = 0; layer < LAYERS; layer++) {
+			for (int i = 0; i < width; i++) {
+				Component component = GropiusFactory.eINSTANCE.createComponent();
+				component.setId(layer + "-" + i + "-component");
+				ComponentInterface face = GropiusFactory.eINSTANCE.createComponentInterface();
+				face.setId(layer + "-" + i);
+				component.getInterfaces().add(face);
+				project.getComponents().add(component);
+				components[layer][i] = component;
+				faces[layer][i] = face;
+			}
+		}
+
+		for (int layer = 0; layer < LAYERS - 1; layer++) {
+			for (int i = 0; i < width; i++) {
+				for (int j = 0; j < Math.min(FAN_OUT, width); j++) {
+					Component consumer = components[layer + 1][random.nextInt(width)];
+					if (!faces[layer][i].getConsumedBy().contains(consumer)) {
+						faces[layer][i].getConsumedBy().add(consumer);
+					}
+				}
+			}
+		}
+
+		Saga saga = SagaFactory.eINSTANCE.createSaga();
+		system.getSagas().add(saga);
+		for (int i = 0; i < width; i++) {
+			SagaStep step = SagaFactory.eINSTANCE.createSagaStep();
+			step.setId("step-" + i);
+			step.setComponentInterface(faces[LAYERS - 1][i]);
+			saga.getSteps().add(step);
+		}
+		return system;
+	}
+}
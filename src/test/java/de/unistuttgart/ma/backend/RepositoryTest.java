@@ -6,6 +6,10 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
@@ -20,6 +24,8 @@ import de.unistuttgart.ma.impact.Notification;
 import de.unistuttgart.ma.saga.SagaFactory;
 import de.unistuttgart.ma.saga.System;
 import de.unistuttgart.ma.backend.repository.ImpactItem;
+import de.unistuttgart.ma.backend.repository.ImpactWriter;
+import de.unistuttgart.ma.backend.repository.WriteDurability;
 import de.unistuttgart.ma.impact.Impact;
 
 /**
@@ -71,6 +77,87 @@ public class RepositoryTest extends TestWithRepo {
 		
 	}
 	
+	@Test
+	public void impactRepoInsertUnorderedTest() {
+		ImpactItem root = new ImpactItem("60fa9cadc736ff6357a89a01", null, "root");
+		ImpactItem child = new ImpactItem("60fa9cadc736ff6357a89a02", root.getId(), "child");
+
+		impactRepo.insertUnordered(List.of(child, root));
+		impactRepo.insertUnordered(List.of());
+
+		assertEquals(2, impactRepo.count());
+		assertEquals(root.getId(), impactRepo.findById(child.getId()).get().getCause());
+		assertEquals("root", impactRepo.findById(root.getId()).get().getLocation());
+	}
+	
+	/**
+	 * Test that a single write larger than the maximum batch size is split into
+	 * multiple bulk inserts.
+	 */
+	@Test
+	public void impactWriterOversizedWriteTest() {
+		ImpactWriter writer = new ImpactWriter(impactRepo, WriteDurability.ACKNOWLEDGED, 2, 3);
+		try {
+			List<ImpactItem> items = new ArrayList<>();
+			for (int i = 0; i < 7; i++) {
+				items.add(new ImpactItem(String.format("60fa9cadc736ff6357a89c%02d", i), null, "loc"));
+			}
+			writer.write(items);
+
+			assertEquals(7, impactRepo.count());
+			assertEquals(3, writer.getFlushes()); // 3 + 3 + 1 items
+		} finally {
+			writer.shutdown();
+		}
+	}
+
+	@Test
+	public void impactWriterFireAndForgetTest() {
+		ImpactWriter writer = new ImpactWriter(impactRepo, WriteDurability.FIRE_AND_FORGET, 2, 3);
+		try {
+			for (int i = 0; i < 10; i++) {
+				writer.write(List.of(new ImpactItem(String.format("60fa9cadc736ff6357a89b%02d", i), null, "loc")));
+			}
+			writer.flush();
+
+			assertEquals(10, impactRepo.count());
+			assertEquals(10, writer.getWrittenItems());
+			assertEquals(0, writer.getFailedItems());
+			assertEquals(0, writer.getQueueDepth());
+			assertTrue(writer.getFlushes() >= 4); // at most 3 items per bulk insert
+		} finally {
+			writer.shutdown();
+		}
+	}
+	
+	/**
+	 * Test that every write, that was accepted while the writer shut down, is
+	 * persisted, and none is left behind.
+	 */
+	@Test
+	public void impactWriterShutdownTest() throws InterruptedException {
+		ImpactWriter writer = new ImpactWriter(impactRepo, WriteDurability.FIRE_AND_FORGET, 64, 3);
+		List<CompletableFuture<Void>> accepted = Collections.synchronizedList(new ArrayList<>());
+		Thread producer = new Thread(() -> {
+			for (int i = 0; i < 50; i++) {
+				try {
+					accepted.add(writer.write(
+							List.of(new ImpactItem(String.format("60fa9cadc736ff6357a89b%02d", i), null, "loc"))));
+				} catch (IllegalStateException e) {
+					return;
+				}
+			}
+		});
+		producer.start();
+		writer.shutdown();
+		producer.join();
+
+		for (CompletableFuture<Void> write : accepted) {
+			assertTrue(write.isDone());
+		}
+		assertEquals(accepted.size(), impactRepo.count());
+	}
+
 	@Test
 	public void systemRepoProxyTest() throws IOException {	
 		loadSystem();
@@ -3,6 +3,8 @@ package de.unistuttgart.ma.backend;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -12,13 +14,24 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.junit.jupiter.api.Test;
 
+import de.unistuttgart.ma.backend.repository.ModelFormat;
+import de.unistuttgart.ma.backend.repository.SystemCache;
+import de.unistuttgart.ma.backend.repository.SystemItem;
 import de.unistuttgart.ma.backend.repository.SystemRepository;
 import de.unistuttgart.ma.backend.repository.SystemRepositoryProxy;
 import de.unistuttgart.ma.saga.System;
@@ -123,9 +136,12 @@ class SystemRepositoryTest extends TestWithRepo {
 	void updateTest() throws IOException {
 		loadSystem();
 		String xml = Files.readString(Paths.get("src/test/resources/", "t2_base_saga.saga"), StandardCharsets.UTF_8);
+		long revision = systemRepoProxy.getRevision(systemId);
 		systemRepoProxy.updateModel(xml, systemId);
 		
 		assertEquals(xml, systemRepoProxy.findXMLById(systemId));
+		assertEquals(revision + 1, systemRepoProxy.getRevision(systemId));
+		assertEquals(revision + 1, systemRepo.findRevisionById(systemId).get().getRevision());
 	}
 	
 	@Test
@@ -136,6 +152,169 @@ class SystemRepositoryTest extends TestWithRepo {
 		assertEquals(xml, systemRepoProxy.findXMLById(systemId));
 	}
 	
+	/**
+	 * Test that repeated access is served from the cache and that an update
+	 * invalidates the cached model.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void cacheTest() throws IOException {
+		loadSystem();
+		long misses = systemCache.getMisses();
+
+		System first = systemRepoProxy.findById(systemId);
+		System second = systemRepoProxy.findByArchitectureId(gropiusId);
+
+		assertSame(first, second);
+		assertEquals(misses, systemCache.getMisses());
+		assertEquals(1, systemCache.size());
+
+		String xml = Files.readString(Paths.get("src/test/resources/", "t2_base_saga.saga"), StandardCharsets.UTF_8);
+		systemRepoProxy.updateModel(xml, systemId);
+		assertEquals(0, systemCache.size());
+
+		System updated = systemRepoProxy.findById(systemId);
+		assertNotSame(first, updated);
+		assertEquals(misses + 1, systemCache.getMisses());
+	}
+
+	/**
+	 * Test that the resources of evicted models are removed from the resource set,
+	 * such that the set stays within the bounds of the cache.
+	 */
+	@Test
+	void evictionTest() {
+		loadSystem();
+		ResourceSetImpl evictingSet = new ResourceSetImpl();
+		SystemCache evictingCache = new SystemCache(0, Long.MAX_VALUE);
+		SystemRepositoryProxy evictingProxy = new SystemRepositoryProxy(systemRepo, evictingSet, evictingCache,
+				makeSerializer(ModelFormat.XMI, "none"));
+
+		System first = evictingProxy.findById(systemId);
+		assertTrue(evictingSet.getResources().isEmpty());
+		System second = evictingProxy.findById(systemId);
+		assertTrue(evictingSet.getResources().isEmpty());
+
+		assertNotSame(first, second);
+		assertEquals(first.getSloRules().size(), second.getSloRules().size());
+	}
+
+	/**
+	 * Test that concurrent misses for the same model get the same system, loaded
+	 * into the resource set only once.
+	 */
+	@Test
+	void concurrentLoadTest() throws Exception {
+		loadSystem();
+		ResourceSetImpl sharedSet = new ResourceSetImpl();
+		SystemRepositoryProxy sharedProxy = new SystemRepositoryProxy(systemRepo, sharedSet,
+				new SystemCache(64, Long.MAX_VALUE), makeSerializer(ModelFormat.XMI, "none"));
+
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<System>> loads = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for (int i = 0; i < 8; i++) {
+				loads.add(executor.submit(() -> {
+					start.await();
+					return sharedProxy.findById(systemId);
+				}));
+			}
+			start.countDown();
+			System first = loads.get(0).get(10, TimeUnit.SECONDS);
+			for (Future<System> load : loads) {
+				assertSame(first, load.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, sharedSet.getResources().size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Test that a legacy xml model is migrated to the binary format and still
+	 * readable afterwards.
+	 */
+	@Test
+	void binaryFormatTest() {
+		loadSystem();
+		SystemRepositoryProxy binaryProxy = new SystemRepositoryProxy(systemRepo, new ResourceSetImpl(),
+				new SystemCache(64, Long.MAX_VALUE), makeSerializer(ModelFormat.BINARY, "none"));
+		binaryProxy.migrateInBackground().join();
+
+		SystemItem item = systemRepo.findById(systemId).get();
+		assertEquals(ModelFormat.BINARY, item.getFormat());
+		assertNotNull(item.getData());
+
+		System actual = binaryProxy.findById(systemId);
+		assertEquals(getSystem().getSagas().size(), actual.getSagas().size());
+		assertEquals(getSystem().getSloRules().size(), actual.getSloRules().size());
+		assertNotNull(actual.getComponentInterfaceById("5e8cf780c585a029"));
+
+		assertTrue(binaryProxy.findXMLById(systemId).contains(systemId));
+	}
+
+	/**
+	 * Test that an item is only replaced, if it still has the expected revision,
+	 * such that a migration never overwrites a newer model.
+	 */
+	@Test
+	void replaceIfRevisionTest() {
+		loadSystem();
+		SystemItem item = systemRepo.findById(systemId).get();
+		long revision = item.getRevision();
+
+		assertFalse(systemRepo.replaceIfRevision(item.withRevision(revision + 5), revision + 1));
+		assertEquals(revision, systemRepo.findById(systemId).get().getRevision());
+
+		assertTrue(systemRepo.replaceIfRevision(item.withRevision(revision), revision));
+		assertEquals(revision, systemRepo.findById(systemId).get().getRevision());
+	}
+
+	/**
+	 * Test that compressed models are smaller and read exactly as they were
+	 * written.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void compressionTest() throws IOException {
+		String xml = Files.readString(Paths.get("src/test/resources/", "t2_base_saga.saga"), StandardCharsets.UTF_8);
+
+		for (String compression : new String[] { "gzip", "deflate" }) {
+			SystemRepositoryProxy compressingProxy = new SystemRepositoryProxy(systemRepo, new ResourceSetImpl(),
+					new SystemCache(64, Long.MAX_VALUE), makeSerializer(ModelFormat.XMI, compression));
+			compressingProxy.updateModel(xml, systemId);
+
+			SystemItem item = systemRepo.findById(systemId).get();
+			assertEquals(compression, item.getCompression());
+			assertTrue(item.getCompressionRatio() > 1);
+
+			assertEquals(xml, compressingProxy.findXMLById(systemId));
+			assertNotNull(compressingProxy.findById(systemId).getComponentInterfaceById("5e8cf780c585a029"));
+		}
+	}
+
+	/**
+	 * Test that the architecture id of a legacy item is backfilled at start up and
+	 * that the model is found by its architecture id afterwards.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	void backfillArchitectureIdTest() throws IOException {
+		String xml = Files.readString(Paths.get("src/test/resources/", "t2_base_saga.saga"), StandardCharsets.UTF_8);
+		systemRepo.save(new SystemItem(systemId, xml, "t2-base.saga"));
+
+		SystemRepositoryProxy proxy = new SystemRepositoryProxy(systemRepo, new ResourceSetImpl(),
+				new SystemCache(64, Long.MAX_VALUE), makeSerializer(ModelFormat.XMI, "none"));
+
+		assertEquals(gropiusId, systemRepo.findById(systemId).get().getArchitectureId());
+		assertEquals(1, systemRepo.findIdsByArchitectureId(gropiusId).size());
+		assertEquals(systemId, proxy.findByArchitectureId(gropiusId).getId());
+	}
+
 	@Test
 	void saveFailTest() throws IOException {
 		assertThrows(IllegalArgumentException.class, () -> systemRepoProxy.save(null));		
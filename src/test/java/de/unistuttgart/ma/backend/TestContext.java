@@ -5,10 +5,11 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
 import de.unistuttgart.ma.backend.repository.ImpactRepository;
+import de.unistuttgart.ma.backend.repository.ReachabilityRepository;
 import de.unistuttgart.ma.backend.repository.SystemRepository;
 
 @Configuration
-@EnableMongoRepositories(basePackageClasses = {SystemRepository.class, ImpactRepository.class})
+@EnableMongoRepositories(basePackageClasses = {SystemRepository.class, ImpactRepository.class, ReachabilityRepository.class})
 @Profile("test")
 public class TestContext {
 
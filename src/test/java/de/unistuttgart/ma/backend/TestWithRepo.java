@@ -10,6 +10,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import org.eclipse.bpmn2.FlowElement;
 import org.eclipse.emf.common.util.URI;
@@ -17,6 +18,7 @@ import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
@@ -30,9 +32,19 @@ import de.unistuttgart.gropius.slo.SloRule;
 import de.unistuttgart.ma.backend.app.ModelController;
 import de.unistuttgart.ma.backend.app.CalculateNotificationService;
 import de.unistuttgart.ma.backend.app.ModelService;
+import de.unistuttgart.ma.backend.propagation.NotificationCache;
+import de.unistuttgart.ma.backend.propagation.PropagationSettings;
+import de.unistuttgart.ma.backend.repository.DeflateCodec;
+import de.unistuttgart.ma.backend.repository.GzipCodec;
 import de.unistuttgart.ma.backend.repository.ImpactRepository;
+import de.unistuttgart.ma.backend.repository.ImpactWriter;
+import de.unistuttgart.ma.backend.repository.ModelFormat;
+import de.unistuttgart.ma.backend.repository.ReachabilityRepository;
+import de.unistuttgart.ma.backend.repository.SystemCache;
 import de.unistuttgart.ma.backend.repository.SystemRepository;
 import de.unistuttgart.ma.backend.repository.SystemRepositoryProxy;
+import de.unistuttgart.ma.backend.repository.SystemSerializer;
+import de.unistuttgart.ma.backend.repository.WriteDurability;
 import de.unistuttgart.ma.impact.Impact;
 import de.unistuttgart.ma.impact.ImpactFactory;
 import de.unistuttgart.ma.impact.Notification;
@@ -54,15 +66,21 @@ import de.unistuttgart.ma.saga.System;
 public abstract class TestWithRepo {
 
 	protected CalculateNotificationService computationService;
+	protected PropagationSettings propagationSettings;
+	protected NotificationCache notificationCache;
 	protected ModelService modelService;
 	protected ModelController controller;
 
 	protected SystemRepositoryProxy systemRepoProxy;
+	protected SystemCache systemCache;
 	@Autowired
 	protected SystemRepository systemRepo;
 
 	@Autowired
 	protected ImpactRepository impactRepo;
+	protected ImpactWriter impactWriter;
+	@Autowired
+	protected ReachabilityRepository reachabilityRepo;
 
 	private de.unistuttgart.ma.saga.System system;
 	protected String systemId = "60fa9cadc736ff6357a89a9b";
@@ -74,13 +92,35 @@ public abstract class TestWithRepo {
 	public void setUp() {
 		set = new ResourceSetImpl();
 
-		systemRepoProxy = new SystemRepositoryProxy(systemRepo, set);
+		systemCache = new SystemCache(64, Long.MAX_VALUE);
+		systemRepoProxy = new SystemRepositoryProxy(systemRepo, set, systemCache, makeSerializer(ModelFormat.XMI, "none"));
 
 		modelService = new ModelService(systemRepoProxy, set);
-		computationService = new CalculateNotificationService(systemRepoProxy, impactRepo);
+		propagationSettings = new PropagationSettings();
+		impactWriter = new ImpactWriter(impactRepo, WriteDurability.ACKNOWLEDGED, 1024, 5000);
+		notificationCache = new NotificationCache(256);
+		computationService = new CalculateNotificationService(systemRepoProxy, impactWriter, reachabilityRepo,
+				propagationSettings, notificationCache);
 
 		systemRepo.deleteAll();
 		impactRepo.deleteAll();
+		reachabilityRepo.deleteAll();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		impactWriter.shutdown();
+	}
+
+	/**
+	 * Create a serializer that knows all codecs.
+	 * 
+	 * @param format      format to write
+	 * @param compression name of the codec to compress with
+	 * @return a new serializer
+	 */
+	protected SystemSerializer makeSerializer(ModelFormat format, String compression) {
+		return new SystemSerializer(format, compression, List.of(new GzipCodec(), new DeflateCodec()));
 	}
 
 	/**
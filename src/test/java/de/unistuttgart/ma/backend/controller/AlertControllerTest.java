@@ -1,17 +1,45 @@
 package de.unistuttgart.ma.backend.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import de.unistuttgart.ma.backend.TestWithRepoAndMockServers;
+import de.unistuttgart.ma.backend.app.AlertCoalescer;
 import de.unistuttgart.ma.backend.app.AlertController;
+import de.unistuttgart.ma.backend.app.AlertDispatcher;
+import de.unistuttgart.ma.backend.app.AlertService;
 import de.unistuttgart.ma.backend.app.CreateIssueService;
+import de.unistuttgart.ma.backend.app.IdempotencyStore;
+import de.unistuttgart.ma.backend.app.IssueFanOut;
 import de.unistuttgart.ma.backend.exceptions.IssueCreationFailedException;
 import de.unistuttgart.ma.backend.exceptions.IssueLinkageFailedException;
+import de.unistuttgart.ma.backend.repository.AlertJournal;
+import de.unistuttgart.ma.backend.repository.FsyncPolicy;
 import de.unistuttgart.ma.backend.rest.Alert;
+import de.unistuttgart.ma.backend.rest.AlertStatus;
 
 /**
  * Tests for {@link AlertController}.
@@ -20,6 +48,12 @@ public class AlertControllerTest extends TestWithRepoAndMockServers {
 
 	String uri;
 	CreateIssueService service;
+	AlertService alertService;
+	AlertCoalescer coalescer;
+	IssueFanOut fanOut;
+	AlertJournal journal;
+	IdempotencyStore idempotency;
+	AlertDispatcher dispatcher;
 
 	AlertController controller;
 
@@ -31,18 +65,290 @@ public class AlertControllerTest extends TestWithRepoAndMockServers {
 		super.setUp();
 		uri = "http://localhost:" + port + gropius;
 		service = new CreateIssueService(uri);
-		controller = new AlertController(computationService, systemRepoProxy, service);
+		coalescer = new AlertCoalescer(0, 16);
+		fanOut = new IssueFanOut(4);
+		journal = new AlertJournal("", 1 << 20, FsyncPolicy.NEVER);
+		idempotency = new IdempotencyStore(0);
+		alertService = new AlertService(computationService, systemRepoProxy, service, coalescer, fanOut);
+		dispatcher = new AlertDispatcher(alertService, journal, idempotency, false, 1, 16, 16);
+		controller = new AlertController(dispatcher);
 
 		alert = new Alert(0.0, 0.0, "CI_respT_slo", "CI_respT_slo", LocalDateTime.now(), "CI_respT_slo", "CI_respT_slo",
 				"trigger", gropiusId, issueLocationId, "todo_linkedissueid");
 
 	}
 
+	@AfterEach
+	public void shutDownDispatcher() {
+		controller.shutdown();
+		dispatcher.shutdown();
+		fanOut.shutdown();
+	}
+
 	@Test
 	public void test() throws IOException, IssueCreationFailedException, IssueLinkageFailedException {
 		loadSystem();
-		controller.receiveAlert(alert);
+		assertEquals(HttpStatus.OK, controller.receiveAlert(alert).getStatusCode());
 		verifyPostIssueGropius(3); // 1 creations, 2 linkages
-		verifyGetIssueGropius(2);
+		verifyGetIssueGropius(1); // open issues queried once
+	}
+
+	/**
+	 * Test that a batch of alerts shares the issue operations, and that an alert
+	 * for a missing rule fails on its own.
+	 */
+	@Test
+	public void batchTest() throws IOException {
+		loadSystem();
+		Alert missing = new Alert(0.0, 0.0, "missing", "missing", LocalDateTime.now(), "missing_slo", "missing",
+				"trigger", gropiusId, issueLocationId, "todo_linkedissueid");
+
+		ResponseEntity<List<AlertStatus>> response = controller.receiveAlerts(List.of(alert, alert, missing));
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+
+		List<AlertStatus> statuses = response.getBody();
+		assertEquals(3, statuses.size());
+		assertEquals(AlertStatus.State.DONE, statuses.get(0).getState());
+		assertEquals(2, statuses.get(0).getNotifications());
+		assertEquals(AlertStatus.State.DONE, statuses.get(1).getState());
+		assertEquals(2, statuses.get(1).getNotifications());
+		assertEquals(AlertStatus.State.FAILED, statuses.get(2).getState());
+
+		verifyPostIssueGropius(3); // same as for a single alert
+		verifyGetIssueGropius(1); // open issues queried once
+	}
+
+	/**
+	 * Test that repeated alerts for the same rule are merged into the window of
+	 * the first one, and do not trigger the pipeline again.
+	 */
+	@Test
+	public void coalescingTest() throws Exception {
+		loadSystem();
+		coalescer = new AlertCoalescer(60000, 16);
+		alertService = new AlertService(computationService, systemRepoProxy, service, coalescer, fanOut);
+		dispatcher.shutdown();
+		dispatcher = new AlertDispatcher(alertService, journal, idempotency, false, 1, 16, 16);
+		controller = new AlertController(dispatcher);
+
+		assertEquals(HttpStatus.OK, controller.receiveAlert(alert).getStatusCode());
+		assertEquals(HttpStatus.OK, controller.receiveAlert(alert).getStatusCode());
+
+		List<AlertStatus> statuses = controller.receiveAlerts(List.of(alert)).getBody();
+		assertEquals(AlertStatus.State.DONE, statuses.get(0).getState());
+		assertEquals(2, statuses.get(0).getNotifications());
+
+		verifyPostIssueGropius(3); // as for a single alert
+		verifyGetIssueGropius(1);
+
+		assertEquals(1, coalescer.getOpened());
+		assertEquals(2, coalescer.getSuppressed());
+		assertEquals(3, coalescer.getWindow(gropiusId, "CI_respT_slo").getAlerts());
+	}
+
+	/**
+	 * Test that streamed alerts are processed one by one, and that a failed alert
+	 * does not end the stream.
+	 */
+	@Test
+	public void streamTest() throws IOException {
+		loadSystem();
+		ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+		Alert missing = new Alert(0.0, 0.0, "missing", "missing", LocalDateTime.now(), "missing_slo", "missing",
+				"trigger", gropiusId, issueLocationId, "todo_linkedissueid");
+		String body = mapper.writeValueAsString(alert) + "\n" + mapper.writeValueAsString(missing) + "\n"
+				+ "{\"unknown\" : 1}\n";
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		controller.streamAlerts(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(3, lines.length);
+		JsonNode first = mapper.readTree(lines[0]);
+		assertEquals("DONE", first.get("state").asText());
+		assertEquals(2, first.get("notifications").asInt());
+		assertEquals("FAILED", mapper.readTree(lines[1]).get("state").asText());
+		assertEquals("FAILED", mapper.readTree(lines[2]).get("state").asText());
+
+		verifyPostIssueGropius(3); // as for a single alert
+		verifyGetIssueGropius(1);
+	}
+
+	/**
+	 * Test that the statuses of streamed alerts are written once the alerts are
+	 * finished, in order, even if the alerts are processed in the background.
+	 */
+	@Test
+	public void asyncStreamTest() throws IOException {
+		loadSystem();
+		dispatcher.shutdown();
+		dispatcher = new AlertDispatcher(alertService, journal, idempotency, true, 1, 16, 16);
+		controller.shutdown();
+		controller = new AlertController(dispatcher, 10000, 1);
+		ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+		Alert missing = new Alert(0.0, 0.0, "missing", "missing", LocalDateTime.now(), "missing_slo", "missing",
+				"trigger", gropiusId, issueLocationId, "todo_linkedissueid");
+		String body = mapper.writeValueAsString(alert) + "\n" + mapper.writeValueAsString(missing) + "\n";
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		controller.streamAlerts(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(2, lines.length);
+		JsonNode first = mapper.readTree(lines[0]);
+		assertEquals("DONE", first.get("state").asText());
+		assertEquals(2, first.get("notifications").asInt());
+		assertEquals("FAILED", mapper.readTree(lines[1]).get("state").asText());
+	}
+
+	/**
+	 * Test that a stream is rejected, while the maximum number of streams is
+	 * read.
+	 */
+	@Test
+	public void streamLimitTest() throws IOException {
+		controller.shutdown();
+		controller = new AlertController(dispatcher, 10000, 1, 1);
+		PipedOutputStream client = new PipedOutputStream();
+		PipedInputStream open = new PipedInputStream(client);
+
+		assertEquals(HttpStatus.OK, controller.receiveAlertStream(open).getStatusCode());
+		assertThrows(RejectedExecutionException.class,
+				() -> controller.receiveAlertStream(new ByteArrayInputStream(new byte[0])));
+		client.close();
+	}
+
+	/**
+	 * Test that recovered alerts are processed by the workers, and that a
+	 * recovered alert, that is already known, is only completed in the journal.
+	 */
+	@Test
+	public void replayTest(@TempDir Path dir) throws IOException {
+		loadSystem();
+		AlertJournal previous = new AlertJournal(dir.toString(), 1 << 20, FsyncPolicy.NEVER);
+		previous.append(alert);
+		previous.append(alert);
+		previous.close();
+
+		journal = new AlertJournal(dir.toString(), 1 << 20, FsyncPolicy.NEVER);
+		assertEquals(2, journal.getRecovered().size());
+		idempotency = new IdempotencyStore(16);
+		dispatcher.shutdown();
+		dispatcher = new AlertDispatcher(alertService, journal, idempotency, true, 1, 16, 16);
+
+		assertEquals(1, dispatcher.replay());
+		dispatcher.shutdown();
+
+		assertEquals(1, dispatcher.getProcessed());
+		assertEquals(0, journal.getPendingCount());
+		verifyPostIssueGropius(3); // processed once
+		journal.close();
+	}
+
+	/**
+	 * Test that a repeated delivery of an alert gets the status of the first
+	 * delivery, without being processed again.
+	 */
+	@Test
+	public void idempotencyTest() throws Exception {
+		loadSystem();
+		idempotency = new IdempotencyStore(16);
+		dispatcher.shutdown();
+		dispatcher = new AlertDispatcher(alertService, journal, idempotency, false, 1, 16, 16);
+		controller = new AlertController(dispatcher);
+
+		ResponseEntity<AlertStatus> first = controller.receiveAlert(alert);
+		ResponseEntity<AlertStatus> second = controller.receiveAlert(alert);
+		assertEquals(HttpStatus.OK, second.getStatusCode());
+		assertEquals(first.getBody().getId(), second.getBody().getId());
+		assertEquals(2, second.getBody().getNotifications());
+		// the status of a synchronous alert is tracked as well
+		assertEquals(HttpStatus.OK, controller.getAlertStatus(first.getBody().getId()).getStatusCode());
+
+		verifyPostIssueGropius(3); // as for a single alert
+		verifyGetIssueGropius(1);
+		assertEquals(1, idempotency.getDuplicates());
+
+		Alert other = new Alert(0.0, 0.0, "CI_respT_slo", "CI_respT_slo", alert.getAlertTime(), "CI_respT_slo",
+				"CI_respT_slo", "trigger", gropiusId, issueLocationId, "todo_linkedissueid");
+		other.setIdempotencyKey("other");
+		assertEquals(IdempotencyStore.keyOf(alert), IdempotencyStore.keyOf(new Alert(0.0, 0.0, "CI_respT_slo",
+				"CI_respT_slo", alert.getAlertTime(), "CI_respT_slo", "CI_respT_slo", "trigger", gropiusId,
+				issueLocationId, "todo_linkedissueid")));
+		assertEquals("other", IdempotencyStore.keyOf(other));
+	}
+
+	/**
+	 * Test that an asynchronous alert is accepted with a tracking id, and
+	 * processed in the background.
+	 */
+	@Test
+	public void asyncTest() throws Exception {
+		loadSystem();
+		dispatcher.shutdown();
+		dispatcher = new AlertDispatcher(alertService, journal, idempotency, true, 1, 16, 16);
+		controller = new AlertController(dispatcher);
+
+		ResponseEntity<AlertStatus> response = controller.receiveAlert(alert);
+		assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+		String id = response.getBody().getId();
+		assertEquals("/api/alert/" + id, response.getHeaders().getLocation().toString());
+
+		AlertStatus status = awaitFinished(id);
+		assertEquals(AlertStatus.State.DONE, status.getState());
+		assertEquals(2, status.getNotifications());
+		verifyPostIssueGropius(3);
+
+		assertEquals(HttpStatus.NOT_FOUND, controller.getAlertStatus("missing").getStatusCode());
+	}
+
+	/**
+	 * Test that alerts are rejected while the queue is full.
+	 */
+	@Test
+	public void backpressureTest() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AlertService blocking = new AlertService(computationService, systemRepoProxy, service, coalescer, fanOut) {
+			@Override
+			public void validate(Alert alert) {
+			}
+
+			@Override
+			public int process(Alert alert) {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return 0;
+			}
+		};
+		dispatcher.shutdown();
+		dispatcher = new AlertDispatcher(blocking, journal, idempotency, true, 1, 1, 16);
+		controller = new AlertController(dispatcher);
+
+		String first = controller.receiveAlert(alert).getBody().getId();
+		started.await();
+		controller.receiveAlert(alert); // queued
+		assertThrows(RejectedExecutionException.class, () -> controller.receiveAlert(alert));
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS,
+				controller.rejectedExecutionException(new RejectedExecutionException()).getStatusCode());
+		assertEquals(1, dispatcher.getRejected());
+
+		release.countDown();
+		assertEquals(AlertStatus.State.DONE, awaitFinished(first).getState());
+	}
+
+	private AlertStatus awaitFinished(String id) throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			AlertStatus status = controller.getAlertStatus(id).getBody();
+			if (status.isFinished()) {
+				return status;
+			}
+			Thread.sleep(100);
+		}
+		return fail("alert was not processed in time");
 	}
 }
@@ -0,0 +1,74 @@
+package de.unistuttgart.ma.backend.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.unistuttgart.gropius.ComponentInterface;
+import de.unistuttgart.gropius.slo.SloRule;
+import de.unistuttgart.ma.backend.TestWithRepo;
+import de.unistuttgart.ma.backend.app.AnalysisController;
+import de.unistuttgart.ma.saga.System;
+
+/**
+ * Tests for {@link AnalysisController}.
+ */
+public class AnalysisControllerTest extends TestWithRepo {
+
+	AnalysisController controller;
+
+	@BeforeEach
+	@Override
+	public void setUp() {
+		super.setUp();
+		controller = new AnalysisController(computationService, systemRepoProxy);
+	}
+
+	/**
+	 * Analyse all rules, assert that the chains of a rule are as in the impact
+	 * calculation, and that nothing is persisted.
+	 */
+	@Test
+	public void testAnalyseModel() throws IOException {
+		loadSystem();
+		System system = systemRepoProxy.findById(systemId);
+		ComponentInterface creditInstituteFace = system.getComponentInterfaceById("5e8cf780c585a029");
+		SloRule rule = system.getSloForNode(creditInstituteFace).iterator().next();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		controller.analyseModel(systemId).getBody().writeTo(out);
+		JsonNode actual = new ObjectMapper().readTree(out.toByteArray());
+
+		assertTrue(actual.isArray());
+		List<JsonNode> ofRule = new ArrayList<>();
+		for (JsonNode note : actual) {
+			if (note.path("violatedrule").path("id").asText().equals(rule.getId())) {
+				ofRule.add(note);
+			}
+		}
+		assertEquals(2, ofRule.size());
+		// the chains share the impact at the violated interface
+		assertTrue(ofRule.get(0).path("sharedprefix").isMissingNode());
+		assertTrue(ofRule.get(1).path("sharedprefix").isTextual());
+
+		assertEquals(0, impactRepo.count());
+		assertEquals(0, notificationCache.size());
+	}
+
+	@Test
+	public void testFailAnalyseModel() {
+		assertThrows(NoSuchElementException.class, () -> controller.analyseModel("missing"));
+	}
+}